@@ -3,6 +3,7 @@ plugins {
 	id("org.springframework.boot") version "3.5.6"
 	id("io.spring.dependency-management") version "1.1.7"
 	id("com.google.protobuf") version "0.9.4"
+	id("me.champeau.jmh") version "0.7.2"
 	id("java")
 }
 
@@ -50,6 +51,8 @@ dependencies {
 	implementation("io.grpc:grpc-services:$grpcVersion")
 	implementation("com.google.protobuf:protobuf-java:$protobufVersion")
 	implementation("com.google.protobuf:protobuf-java-util:$protobufVersion")
+	implementation("org.apache.commons:commons-compress:1.27.1")
+	implementation("com.github.luben:zstd-jni:1.5.6-6")
 	compileOnly("org.projectlombok:lombok")
 	compileOnly("org.apache.tomcat:annotations-api:6.0.53")
 	developmentOnly("org.springframework.boot:spring-boot-devtools")
@@ -64,6 +67,19 @@ tasks.withType<Test> {
 	useJUnitPlatform()
 }
 
+// Микробенчмарки в src/jmh: ./gradlew jmh -Pjmh.includes=IngestHotPath
+// Результаты с профилировщиком gc пишутся в build/results/jmh/results.json для сравнения между коммитами
+jmh {
+	jmhVersion = "1.37"
+	fork = 1
+	warmupIterations = 3
+	iterations = 5
+	profilers = listOf("gc")
+	resultFormat = "JSON"
+	jvmArgsAppend = listOf("-Dlogs.dir=${rootDir.resolve("../logs_example").canonicalPath}")
+	providers.gradleProperty("jmh.includes").orNull?.let { includes = listOf(it) }
+}
+
 protobuf {
 	protoc {
 		artifact = "com.google.protobuf:protoc:$protobufVersion"
@@ -0,0 +1,93 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Данные и сборка сервисов для бенчмарков без Spring-контекста.
+ * Набор "logs_example" - все файлы из logs_example подряд, "xN" - те же строки, повторённые N раз
+ * с уникальными tf_req_id в каждой копии, чтобы цепочки запросов не склеивались.
+ */
+final class BenchmarkData {
+
+    static final String LOGS_DIR_PROPERTY = "logs.dir";
+
+    private BenchmarkData() {
+    }
+
+    static List<String> lines(String dataset) {
+        List<String> original = exampleLines();
+        int copies = dataset.startsWith("x") ? Integer.parseInt(dataset.substring(1)) : 1;
+        if (copies == 1) {
+            return original;
+        }
+
+        List<String> scaled = new ArrayList<>(original.size() * copies);
+        for (int copy = 0; copy < copies; copy++) {
+            String prefix = "\"tf_req_id\":\"" + copy + "-";
+            for (String line : original) {
+                scaled.add(line.replace("\"tf_req_id\":\"", prefix));
+            }
+        }
+        return scaled;
+    }
+
+    private static List<String> exampleLines() {
+        Path dir = Path.of(System.getProperty(LOGS_DIR_PROPERTY, "../logs_example"));
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> lines = new ArrayList<>();
+            for (Path file : files.filter(path -> path.toString().endsWith(".json")).sorted().toList()) {
+                lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read benchmark logs from " + dir.toAbsolutePath(), e);
+        }
+    }
+
+    // Те же строки, нарезанные кусками как в конвейере загрузки (LogChunkReader); куски не переиспользуют буфер
+    static List<LogChunk> chunks(List<String> lines, int chunkSize) {
+        byte[] data = String.join("\n", lines).concat("\n").getBytes(StandardCharsets.UTF_8);
+        LogChunkReader reader = new LogChunkReader(new ByteArrayInputStream(data), chunkSize);
+        List<LogChunk> chunks = new ArrayList<>();
+        try {
+            LogChunk chunk;
+            while ((chunk = reader.next()) != null) {
+                ByteBuffer copy = ByteBuffer.allocate(chunk.length());
+                copy.put(chunk.data().duplicate()).flip();
+                chunks.add(new LogChunk(copy, chunk.startOffset()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunks;
+    }
+
+    static LogParserService parserService() {
+        LogParserService parserService = new LogParserService();
+        inject(parserService, "sectionDetectionService", new SectionDetectionService());
+        inject(parserService, "contextEnricher", new TerraformContextEnricher());
+        parserService.init();
+        return parserService;
+    }
+
+    static void inject(Object target, String fieldName, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+        if (field == null) {
+            throw new IllegalArgumentException("No field " + fieldName + " in " + target.getClass());
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.konkurst1.ekb.terraform_logviewer.plugin.PluginRequest;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogParseResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути загрузки и обогащения на logs_example и его увеличенных копиях.
+ * Одна операция - обработка всего набора, поэтому ops/s сравнимы только внутри одного dataset.
+ * Выделения памяти: ./gradlew jmh (профилировщик gc включён в build.gradle.kts),
+ * смотреть gc.alloc.rate.norm - байт на операцию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestHotPathBenchmark {
+
+    @Param({"logs_example", "x10"})
+    private String dataset;
+
+    // Как app.ingest.chunk-size по умолчанию
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private List<String> lines;
+    private List<LogChunk> chunks;
+    private List<LogEntry> entries;
+    private LogParserService parserService;
+    private SectionDetectionService sectionDetectionService;
+    private TerraformContextEnricher contextEnricher;
+    private PluginManagerService pluginManagerService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lines = BenchmarkData.lines(dataset);
+        chunks = BenchmarkData.chunks(lines, CHUNK_SIZE);
+        parserService = BenchmarkData.parserService();
+        sectionDetectionService = new SectionDetectionService();
+        contextEnricher = new TerraformContextEnricher();
+        pluginManagerService = new PluginManagerService();
+
+        // Секции и обогащение перезаписывают одни и те же поля, поэтому набор готовится один раз
+        entries = parserService.parseAndEnrichLogs(lines, "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parserService.shutdown();
+    }
+
+    // Разбор так, как его вызывает LogIngestionPipeline: кусок за куском с переносом секции,
+    // номера первой строки и словаря строк загрузки
+    @Benchmark
+    public long parseChunks() {
+        StringDictionary dictionary = parserService.newDictionary();
+        String section = SectionDetectionService.INITIAL_SECTION;
+        long linesRead = 0;
+        long entryCount = 0;
+        for (LogChunk chunk : chunks) {
+            LogParseResult parsed = parserService.parseChunk(chunk, "benchmark", section, linesRead + 1, dictionary);
+            linesRead += parsed.linesRead();
+            entryCount += parsed.entries().size();
+            if (!parsed.entries().isEmpty()) {
+                section = parsed.entries().get(parsed.entries().size() - 1).getSection();
+            }
+        }
+        return entryCount;
+    }
+
+    @Benchmark
+    public List<LogEntry> detectSections() {
+        return sectionDetectionService.detectSections(entries);
+    }
+
+    @Benchmark
+    public List<LogEntry> enrichWithTerraformContext() {
+        return contextEnricher.enrichWithTerraformContext(entries);
+    }
+
+    // Бывший LogController.calculateStats, теперь однопроходный LogStatsCollector
+    @Benchmark
+    public Map<String, Object> calculateStats() {
+        LogStatsCollector collector = new LogStatsCollector();
+        collector.accept(entries);
+        return collector.snapshot();
+    }
+
+    @Benchmark
+    public PluginRequest buildPluginRequest() {
+        return pluginManagerService.buildPluginRequest(entries, Map.of("mode", "benchmark"));
+    }
+}
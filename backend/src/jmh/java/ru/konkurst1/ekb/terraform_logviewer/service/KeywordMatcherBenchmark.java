@@ -0,0 +1,71 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск ключевых слов обогащения в сообщениях logs_example: KeywordMatcher (один проход, без копий строки)
+ * против прежних toLowerCase().contains() по каждому слову. Одна операция - все сообщения набора.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeywordMatcherBenchmark {
+
+    private String[] messages;
+    private LogParserService parserService;
+
+    @Setup
+    public void setUp() {
+        parserService = BenchmarkData.parserService();
+        messages = parserService.parseJsonLogs(BenchmarkData.lines("logs_example"), "benchmark").stream()
+                .map(LogEntry::getMessage)
+                .filter(Objects::nonNull)
+                .toArray(String[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        parserService.shutdown();
+    }
+
+    @Benchmark
+    public long keywordMatcher() {
+        long hits = 0;
+        for (String message : messages) {
+            hits += Long.bitCount(TerraformContextEnricher.MESSAGE_KEYWORDS.match(message));
+        }
+        return hits;
+    }
+
+    // Прежний TerraformContextEnricher: до шести toLowerCase на сообщение
+    @Benchmark
+    public long toLowerCaseContains() {
+        long hits = 0;
+        for (String message : messages) {
+            if (message.toLowerCase().contains("creating") || message.contains("Create")) {
+                hits++;
+            } else if (message.toLowerCase().contains("updating") || message.contains("Update")) {
+                hits++;
+            } else if (message.toLowerCase().contains("destroying") || message.contains("Destroy")) {
+                hits++;
+            } else if (message.toLowerCase().contains("reading") || message.contains("Read")) {
+                hits++;
+            }
+            if (message.toLowerCase().contains("failed") || message.toLowerCase().contains("error")) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,88 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость разметки секций в зависимости от числа маркеров; одна операция - все записи logs_example,
+ * цена строки - время операции, делённое на число записей.
+ * К правилам по умолчанию (9 маркеров) добавляются правила, которые в logs_example не встречаются,
+ * поэтому результат секций не меняется, растёт только набор слов.
+ * legacyContainsChain - прежний способ: отдельный contains (и toLowerCase) на каждый маркер.
+ * Ожидание: compiledRules почти не зависит от markers, legacyContainsChain растёт линейно.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SectionDetectionBenchmark {
+
+    @Param({"9", "32", "64"})
+    private int markers;
+
+    private List<LogEntry> entries;
+    private List<SectionRule> rules;
+    private SectionDetectionService sectionDetectionService;
+    private LogParserService parserService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parserService = BenchmarkData.parserService();
+        entries = parserService.parseAndEnrichLogs(BenchmarkData.lines("logs_example"), "benchmark");
+
+        sectionDetectionService = new SectionDetectionService();
+        rules = new ArrayList<>(sectionDetectionService.getRules());
+        int total = rules.stream().mapToInt(rule -> rule.markers().size()).sum();
+        for (int i = total; i < markers; i++) {
+            rules.add(new SectionRule("synthetic-" + i, List.of("synthetic section marker " + i), i % 2 == 0));
+        }
+        sectionDetectionService.updateRules(rules);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parserService.shutdown();
+    }
+
+    @Benchmark
+    public String compiledRules() {
+        return sectionDetectionService.detectSectionsFrom(entries, SectionDetectionService.INITIAL_SECTION);
+    }
+
+    @Benchmark
+    public String legacyContainsChain() {
+        String currentSection = SectionDetectionService.INITIAL_SECTION;
+        for (LogEntry entry : entries) {
+            currentSection = legacyDetectSection(entry.getMessage(), currentSection);
+        }
+        return currentSection;
+    }
+
+    private String legacyDetectSection(String message, String currentSection) {
+        if (message == null) {
+            return currentSection;
+        }
+        for (SectionRule rule : rules) {
+            String text = rule.ignoreCase() ? message.toLowerCase(Locale.ROOT) : message;
+            for (String marker : rule.markers()) {
+                if (text.contains(rule.ignoreCase() ? marker.toLowerCase(Locale.ROOT) : marker)) {
+                    return rule.section();
+                }
+            }
+        }
+        return currentSection;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена разметки шаблонов на конвейере загрузки; одна операция - все записи logs_example.
+ * coldMiner - новый майнер на каждую операцию (первый файл после старта), warmMiner - шаблоны уже известны.
+ * Сравнивать с IngestHotPathBenchmark: разметка должна оставаться малой долей от разбора.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TemplateMinerBenchmark {
+
+    private List<LogEntry> entries;
+    private TemplateMiner warmMiner;
+    private LogParserService parserService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parserService = BenchmarkData.parserService();
+        entries = parserService.parseAndEnrichLogs(BenchmarkData.lines("logs_example"), "benchmark");
+        warmMiner = newMiner();
+        warmMiner.assignTemplates(entries);
+        warmMiner.drainChanged();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parserService.shutdown();
+    }
+
+    @Benchmark
+    public int coldMiner() {
+        TemplateMiner miner = newMiner();
+        miner.assignTemplates(entries);
+        return miner.drainChanged().size();
+    }
+
+    @Benchmark
+    public int warmMiner() {
+        warmMiner.assignTemplates(entries);
+        return warmMiner.drainChanged().size();
+    }
+
+    // Значения по умолчанию app.templates.*
+    private static TemplateMiner newMiner() {
+        return new TemplateMiner(4, 0.4, 100, 10000, 80, 5);
+    }
+}
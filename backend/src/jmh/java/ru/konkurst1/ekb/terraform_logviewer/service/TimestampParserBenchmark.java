@@ -0,0 +1,67 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор метки времени Terraform: TimestampParser против прежнего replace + Instant.parse
+ * и DateTimeFormatter. Запуск с -prof gc показывает выделения памяти на операцию.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimestampParserBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private String[] timestamps;
+    private byte[][] timestampBytes;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        timestamps = new String[SAMPLES];
+        timestampBytes = new byte[SAMPLES][];
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamps[i] = String.format("2025-09-09T15:%02d:%02d.%06d+03:00", i % 60, (i * 7) % 60, i * 977 % 1_000_000);
+            timestampBytes[i] = timestamps[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (SAMPLES - 1);
+        return index;
+    }
+
+    @Benchmark
+    public Instant timestampParserChars() {
+        return TimestampParser.parse(timestamps[next()]);
+    }
+
+    @Benchmark
+    public Instant timestampParserBytes() {
+        byte[] bytes = timestampBytes[next()];
+        return TimestampParser.parse(bytes, 0, bytes.length);
+    }
+
+    // Прежний способ: работает только для +03:00
+    @Benchmark
+    public Instant replaceAndInstantParse() {
+        return Instant.parse(timestamps[next()].replace("+03:00", "Z"));
+    }
+
+    @Benchmark
+    public Instant dateTimeFormatter() {
+        return OffsetDateTime.parse(timestamps[next()], DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.konkurst1.ekb.terraform_logviewer.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.konkurst1.ekb.terraform_logviewer.dto.QueryCacheStats;
+import ru.konkurst1.ekb.terraform_logviewer.service.QueryResultCache;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+@CrossOrigin(origins = "*")
+public class CacheAdminController {
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    // Попадания, промахи, вытеснения и сбросы кэша результатов выборок
+    @GetMapping
+    public ResponseEntity<QueryCacheStats> getStats() {
+        return ResponseEntity.ok(queryResultCache.stats());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<QueryCacheStats> clear() {
+        queryResultCache.clear();
+        return ResponseEntity.ok(queryResultCache.stats());
+    }
+}
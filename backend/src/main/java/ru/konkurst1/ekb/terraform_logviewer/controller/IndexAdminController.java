@@ -0,0 +1,57 @@
+package ru.konkurst1.ekb.terraform_logviewer.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.konkurst1.ekb.terraform_logviewer.dto.IndexMigrationResult;
+import ru.konkurst1.ekb.terraform_logviewer.dto.IndexStatus;
+import ru.konkurst1.ekb.terraform_logviewer.service.IngestJobService;
+import ru.konkurst1.ekb.terraform_logviewer.service.LogIndexService;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/admin/index")
+@CrossOrigin(origins = "*")
+public class IndexAdminController {
+    private static final Logger logger = LoggerFactory.getLogger(IndexAdminController.class);
+
+    @Autowired
+    private LogIndexService logIndexService;
+    @Autowired
+    private IngestJobService ingestJobService;
+
+    // Маппинг rawJson, размер индекса и число полей маппинга - для сравнения стратегий
+    @GetMapping
+    public ResponseEntity<IndexStatus> getStatus() {
+        try {
+            return ResponseEntity.ok(logIndexService.status());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to read index status", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Переиндексация под текущую настройку app.index.raw-json-mapping; пока идут загрузки - отказ,
+    // а задачи, поставленные во время миграции, ждут её окончания
+    @PostMapping("/migrate")
+    public ResponseEntity<?> migrate() {
+        try {
+            Optional<IndexMigrationResult> result = ingestJobService.withIngestBlocked(logIndexService::migrate);
+            if (result.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Ingest jobs are running, retry when they finish"));
+            }
+            return ResponseEntity.ok(result.get());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Index migration failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
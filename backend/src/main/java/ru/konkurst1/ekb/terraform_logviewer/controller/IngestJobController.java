@@ -0,0 +1,78 @@
+package ru.konkurst1.ekb.terraform_logviewer.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.konkurst1.ekb.terraform_logviewer.dto.IngestJobStatus;
+import ru.konkurst1.ekb.terraform_logviewer.dto.LogUploadResponse;
+import ru.konkurst1.ekb.terraform_logviewer.service.IngestJob;
+import ru.konkurst1.ekb.terraform_logviewer.service.IngestJobService;
+
+import java.util.Comparator;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/logs/jobs")
+@CrossOrigin(origins = "*")
+public class IngestJobController {
+
+    @Autowired
+    private IngestJobService ingestJobService;
+
+    @GetMapping
+    public ResponseEntity<List<IngestJobStatus>> getJobs() {
+        return ResponseEntity.ok(ingestJobService.getJobs().stream()
+                .map(IngestJob::toStatus)
+                .toList());
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<IngestJobStatus> getJob(@PathVariable String jobId) {
+        IngestJob job = ingestJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.toStatus());
+    }
+
+    // Краткий итог завершённой задачи: счётчики, статистика и время, без записей
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<LogUploadResponse> getJobResult(@PathVariable String jobId) {
+        IngestJob job = ingestJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.getState().isFinished()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        List<IngestJobStatus> archiveFiles = ingestJobService.getChildJobs(job).stream()
+                .sorted(Comparator.comparing(IngestJob::getCreatedAt))
+                .map(IngestJob::toStatus)
+                .toList();
+        return ResponseEntity.ok(LogUploadResponse.from(job.toStatus(), archiveFiles));
+    }
+
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable String jobId) {
+        IngestJob job = ingestJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ingestJobService.subscribe(job));
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Void> cancelJob(@PathVariable String jobId) {
+        if (ingestJobService.getJob(jobId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!ingestJobService.cancel(jobId)) {
+            // Задача уже завершилась
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
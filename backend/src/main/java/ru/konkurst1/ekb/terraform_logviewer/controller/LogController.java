@@ -1,85 +1,127 @@
 package ru.konkurst1.ekb.terraform_logviewer.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.konkurst1.ekb.terraform_logviewer.dto.CursorPage;
+import ru.konkurst1.ekb.terraform_logviewer.dto.IngestJobStatus;
 import ru.konkurst1.ekb.terraform_logviewer.dto.LogFileInfo;
-import ru.konkurst1.ekb.terraform_logviewer.dto.LogUploadResponse;
 import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogFileSummary;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepository;
-import ru.konkurst1.ekb.terraform_logviewer.service.LogParserService;
+import ru.konkurst1.ekb.terraform_logviewer.service.IngestJob;
+import ru.konkurst1.ekb.terraform_logviewer.service.IngestJobService;
+import ru.konkurst1.ekb.terraform_logviewer.service.LocalLogFileService;
 import ru.konkurst1.ekb.terraform_logviewer.service.LogSearchService;
 import ru.konkurst1.ekb.terraform_logviewer.service.LogStorageService;
+import ru.konkurst1.ekb.terraform_logviewer.service.RawLogStore;
+import ru.konkurst1.ekb.terraform_logviewer.service.SearchCursorService;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/logs")
 @CrossOrigin(origins = "*")
 public class LogController {
     private static final Logger logger = LoggerFactory.getLogger(LogController.class);
+    // Ограничение окна контекста: ответ должен укладываться в несколько блоков RawLogStore
+    private static final int MAX_CONTEXT_LINES = 1000;
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
 
-    @Autowired
-    private LogParserService logParserService;
     @Autowired
     private LogStorageService logStorageService;
     @Autowired
     private LogSearchService logSearchService;
     @Autowired
     private LogEntryRepository logEntryRepository;
+    @Autowired
+    private IngestJobService ingestJobService;
+    @Autowired
+    private LocalLogFileService localLogFileService;
+    @Autowired
+    private SearchCursorService searchCursorService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Уровень gzip для /export/ndjson: 1 сжимает вдвое быстрее 6 ценой немного большего файла
+    @Value("${app.export.gzip-level:1}")
+    private int exportGzipLevel = 1;
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<LogUploadResponse> uploadLogs(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadLogs(@RequestParam("file") MultipartFile file) {
         logger.info("=== STARTING LOG UPLOAD ===");
 
         try {
-            String logFileId = UUID.randomUUID().toString();
-            List<String> lines = readFileLines(file);
-
-            // Новый вызов
-            List<LogEntry> entries = logParserService.parseAndEnrichLogs(lines, logFileId);
-
-            logStorageService.saveEntries(entries);
+            // Загрузка идёт в фоне, клиент следит за ней через /api/logs/jobs/{jobId}
+            IngestJob job = ingestJobService.submitUpload(file);
+            return ResponseEntity.accepted().body(job.toStatus());
 
-            Map<String, Object> stats = calculateStats(entries);
-            LogUploadResponse response = new LogUploadResponse(
-                    logFileId,
-                    entries.size(),
-                    0, // errors count - теперь всегда 0 т.к. ошибки парсинга обрабатываются иначе
-                    stats,
-                    entries
-            );
+        } catch (IOException | RuntimeException e) {
+            logger.error("=== UPLOAD FAILED ===", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
 
-            return ResponseEntity.ok(response);
+    // Загрузка телом запроса без multipart: curl --data-binary @tflog.json.zst -H "Content-Encoding: zstd"
+    @PostMapping(value = "/upload", consumes = {
+            MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            "application/gzip", "application/zstd", "application/zip", "application/x-tar"})
+    public ResponseEntity<?> uploadLogStream(
+            InputStream body,
+            @RequestParam(defaultValue = "upload.log") String filename,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType) {
+        try {
+            String encodingHint = contentEncoding != null ? contentEncoding : contentType;
+            IngestJob job = ingestJobService.submitStream(body, filename, encodingHint);
+            return ResponseEntity.accepted().body(job.toStatus());
 
-        } catch (IOException e) {
-            logger.error("=== UPLOAD FAILED ===", e);
+        } catch (IOException | RuntimeException e) {
+            logger.error("=== STREAM UPLOAD FAILED ===", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(LogUploadResponse.error(e.getMessage()));
+                    .body(Map.of("error", String.valueOf(e.getMessage())));
         }
     }
 
-    private List<String> readFileLines(MultipartFile file) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream()))) {
-            return reader.lines().collect(Collectors.toList());
+    @PostMapping("/ingest/local")
+    public ResponseEntity<?> ingestLocalFiles(@RequestBody Map<String, String> request) {
+        try {
+            List<Path> files = localLogFileService.resolveLogFiles(request.get("path"));
+
+            // Каждый файл каталога загружается отдельной задачей под своим logFileId
+            List<IngestJobStatus> jobs = files.stream()
+                    .map(path -> ingestJobService.submitLocalFile(path).toStatus())
+                    .toList();
+            return ResponseEntity.accepted().body(jobs);
+
+        } catch (IllegalArgumentException | IOException e) {
+            logger.warn("Rejected local ingest of {}: {}", request.get("path"), e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
         }
-}
+    }
+
     @GetMapping("/entries")
     public ResponseEntity<Map<String, Object>> getLogs(
             @RequestParam String logFileId,
@@ -102,6 +144,84 @@ public class LogController {
 
         return ResponseEntity.ok(response);
     }
+
+    // Постраничная выдача курсором (point-in-time + search_after): без пустого cursor - первая страница
+    @GetMapping("/entries/cursor")
+    public ResponseEntity<CursorPage> getLogsByCursor(
+            @RequestParam String logFileId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) LogLevel level,
+            @RequestParam(required = false) String section,
+            @RequestParam(required = false) Boolean hasErrors) {
+        try {
+            return ResponseEntity.ok(logStorageService.findEntriesByCursor(
+                    logFileId, level, section, hasErrors, size, cursor));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected cursor for {}: {}", logFileId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Закрывает point-in-time курсора, когда клиент закончил листать
+    @DeleteMapping("/cursor")
+    public ResponseEntity<Void> closeCursor(@RequestParam String cursor) {
+        try {
+            searchCursorService.close(cursor);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    // Полные значения длинных полей записи (превью которых лежит в индексе), читаются из BlobStore по запросу
+    @GetMapping("/entries/{entryId}/full")
+    public ResponseEntity<Map<String, Object>> getFullValues(@PathVariable String entryId) {
+        try {
+            return logStorageService.getFullValues(entryId)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to read full values of {}", entryId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Исходные строки файла вокруг записи (из RawLogStore, без запроса к Elasticsearch)
+    @GetMapping("/entries/{entryId}/context")
+    public ResponseEntity<List<RawLogStore.RawLine>> getContext(
+            @PathVariable String entryId,
+            @RequestParam(defaultValue = "20") int before,
+            @RequestParam(defaultValue = "20") int after) {
+        try {
+            return logStorageService.getContext(entryId,
+                            Math.min(before, MAX_CONTEXT_LINES), Math.min(after, MAX_CONTEXT_LINES))
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to read context of {}", entryId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Все записи файла построчно в NDJSON, без сборки полного списка в памяти
+    @GetMapping(value = "/entries/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamLogs(@RequestParam String logFileId) {
+        // Без AUTO_CLOSE_TARGET writeValue закрыл бы ответ после первой записи
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<LogEntry> entries = logStorageService.streamEntries(logFileId)) {
+                Iterator<LogEntry> iterator = entries.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(outputStream, iterator.next());
+                    outputStream.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/search")
     public ResponseEntity<List<LogEntry>> searchLogs(
             @RequestParam String logFileId,
@@ -118,20 +238,37 @@ public class LogController {
         return ResponseEntity.ok(entries);
     }
 
+    @GetMapping("/search/cursor")
+    public ResponseEntity<CursorPage> searchLogsByCursor(
+            @RequestParam String logFileId,
+            @RequestParam String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(logStorageService.searchEntriesByCursor(logFileId, query, size, cursor));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected cursor for {}: {}", logFileId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/files")
-    public ResponseEntity<List<LogFileInfo>> getLogFiles() {
-        return ResponseEntity.ok(logStorageService.getLogFiles());
+    public ResponseEntity<List<LogFileInfo>> getLogFiles(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(logStorageService.getLogFiles(page, size));
     }
+    // Статистика файла читается из его сводки (terraform_log_files), по всем файлам - счётчиками Elasticsearch
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalEntries", 6);
-        stats.put("planSectionEntries", 5);
-        stats.put("applySectionEntries", 0);
-        stats.put("errorEntries", 1);
-        stats.put("warnEntries", 1);
-        
-        return ResponseEntity.ok(stats);
+    public ResponseEntity<Map<String, Object>> getStats(@RequestParam(required = false) String logFileId) {
+        return ResponseEntity.ok(logStorageService.getStats(logFileId));
+    }
+
+    @GetMapping("/files/{logFileId}/summary")
+    public ResponseEntity<LogFileSummary> getFileSummary(@PathVariable String logFileId) {
+        return logStorageService.getSummary(logFileId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
     @PostMapping("/search/advanced")
     public ResponseEntity<Page<LogEntry>> advancedSearch(
@@ -145,6 +282,23 @@ public class LogController {
         }
     }
 
+    // Курсор передаётся параметром, фильтры в теле - те же, что и для первой страницы
+    @PostMapping("/search/advanced/cursor")
+    public ResponseEntity<CursorPage> advancedSearchByCursor(
+            @RequestBody SearchFilters filters,
+            @RequestParam(required = false) String logFileId,
+            @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(logSearchService.advancedSearchByCursor(filters, logFileId, cursor));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected cursor: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Advanced search failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/chains/{tfReqId}")
     public ResponseEntity<List<LogEntry>> getRequestChain(@PathVariable String tfReqId) {
         try {
@@ -179,28 +333,115 @@ public class LogController {
         }
     }
 
+    // Вся выборка по фильтрам одним JSON-документом; записи пишутся в ответ по мере чтения, totalEntries - в конце.
+    // Ошибка первого запроса - код 500 с телом error; ошибка Elasticsearch посреди выгрузки закрывает документ
+    // полем error вместо totalEntries, чтобы клиент не принял обрезанную выборку за полную
     @PostMapping("/export/filtered")
-    public ResponseEntity<String> exportFilteredLogs(@RequestBody SearchFilters filters) {
+    public ResponseEntity<?> exportFilteredLogs(@RequestBody SearchFilters filters) {
+        SearchCursorService.Scan scan;
         try {
-            Page<LogEntry> entriesPage = logSearchService.advancedSearch(filters, filters.getLogFileId());
-            List<LogEntry> entries = entriesPage.getContent();
-
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
+            scan = logSearchService.openExport(filters);
+        } catch (RuntimeException e) {
+            logger.error("Failed to start export of {}", filters.getLogFileId(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+        StreamingResponseBody body = outputStream -> {
+            long started = System.nanoTime();
+            try (scan; JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.useDefaultPrettyPrinter();
+                generator.writeStartObject();
+                generator.writePOJOField("filters", filters);
+                generator.writeStringField("exportedAt", Instant.now().toString());
+                generator.writeArrayFieldStart("entries");
+                long exported;
+                try {
+                    exported = scan.forEach(generator::writePOJO);
+                } catch (RuntimeException e) {
+                    logger.error("Export of {} failed mid-stream", filters.getLogFileId(), e);
+                    generator.writeEndArray();
+                    generator.writeStringField("error", String.valueOf(e.getMessage()));
+                    generator.writeEndObject();
+                    return;
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("totalEntries", exported);
+                generator.writeEndObject();
+                logExport("JSON", filters, exported, -1, started);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 
-            Map<String, Object> exportData = new HashMap<>();
-            exportData.put("filters", filters);
-            exportData.put("entries", entries);
-            exportData.put("exportedAt", Instant.now().toString());
-            exportData.put("totalEntries", entries.size());
+    // Вся выборка по фильтрам в NDJSON (gzip=true - сжатым файлом); page и size фильтров не используются.
+    // Ошибка посреди выгрузки дописывает строку {"error": ...} и обрывает соединение: у gzip не будет конца потока
+    @PostMapping("/export/ndjson")
+    public ResponseEntity<?> exportNdjson(
+            @RequestBody SearchFilters filters, @RequestParam(defaultValue = "false") boolean gzip) {
+        SearchCursorService.Scan scan;
+        try {
+            scan = logSearchService.openExport(filters);
+        } catch (RuntimeException e) {
+            logger.error("Failed to start export of {}", filters.getLogFileId(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = outputStream -> {
+            long started = System.nanoTime();
+            long[] bytes = {0};
+            try (scan) {
+                OutputStream out = gzip ? gzipStream(outputStream) : outputStream;
+                long exported;
+                try {
+                    exported = scan.forEach(entry -> {
+                        byte[] line = writer.writeValueAsBytes(entry);
+                        out.write(line);
+                        out.write('\n');
+                        bytes[0] += line.length + 1;
+                    });
+                } catch (RuntimeException e) {
+                    logger.error("Export of {} failed mid-stream", filters.getLogFileId(), e);
+                    out.write(writer.writeValueAsBytes(Map.of("error", String.valueOf(e.getMessage()))));
+                    out.write('\n');
+                    out.flush();
+                    throw e;
+                }
+                if (out instanceof GZIPOutputStream gzipStream) {
+                    gzipStream.finish();
+                }
+                logExport(gzip ? "NDJSON gzip" : "NDJSON", filters, exported, bytes[0], started);
+            }
+        };
+        String fileName = "terraform-logs-" + (filters.getLogFileId() != null ? filters.getLogFileId() : "all")
+                + (gzip ? ".ndjson.gz" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
 
-            String jsonOutput = mapper.writeValueAsString(exportData);
-            return ResponseEntity.ok(jsonOutput);
+    private GZIPOutputStream gzipStream(OutputStream outputStream) throws IOException {
+        // Уровень сжатия у GZIPOutputStream задаётся только через его Deflater
+        return new GZIPOutputStream(outputStream, EXPORT_BUFFER_SIZE) {
+            {
+                def.setLevel(exportGzipLevel);
+            }
+        };
+    }
 
-        } catch (Exception e) {
-            logger.error("Export failed", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("{\"error\": \"Export failed: " + e.getMessage() + "\"}");
+    // bytes - размер несжатого NDJSON, -1 если не считался
+    private void logExport(String format, SearchFilters filters, long entries, long bytes, long startedNanos) {
+        double seconds = Math.max((System.nanoTime() - startedNanos) / 1e9, 1e-9);
+        if (bytes >= 0) {
+            logger.info("Exported {} entries of {} as {}: {} bytes in {} ms ({} entries/s, {} MB/s)",
+                    entries, filters.getLogFileId(), format, bytes, Math.round(seconds * 1000),
+                    Math.round(entries / seconds), String.format(Locale.ROOT, "%.1f", bytes / seconds / 1e6));
+        } else {
+            logger.info("Exported {} entries of {} as {} in {} ms ({} entries/s)",
+                    entries, filters.getLogFileId(), format, Math.round(seconds * 1000), Math.round(entries / seconds));
         }
     }
 
@@ -221,23 +462,11 @@ public class LogController {
               "timestampFrom": "2024-01-15T00:00:00Z",
               "tfResourceType": "t1_compute_instance"
             }'
-        """;
-    }
-
-    private Map<String, Object> calculateStats(List<LogEntry> entries) {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalEntries", entries.size());
-        stats.put("planSectionEntries", entries.stream().filter(e -> "plan".equals(e.getSection())).count());
-        stats.put("applySectionEntries", entries.stream().filter(e -> "apply".equals(e.getSection())).count());
 
-        // Исправлено: сравниваем со строкой, а не с enum
-        stats.put("errorEntries", entries.stream()
-                .filter(e -> "ERROR".equals(e.getLevel()))
-                .count());
-        stats.put("warnEntries", entries.stream()
-                .filter(e -> "WARN".equals(e.getLevel()))
-                .count());
-
-        return stats;
+        # Вся выборка построчно (NDJSON), сжатая gzip
+        curl -X POST "http://localhost:8080/api/logs/export/ndjson?gzip=true" \\
+            -H "Content-Type: application/json" \\
+            -d '{"logFileId": "your-log-file-id", "level": "ERROR"}' -o export.ndjson.gz
+        """;
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package ru.konkurst1.ekb.terraform_logviewer.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.konkurst1.ekb.terraform_logviewer.service.SectionDetectionService;
+import ru.konkurst1.ekb.terraform_logviewer.service.SectionRule;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/section-rules")
+@CrossOrigin(origins = "*")
+public class SectionRuleController {
+    private static final Logger logger = LoggerFactory.getLogger(SectionRuleController.class);
+
+    @Autowired
+    private SectionDetectionService sectionDetectionService;
+
+    @GetMapping
+    public ResponseEntity<List<SectionRule>> getRules() {
+        return ResponseEntity.ok(sectionDetectionService.getRules());
+    }
+
+    // Новые правила действуют для следующих батчей, уже размеченные записи не переразмечаются
+    @PostMapping("/reload")
+    public ResponseEntity<?> reloadRules() {
+        try {
+            return ResponseEntity.ok(sectionDetectionService.reloadRules());
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Failed to reload section rules: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
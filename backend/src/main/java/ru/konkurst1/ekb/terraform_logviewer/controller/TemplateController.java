@@ -0,0 +1,43 @@
+package ru.konkurst1.ekb.terraform_logviewer.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.konkurst1.ekb.terraform_logviewer.dto.TemplateCount;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogTemplate;
+import ru.konkurst1.ekb.terraform_logviewer.service.LogTemplateService;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/templates")
+@CrossOrigin(origins = "*")
+public class TemplateController {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateController.class);
+
+    @Autowired
+    private LogTemplateService logTemplateService;
+
+    @GetMapping("/top")
+    public ResponseEntity<List<TemplateCount>> getTopTemplates(
+            @RequestParam(required = false) String logFileId,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(logTemplateService.topTemplates(logFileId, size));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to aggregate templates", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/{templateId}")
+    public ResponseEntity<LogTemplate> getTemplate(@PathVariable String templateId) {
+        return logTemplateService.findTemplate(templateId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,10 @@
+package ru.konkurst1.ekb.terraform_logviewer.dto;
+
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.List;
+
+// Страница выдачи курсором (SearchCursorService): курсоры null, если дальше в эту сторону записей нет;
+// totalElements только у первой страницы
+public record CursorPage(List<LogEntry> content, String nextCursor, String prevCursor, Long totalElements) {
+}
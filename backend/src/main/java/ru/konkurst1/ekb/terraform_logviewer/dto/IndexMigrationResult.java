@@ -0,0 +1,13 @@
+package ru.konkurst1.ekb.terraform_logviewer.dto;
+
+import java.util.List;
+
+// Результат переиндексации в индекс с новым маппингом rawJson
+public record IndexMigrationResult(
+        List<String> sourceIndices,
+        String targetIndex,
+        String rawJsonMapping,
+        long sourceDocuments,
+        long migratedDocuments,
+        long durationMs) {
+}
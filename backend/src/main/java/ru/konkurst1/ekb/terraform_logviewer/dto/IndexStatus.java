@@ -0,0 +1,16 @@
+package ru.konkurst1.ekb.terraform_logviewer.dto;
+
+import java.util.List;
+
+// Состояние индекса записей: алиас, индексы за ним, маппинг rawJson, размер (primaries) и число полей маппинга
+public record IndexStatus(
+        String alias,
+        List<String> indices,
+        String configuredRawJsonMapping,
+        String currentRawJsonMapping,
+        // Есть ли подполе message.ngram (поиск подстроки); нет - индекс создан до него, нужна миграция
+        boolean messageNgram,
+        long documents,
+        long storeSizeBytes,
+        int mappedFields) {
+}
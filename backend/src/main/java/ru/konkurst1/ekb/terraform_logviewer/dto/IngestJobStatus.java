@@ -0,0 +1,26 @@
+package ru.konkurst1.ekb.terraform_logviewer.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+public record IngestJobStatus(
+        String jobId,
+        String logFileId,
+        String source,
+        String parentJobId, // задача архива, если файл пришёл из tar/zip
+        String state, // "QUEUED", "RUNNING", "COMPLETED", "FAILED", "CANCELLED"
+        long bytesRead,
+        long linesRead,
+        long entriesParsed,
+        long entriesIndexed,
+        long failedLines,
+        double linesPerSecond,
+        double entriesIndexedPerSecond,
+        long dictionaryLookups, // обращения к словарю повторяющихся строк при разборе
+        double dictionaryHitRate,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt,
+        Map<String, Object> stats,
+        String error) {
+}
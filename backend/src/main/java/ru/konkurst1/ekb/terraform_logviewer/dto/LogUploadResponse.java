@@ -1,40 +1,63 @@
 package ru.konkurst1.ekb.terraform_logviewer.dto;
 
-import lombok.Getter;
-import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
-
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
-@Getter
-public class LogUploadResponse {
-    // getters and setters
-    private String logFileId;
-    private Integer entriesProcessed;
-    private Integer errorsCount;
-    private Map<String, Object> stats;
-    List<LogEntry> entries;
-    private String error;
-
-    // Success constructor
-    public LogUploadResponse(String logFileId, Integer entriesProcessed, 
-                           Integer errorsCount, Map<String, Object> stats,
-                             List<LogEntry> entries) {
-        this.logFileId = logFileId;
-        this.entriesProcessed = entriesProcessed;
-        this.errorsCount = errorsCount;
-        this.stats = stats;
-        this.entries = entries;
+// Итог загрузки без самих записей: они доступны через /api/logs/entries и /api/logs/entries/stream.
+// У архива записей под его logFileId нет: каждый файл загружен под своим, они перечислены в files
+public record LogUploadResponse(
+        String jobId,
+        String logFileId,
+        String state,
+        long linesRead,
+        long entriesProcessed,
+        long errorsCount,
+        Map<String, Object> stats,
+        Instant startedAt,
+        Instant finishedAt,
+        long durationMs,
+        double linesPerSecond,
+        String error,
+        List<ArchiveFile> files) {
+
+    // Файл архива: дочерняя задача загрузки
+    public record ArchiveFile(String jobId, String logFileId, String source, String state,
+                              long entriesProcessed, long errorsCount, String error) {
+
+        static ArchiveFile from(IngestJobStatus status) {
+            return new ArchiveFile(status.jobId(), status.logFileId(), status.source(), status.state(),
+                    status.entriesIndexed(), status.failedLines(), status.error());
+        }
     }
-    
-    // Error constructor
-    public LogUploadResponse(String error) {
-        this.error = error;
+
+    public static LogUploadResponse from(IngestJobStatus status) {
+        return from(status, List.of());
     }
-    
-    // Static factory method for errors
-    public static LogUploadResponse error(String message) {
-        return new LogUploadResponse(message);
+
+    public static LogUploadResponse from(IngestJobStatus status, List<IngestJobStatus> archiveFiles) {
+        long durationMs = status.startedAt() != null && status.finishedAt() != null
+                ? Duration.between(status.startedAt(), status.finishedAt()).toMillis()
+                : 0;
+
+        return new LogUploadResponse(
+                status.jobId(),
+                status.logFileId(),
+                status.state(),
+                status.linesRead(),
+                status.entriesIndexed(),
+                status.failedLines(),
+                status.stats(),
+                status.startedAt(),
+                status.finishedAt(),
+                durationMs,
+                status.linesPerSecond(),
+                status.error(),
+                archiveFiles.stream().map(ArchiveFile::from).toList());
     }
 
-}
\ No newline at end of file
+    public static LogUploadResponse error(String message) {
+        return new LogUploadResponse(null, null, "FAILED", 0, 0, 0, Map.of(), null, null, 0, 0, message, List.of());
+    }
+}
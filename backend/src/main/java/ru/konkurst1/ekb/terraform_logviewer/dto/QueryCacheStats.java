@@ -0,0 +1,6 @@
+package ru.konkurst1.ekb.terraform_logviewer.dto;
+
+// Счётчики кэша результатов выборок (QueryResultCache); weightBytes - оценка занятой памяти
+public record QueryCacheStats(boolean enabled, int entries, long weightBytes, long maxBytes, int maxEntries,
+                              long hits, long misses, long evictions, long invalidations, double hitRate) {
+}
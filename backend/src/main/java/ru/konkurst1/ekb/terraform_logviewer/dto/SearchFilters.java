@@ -2,9 +2,11 @@ package ru.konkurst1.ekb.terraform_logviewer.dto;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.domain.Sort;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 
 import java.time.Instant;
+import java.util.List;
 
 @Getter
 @Setter
@@ -16,8 +18,51 @@ public class SearchFilters {
     private LogLevel level;
     private String section;
     private String tfReqId;
+    private String tfRpc;
+    private String requestType; // "request", "response" - например, только ответы RPC с длительностью провайдера
     private Boolean onlyUnread = false;
     private String freeText;
+    // Как искать freeText (LogEntryRepositoryImpl.messageCriteria)
+    private TextMatch textMatch = TextMatch.AUTO;
+
+    // Шаблоны сообщений (LogTemplateService): только этот шаблон / скрыть перечисленные
+    private String templateId;
+    private List<String> excludeTemplateIds;
+
+    // Поля обогащения (TerraformContextEnricher)
+    private Long minDurationMs;
+    private Long maxDurationMs;
+    private String requestStatus; // "success", "failed", "warning"
+    private String operationType; // "create", "update", "delete", "read", "unknown"
+    private Integer minSeverity;
+    private Integer maxSeverity;
+
+    private SortField sortBy = SortField.TIMESTAMP;
+    // По умолчанию: время по возрастанию, длительность и важность по убыванию
+    private Sort.Direction sortDirection;
+
     private Integer page = 0;
     private Integer size = 50;
-}
\ No newline at end of file
+
+    public enum TextMatch {
+        AUTO,       // все слова или подстрока; "в кавычках" - фраза
+        MATCH,      // все слова в любом порядке
+        PHRASE,     // слова подряд
+        SUBSTRING   // подстрока без учёта регистра
+    }
+
+    @Getter
+    public enum SortField {
+        TIMESTAMP("timestamp", Sort.Direction.ASC),
+        DURATION("requestDurationMs", Sort.Direction.DESC),
+        SEVERITY("severityScore", Sort.Direction.DESC);
+
+        private final String property;
+        private final Sort.Direction defaultDirection;
+
+        SortField(String property, Sort.Direction defaultDirection) {
+            this.property = property;
+            this.defaultDirection = defaultDirection;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package ru.konkurst1.ekb.terraform_logviewer.dto;
+
+// Шаблон сообщения и число записей с ним (терминальная агрегация по templateId)
+public record TemplateCount(String templateId, String template, long count) {
+}
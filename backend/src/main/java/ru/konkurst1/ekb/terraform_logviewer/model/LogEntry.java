@@ -6,12 +6,16 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
 
 import java.time.Instant;
+import java.util.List;
 
+// Индекс создаёт LogIndexService: terraform_logs - алиас, маппинг rawJson задаётся настройкой
 @Getter
 @Setter
-@Document(indexName = "terraform_logs")
+@Document(indexName = "terraform_logs", createIndex = false)
 public class LogEntry {
     @Id
     private String id;
@@ -22,9 +26,16 @@ public class LogEntry {
     @Field(type = FieldType.Keyword)
     private String level;
 
-    @Field(type = FieldType.Text)
+    // Слова (standard) для match и фраз, message.ngram - триграммы для поиска подстроки
+    // (анализатор message_ngram в log-index-settings.json)
+    @MultiField(mainField = @Field(type = FieldType.Text),
+            otherFields = @InnerField(suffix = "ngram", type = FieldType.Text, analyzer = "message_ngram"))
     private String message;
 
+    // Id шаблона сообщения (TemplateMiner), текст шаблона - в индексе terraform_log_templates
+    @Field(type = FieldType.Keyword)
+    private String templateId;
+
     @Field(type = FieldType.Keyword)
     private String logFileId;
 
@@ -41,25 +52,50 @@ public class LogEntry {
     @Field(type = FieldType.Keyword)
     private String requestType; // "request", "response"
 
+    @Field(type = FieldType.Keyword)
+    private String tfRpc; // "ApplyResourceChange", "ReadResource", ...
+
     @Field(type = FieldType.Keyword)
     private String module;
 
     @Field(type = FieldType.Keyword)
     private String tfProviderAddr;
 
-    // Raw JSON для полного доступа к данным
-    @Field(type = FieldType.Object, enabled = true)
+    @Field(type = FieldType.Keyword)
+    private String caller; // @caller, например "provider/grpc_provider.go:42"
+
+    // Raw JSON для полного доступа к данным; маппинг по app.index.raw-json-mapping (RawJsonMapping),
+    // аннотация соответствует значению по умолчанию
+    @Field(type = FieldType.Flattened)
     private Object rawJson;
 
+    // Ссылка на полные значения в BlobStore ("смещение:длина"), в rawJson/message этих полей - превью
+    @Field(type = FieldType.Keyword, index = false)
+    private String blobRef;
+
+    @Field(type = FieldType.Keyword)
+    private List<String> truncatedFields; // "@message", "tf_http_res_body", ...
+
     @Field(type = FieldType.Integer)
     private Integer lineNumber;
 
+    // Смещение первого байта строки в исходном (распакованном) файле, см. RawLogStore
+    @Field(type = FieldType.Long)
+    private Long byteOffset;
+
     @Field(type = FieldType.Long)
     private Long requestDurationMs;
 
     @Field(type = FieldType.Keyword)
     private String requestStatus; // "success", "failed", "warning"
 
+    // diagnostic_error_count / diagnostic_warning_count из ответа провайдера, общие для всей цепочки RPC
+    @Field(type = FieldType.Integer)
+    private Integer diagnosticErrorCount;
+
+    @Field(type = FieldType.Integer)
+    private Integer diagnosticWarningCount;
+
     @Field(type = FieldType.Keyword)
     private String operationType; // "create", "update", "delete", "read"
 
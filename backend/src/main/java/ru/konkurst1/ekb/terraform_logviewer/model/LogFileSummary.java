@@ -0,0 +1,92 @@
+package ru.konkurst1.ekb.terraform_logviewer.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+// Сводка по загруженному файлу, пишется один раз в конце загрузки; id совпадает с logFileId записей
+@Getter
+@Setter
+@Document(indexName = "terraform_log_files")
+public class LogFileSummary {
+    @Id
+    private String id;
+
+    @Field(type = FieldType.Date)
+    private Instant uploadTime;
+
+    // Границы по меткам времени записей
+    @Field(type = FieldType.Date)
+    private Instant firstTimestamp;
+
+    @Field(type = FieldType.Date)
+    private Instant lastTimestamp;
+
+    @Field(type = FieldType.Long)
+    private Long linesRead;
+
+    @Field(type = FieldType.Long)
+    private Long entryCount;
+
+    @Field(type = FieldType.Long)
+    private Long failedLines;
+
+    @Field(type = FieldType.Long)
+    private Long durationMs;
+
+    // Значение -> число записей; flattened, чтобы новые значения не добавляли поля в маппинг
+    @Field(type = FieldType.Flattened)
+    private Map<String, Long> levelCounts;
+
+    @Field(type = FieldType.Flattened)
+    private Map<String, Long> sectionCounts;
+
+    @Field(type = FieldType.Flattened)
+    private Map<String, Long> resourceTypeCounts;
+
+    @Field(type = FieldType.Flattened)
+    private Map<String, Long> providerCounts;
+
+    @Field(type = FieldType.Flattened)
+    private Map<String, Long> rpcCounts;
+
+    // Гистограмма записей по времени: корзины шириной histogramIntervalMs
+    @Field(type = FieldType.Long)
+    private Long histogramIntervalMs;
+
+    @Field(type = FieldType.Object)
+    private List<HistogramBucket> histogram;
+
+    // Цепочки tf_req_id (RequestChainCorrelator)
+    @Field(type = FieldType.Long)
+    private Long chainCount;
+
+    @Field(type = FieldType.Long)
+    private Long failedChainCount;
+
+    @Field(type = FieldType.Long)
+    private Long warningChainCount;
+
+    @Field(type = FieldType.Long)
+    private Long avgChainDurationMs;
+
+    @Field(type = FieldType.Long)
+    private Long maxChainDurationMs;
+
+    @Getter
+    @Setter
+    public static class HistogramBucket {
+        @Field(type = FieldType.Date)
+        private Instant start;
+
+        @Field(type = FieldType.Long)
+        private Long count;
+    }
+}
@@ -4,5 +4,5 @@ import ru.konkurst1.ekb.terraform_logviewer.service.ParsingError;
 
 import java.util.List;
 
-public record LogParseResult(List<LogEntry> entries, List<ParsingError> errors) {
+public record LogParseResult(List<LogEntry> entries, List<ParsingError> errors, long linesRead) {
 }
\ No newline at end of file
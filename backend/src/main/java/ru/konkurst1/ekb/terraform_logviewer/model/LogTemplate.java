@@ -0,0 +1,43 @@
+package ru.konkurst1.ekb.terraform_logviewer.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.time.Instant;
+import java.util.List;
+
+// Шаблон сообщения в боковом индексе; записи ссылаются на него через LogEntry.templateId
+@Getter
+@Setter
+@Document(indexName = "terraform_log_templates")
+public class LogTemplate {
+    @Id
+    private String id;
+
+    @Field(type = FieldType.Text)
+    private String template; // "Found resource type <*>"
+
+    @Field(type = FieldType.Integer)
+    private Integer tokenCount;
+
+    // Примеры значений параметров <*> по порядку их следования в шаблоне
+    @Field(type = FieldType.Object)
+    private List<Parameter> parameters;
+
+    @Field(type = FieldType.Date)
+    private Instant updatedAt;
+
+    @Getter
+    @Setter
+    public static class Parameter {
+        @Field(type = FieldType.Integer)
+        private Integer index;
+
+        @Field(type = FieldType.Keyword)
+        private List<String> samples;
+    }
+}
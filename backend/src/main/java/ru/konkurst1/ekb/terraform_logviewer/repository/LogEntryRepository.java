@@ -5,52 +5,20 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.annotations.Query;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
 import org.springframework.stereotype.Repository;
-import ru.konkurst1.ekb.terraform_logviewer.dto.LogFileInfo;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface LogEntryRepository extends ElasticsearchRepository<LogEntry, String>, LogEntryRepositoryCustom {
 
     Page<LogEntry> findByLogFileId(String logFileId, Pageable pageable);
 
-    Page<LogEntry> findByLogFileIdAndMessageContainingIgnoreCase(String logFileId, String query, Pageable pageable);
+    Stream<LogEntry> streamByLogFileIdOrderByTimestampAsc(String logFileId);
 
-    @Query("""
-        {
-          "size": 0,
-          "aggs": {
-            "log_files": {
-              "terms": {
-                "field": "logFileId.keyword",
-                "size": 1000
-              },
-              "aggs": {
-                "max_timestamp": {
-                  "max": {
-                    "field": "timestamp"
-                  }
-                },
-                "total_entries": {
-                  "value_count": {
-                    "field": "id"
-                  }
-                },
-                "error_count": {
-                  "filter": {
-                    "term": {
-                      "parsingError": true
-                    }
-                  }
-                }
-              }
-            }
-          }
-        }
-        """)
-    List<LogFileInfo> findLogFileInfo();
+    void deleteByLogFileId(String logFileId);
 
     Long countByLogFileIdAndIsRead(String logFileId, Boolean isRead);
 
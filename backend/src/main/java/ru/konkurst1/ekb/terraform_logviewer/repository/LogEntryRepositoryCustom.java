@@ -2,9 +2,14 @@ package ru.konkurst1.ekb.terraform_logviewer.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.query.Criteria;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 
 public interface LogEntryRepositoryCustom {
     Page<LogEntry> findByLogFileIdAndFilters(String logFileId, LogLevel level, String section, Boolean hasErrors, Pageable pageable);
+
+    Page<LogEntry> searchMessages(String logFileId, String text, Pageable pageable);
+
+    long countMatching(Criteria criteria);
 }
\ No newline at end of file
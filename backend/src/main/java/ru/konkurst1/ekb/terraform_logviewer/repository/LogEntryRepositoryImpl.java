@@ -11,41 +11,107 @@ import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Repository;
+import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 @Repository
 public class LogEntryRepositoryImpl implements LogEntryRepositoryCustom {
+    // Длина n-грамм подполя message.ngram (log-index-settings.json)
+    static final int MESSAGE_NGRAM = 3;
 
     @Autowired
     private ElasticsearchOperations elasticsearchOperations;
 
     @Override
     public Page<LogEntry> findByLogFileIdAndFilters(String logFileId, LogLevel level, String section, Boolean hasErrors, Pageable pageable) {
-        Criteria criteria = new Criteria("logFileId").is(logFileId);
+        Criteria criteria = filterCriteria(logFileId, level, section, hasErrors);
+
+        Query query = new CriteriaQuery(criteria).setPageable(pageable);
+        SearchHits<LogEntry> searchHits = elasticsearchOperations.search(query, LogEntry.class);
+        
+        List<LogEntry> content = searchHits.getSearchHits().stream()
+                .map(SearchHit::getContent)
+                .collect(Collectors.toList());
         
+        return new PageImpl<>(content, pageable, searchHits.getTotalHits());
+    }
+
+    @Override
+    public Page<LogEntry> searchMessages(String logFileId, String text, Pageable pageable) {
+        Criteria criteria = new Criteria("logFileId").is(logFileId)
+                .subCriteria(messageCriteria(text, SearchFilters.TextMatch.AUTO));
+
+        Query query = new CriteriaQuery(criteria).setPageable(pageable);
+        SearchHits<LogEntry> searchHits = elasticsearchOperations.search(query, LogEntry.class);
+
+        List<LogEntry> content = searchHits.getSearchHits().stream()
+                .map(SearchHit::getContent)
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageable, searchHits.getTotalHits());
+    }
+
+    // Только число совпадений (_count), документы не читаются
+    @Override
+    public long countMatching(Criteria criteria) {
+        return elasticsearchOperations.count(new CriteriaQuery(criteria), LogEntry.class);
+    }
+
+    /**
+     * Поиск по тексту сообщения без wildcard-запросов: MATCH - все слова (match, operator and),
+     * PHRASE - фраза по словам, SUBSTRING - подстрока как фраза из триграмм подполя message.ngram
+     * (подстрока короче триграммы - как начало слова). AUTO - слова или подстрока, текст в кавычках - фраза.
+     * Результат добавляется к остальным условиям через subCriteria, чтобы OR не смешался с их AND.
+     */
+    public static Criteria messageCriteria(String text, SearchFilters.TextMatch mode) {
+        String value = text.trim();
+        SearchFilters.TextMatch match = mode != null ? mode : SearchFilters.TextMatch.AUTO;
+        boolean quoted = value.length() > 2 && value.startsWith("\"") && value.endsWith("\"");
+        if (match == SearchFilters.TextMatch.AUTO && quoted) {
+            match = SearchFilters.TextMatch.PHRASE;
+            value = value.substring(1, value.length() - 1);
+        }
+        return switch (match) {
+            case MATCH -> new Criteria("message").matchesAll(value);
+            case PHRASE -> new Criteria("message").expression(phrase(value));
+            case SUBSTRING -> substringCriteria(value);
+            case AUTO -> new Criteria().or(new Criteria("message").matchesAll(value)).or(substringCriteria(value));
+        };
+    }
+
+    private static Criteria substringCriteria(String value) {
+        if (value.length() < MESSAGE_NGRAM) {
+            return new Criteria("message").startsWith(value.toLowerCase(Locale.ROOT));
+        }
+        return new Criteria("message.ngram").expression(phrase(value));
+    }
+
+    // Строка в кавычках для query_string - это фраза: слова (или триграммы) на соседних позициях
+    static String phrase(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    // Те же фильтры используются и постраничной выдачей курсором (LogStorageService.findEntriesByCursor)
+    public static Criteria filterCriteria(String logFileId, LogLevel level, String section, Boolean hasErrors) {
+        Criteria criteria = new Criteria("logFileId").is(logFileId);
+
         if (level != null) {
             criteria = criteria.and(new Criteria("level").is(level));
         }
-        
+
         if (section != null) {
             criteria = criteria.and(new Criteria("section").is(section));
         }
-        
+
         if (hasErrors != null) {
             criteria = criteria.and(new Criteria("parsingError").is(hasErrors));
         }
 
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        SearchHits<LogEntry> searchHits = elasticsearchOperations.search(query, LogEntry.class);
-        
-        List<LogEntry> content = searchHits.getSearchHits().stream()
-                .map(SearchHit::getContent)
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(content, pageable, searchHits.getTotalHits());
+        return criteria;
     }
 }
\ No newline at end of file
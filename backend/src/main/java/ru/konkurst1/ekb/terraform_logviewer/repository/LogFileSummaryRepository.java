@@ -0,0 +1,9 @@
+package ru.konkurst1.ekb.terraform_logviewer.repository;
+
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogFileSummary;
+
+@Repository
+public interface LogFileSummaryRepository extends ElasticsearchRepository<LogFileSummary, String> {
+}
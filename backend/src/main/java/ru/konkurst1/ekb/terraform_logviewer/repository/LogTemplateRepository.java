@@ -0,0 +1,9 @@
+package ru.konkurst1.ekb.terraform_logviewer.repository;
+
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogTemplate;
+
+@Repository
+public interface LogTemplateRepository extends ElasticsearchRepository<LogTemplate, String> {
+}
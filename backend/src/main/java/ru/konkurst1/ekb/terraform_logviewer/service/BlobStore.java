@@ -0,0 +1,206 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранилище больших значений вне индекса: строковые поля записи длиннее threshold символов
+ * (многокилобайтные @message, tf_http_req_body/tf_http_res_body) уходят в локальный файл
+ * {@code <dir>/<logFileId>.blobs}, а в индексе остаётся превью из previewLength символов.
+ * Значения одной записи сжимаются вместе (gzip) и дописываются в конец файла; ссылка
+ * "смещение:длина" сохраняется в {@link LogEntry#getBlobRef()}, поэтому чтение - один позиционный read.
+ * Вложенные объекты rawJson не выносятся.
+ */
+@Service
+public class BlobStore {
+    private static final Logger logger = LoggerFactory.getLogger(BlobStore.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String SUFFIX = ".blobs";
+    private static final String ELLIPSIS = "…";
+
+    @Value("${app.blobs.dir:${java.io.tmpdir}/terraform-logviewer-blobs}")
+    private String directory = System.getProperty("java.io.tmpdir") + "/terraform-logviewer-blobs";
+
+    // 0 - не выносить ничего
+    @Value("${app.blobs.threshold:1024}")
+    private int threshold = 1024;
+
+    @Value("${app.blobs.preview-length:256}")
+    private int previewLength = 256;
+
+    // Файл создаётся при первом вынесенном значении: у большинства загрузок длинных значений нет
+    public Writer openWriter(String logFileId) {
+        return new Writer(logFileId, blobFile(logFileId));
+    }
+
+    // Полные значения вынесенных полей записи: имя поля -> значение
+    public Optional<Map<String, Object>> read(String logFileId, String blobRef) throws IOException {
+        if (blobRef == null) {
+            return Optional.empty();
+        }
+        int separator = blobRef.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed blob reference: " + blobRef);
+        }
+        long offset = Long.parseLong(blobRef, 0, separator, 10);
+        int length = Integer.parseInt(blobRef, separator + 1, blobRef.length(), 10);
+
+        Path file = blobFile(logFileId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Blob " + blobRef + " is beyond the end of " + file);
+                }
+            }
+        }
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(buffer.array()))) {
+            return Optional.of(MAPPER.readValue(input, new TypeReference<LinkedHashMap<String, Object>>() {
+            }));
+        }
+    }
+
+    public void delete(String logFileId) {
+        try {
+            Files.deleteIfExists(blobFile(logFileId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete blobs of {}: {}", logFileId, e.getMessage());
+        }
+    }
+
+    private Path blobFile(String logFileId) {
+        // logFileId становится именем файла, выйти за пределы каталога он не должен
+        if (logFileId == null || logFileId.isEmpty() || logFileId.contains("/") || logFileId.contains("\\")
+                || logFileId.contains("..")) {
+            throw new IllegalArgumentException("Invalid logFileId for blob store: " + logFileId);
+        }
+        return Path.of(directory).resolve(logFileId + SUFFIX);
+    }
+
+    /**
+     * Запись блобов одной загрузки; используется одним потоком (стадия индексации конвейера).
+     */
+    public class Writer implements AutoCloseable {
+        private final String logFileId;
+        private final Path file;
+        private FileChannel channel;
+        private long position;
+        private long offloadedValues;
+        private long offloadedChars;
+        private long storedBytes;
+
+        private Writer(String logFileId, Path file) {
+            this.logFileId = logFileId;
+            this.file = file;
+        }
+
+        // Выносит длинные строковые значения записей батча и заменяет их в записях превью
+        public void offload(List<LogEntry> entries) {
+            if (threshold <= 0) {
+                return;
+            }
+            for (LogEntry entry : entries) {
+                if (entry.getRawJson() instanceof Map<?, ?> rawJson) {
+                    offload(entry, castRawJson(rawJson));
+                }
+            }
+        }
+
+        private void offload(LogEntry entry, Map<String, Object> rawJson) {
+            Map<String, Object> oversized = null;
+            for (Map.Entry<String, Object> field : rawJson.entrySet()) {
+                if (field.getValue() instanceof String value && value.length() > threshold) {
+                    if (oversized == null) {
+                        oversized = new LinkedHashMap<>();
+                    }
+                    oversized.put(field.getKey(), value);
+                }
+            }
+            if (oversized == null) {
+                return;
+            }
+
+            try {
+                if (channel == null) {
+                    Files.createDirectories(file.getParent());
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    position = channel.size();
+                }
+                byte[] compressed = compress(oversized);
+                ByteBuffer buffer = ByteBuffer.wrap(compressed);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position());
+                }
+                entry.setBlobRef(position + ":" + compressed.length);
+                position += compressed.length;
+                storedBytes += compressed.length;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write blob of " + entry.getId() + " to " + logFileId, e);
+            }
+
+            List<String> truncated = new ArrayList<>(oversized.size());
+            for (Map.Entry<String, Object> field : oversized.entrySet()) {
+                String value = (String) field.getValue();
+                String preview = value.substring(0, Math.min(previewLength, value.length())) + ELLIPSIS;
+                rawJson.put(field.getKey(), preview);
+                if ("@message".equals(field.getKey())) {
+                    entry.setMessage(preview);
+                }
+                truncated.add(field.getKey());
+                offloadedValues++;
+                offloadedChars += value.length();
+            }
+            entry.setTruncatedFields(truncated);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+            if (offloadedValues > 0) {
+                logger.info("{}: {} values ({} chars) moved to blob store, {} bytes compressed",
+                        logFileId, offloadedValues, offloadedChars, storedBytes);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castRawJson(Map<?, ?> rawJson) {
+        return (Map<String, Object>) rawJson;
+    }
+
+    private static byte[] compress(Map<String, Object> values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            MAPPER.writeValue(gzip, values);
+        }
+        return bytes.toByteArray();
+    }
+}
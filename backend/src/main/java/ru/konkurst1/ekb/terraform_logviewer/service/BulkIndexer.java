@@ -0,0 +1,455 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * Bulk-индексация записей в Elasticsearch для конвейера загрузки.
+ * Сессия копит документы и отправляет bulk-запрос, когда набралось maxDocs документов,
+ * maxBytes байт или прошло flushInterval с последней отправки. Одновременно в полёте не больше
+ * maxInFlight запросов на все сессии: если лимит исчерпан, add() блокируется (backpressure).
+ * Ответы 429/5xx, ошибки ввода-вывода и отказы отдельных документов повторяются с экспоненциальной задержкой;
+ * повтор запроса целиком безопасен, потому что id документов назначает парсер (logFileId:lineNumber).
+ * Частичные обновления цепочек ({@link ChainUpdate}) идут в тех же bulk-запросах; запрос с обновлениями
+ * отправляется только после завершения всех ранее снятых с буфера (в том числе ещё ждущих слота),
+ * чтобы обновление не обогнало индексацию документа.
+ * Пока открыта хотя бы одна сессия, refresh_interval индекса выключен; закрытие каждой сессии заканчивается
+ * refresh, поэтому после close() её документы видны поиску, даже если другие загрузки ещё идут.
+ */
+@Service
+public class BulkIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(BulkIndexer.class);
+    private static final String REFRESH_DISABLED = "-1";
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+    // Частичное обновление - несколько коротких полей
+    private static final int UPDATE_SIZE_ESTIMATE = 128;
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+    @Autowired
+    private LogIndexService logIndexService;
+
+    @Value("${app.bulk.max-docs:5000}")
+    private int maxDocs = 5000;
+
+    @Value("${app.bulk.max-bytes:10485760}")
+    private long maxBytes = 10 * 1024 * 1024;
+
+    @Value("${app.bulk.flush-interval:PT5S}")
+    private Duration flushInterval = Duration.ofSeconds(5);
+
+    @Value("${app.bulk.max-in-flight:2}")
+    private int maxInFlight = 2;
+
+    @Value("${app.bulk.max-retries:5}")
+    private int maxRetries = 5;
+
+    @Value("${app.bulk.initial-backoff:PT0.5S}")
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    @Value("${app.bulk.disable-refresh:true}")
+    private boolean disableRefresh = true;
+
+    private final ExecutorService bulkExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bulk-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Semaphore inFlightPermits;
+    private int openSessions;
+    private String savedRefreshInterval;
+
+    public Session openSession(LongConsumer onIndexed) {
+        logIndexService.ensureIndex();
+        String indexName = elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class).getIndexName();
+        onSessionOpened(indexName);
+        return new Session(indexName, onIndexed);
+    }
+
+    public record Stats(long indexed, long updated, long failed, long bulkRequests, long retries, long durationMs) {
+
+        public double docsPerSecond() {
+            return durationMs > 0 ? indexed * 1000.0 / durationMs : 0;
+        }
+    }
+
+    public class Session implements AutoCloseable {
+        private final String indexName;
+        private final LongConsumer onIndexed;
+        private final long startedAt = System.nanoTime();
+        private final List<PendingDocument> buffer = new ArrayList<>();
+        private final List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong updated = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong bulkRequests = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicReference<RuntimeException> fatalError = new AtomicReference<>();
+        private final ScheduledFuture<?> flushTask;
+        private long bufferBytes;
+        private long lastFlushAt = System.nanoTime();
+        private boolean closed;
+
+        private Session(String indexName, LongConsumer onIndexed) {
+            this.indexName = indexName;
+            this.onIndexed = onIndexed;
+            long intervalMs = flushInterval.toMillis();
+            this.flushTask = flushScheduler.scheduleAtFixedRate(
+                    () -> bulkExecutor.execute(this::flushIfIdle), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        public void addAll(List<LogEntry> entries) {
+            for (LogEntry entry : entries) {
+                add(entry);
+            }
+        }
+
+        public void add(LogEntry entry) {
+            throwIfFailed();
+            Document document = elasticsearchOperations.getElasticsearchConverter().mapObject(entry);
+            byte[] source = document.toJson().getBytes(StandardCharsets.UTF_8);
+            enqueue(new PendingDocument(entry, source, null), source.length);
+        }
+
+        public void updateAll(List<ChainUpdate> updates) {
+            for (ChainUpdate update : updates) {
+                update(update);
+            }
+        }
+
+        public void update(ChainUpdate update) {
+            throwIfFailed();
+            enqueue(new PendingDocument(null, null, update), UPDATE_SIZE_ESTIMATE);
+        }
+
+        private void enqueue(PendingDocument document, long size) {
+            Batch toSend = null;
+            synchronized (this) {
+                buffer.add(document);
+                bufferBytes += size;
+                if (buffer.size() >= maxDocs || bufferBytes >= maxBytes) {
+                    toSend = drainBuffer();
+                }
+            }
+            if (toSend != null) {
+                dispatch(toSend);
+            }
+        }
+
+        private void flushIfIdle() {
+            Batch toSend;
+            synchronized (this) {
+                boolean idle = System.nanoTime() - lastFlushAt >= flushInterval.toNanos();
+                if (closed || buffer.isEmpty() || !idle) {
+                    return;
+                }
+                toSend = drainBuffer();
+            }
+            dispatch(toSend);
+        }
+
+        // Вызывается под блокировкой сессии. Запрос попадает в inFlight сразу, ещё до ожидания семафора:
+        // батч с обновлениями, снятый с буфера позже, обязательно дождётся индексации этих документов
+        private Batch drainBuffer() {
+            List<PendingDocument> drained = new ArrayList<>(buffer);
+            buffer.clear();
+            bufferBytes = 0;
+            lastFlushAt = System.nanoTime();
+
+            inFlight.removeIf(CompletableFuture::isDone);
+            CompletableFuture<Void> previous = drained.stream().anyMatch(PendingDocument::isUpdate)
+                    ? CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).exceptionally(error -> null)
+                    : null;
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            inFlight.add(done);
+            return new Batch(drained, previous, done);
+        }
+
+        private void dispatch(Batch batch) {
+            try {
+                // Обновления ждут предыдущие запросы до семафора: иначе они держали бы разрешение,
+                // которого ждут сами эти запросы
+                if (batch.previous() != null) {
+                    batch.previous().join();
+                }
+                inFlightPermits().acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.addAndGet(batch.documents().size());
+                batch.done().complete(null);
+                throw new IllegalStateException("Interrupted while waiting for a bulk slot", e);
+            }
+
+            CompletableFuture
+                    .runAsync(() -> executeWithRetry(batch.documents()), bulkExecutor)
+                    .whenComplete((ignored, error) -> {
+                        inFlightPermits().release();
+                        if (error != null) {
+                            fatalError.compareAndSet(null, new IllegalStateException(
+                                    "Bulk indexing failed: " + error.getMessage(), error));
+                        }
+                        batch.done().complete(null);
+                    });
+        }
+
+        private void executeWithRetry(List<PendingDocument> documents) {
+            List<PendingDocument> pending = documents;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    bulkRequests.incrementAndGet();
+                    pending = sendBulk(pending);
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                } catch (ElasticsearchException e) {
+                    if (!isRetryable(e.status())) {
+                        failed.addAndGet(pending.size());
+                        throw e;
+                    }
+                    logger.warn("Bulk request to {} rejected with status {}, attempt {}", indexName, e.status(), attempt + 1);
+                } catch (IOException e) {
+                    logger.warn("Bulk request to {} failed: {}, attempt {}", indexName, e.getMessage(), attempt + 1);
+                }
+
+                if (attempt >= maxRetries) {
+                    failed.addAndGet(pending.size());
+                    throw new IllegalStateException(pending.size() + " documents were not indexed after "
+                            + (maxRetries + 1) + " attempts");
+                }
+                retries.incrementAndGet();
+                sleep(initialBackoff.multipliedBy(1L << Math.min(attempt, 10)));
+            }
+        }
+
+        // Отправляет документы и возвращает те, которые стоит повторить
+        private List<PendingDocument> sendBulk(List<PendingDocument> documents) throws IOException {
+            BulkRequest.Builder request = new BulkRequest.Builder();
+            for (PendingDocument document : documents) {
+                if (document.isUpdate()) {
+                    ChainUpdate update = document.update();
+                    request.operations(operation -> operation.update(partial -> partial
+                            .index(indexName)
+                            .id(update.documentId())
+                            .action(action -> action.doc(update.toDocument()))));
+                } else {
+                    BinaryData source = BinaryData.of(document.source(), ContentType.APPLICATION_JSON);
+                    request.operations(operation -> operation.index(index -> index
+                            .index(indexName)
+                            .id(document.entry().getId())
+                            .document(source)));
+                }
+            }
+
+            BulkResponse response = elasticsearchClient.bulk(request.build());
+            List<BulkResponseItem> items = response.items();
+            List<PendingDocument> retry = new ArrayList<>();
+            long succeeded = 0;
+
+            for (int i = 0; i < items.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                PendingDocument document = documents.get(i);
+                if (item.error() == null && document.isUpdate()) {
+                    updated.incrementAndGet();
+                } else if (item.error() == null) {
+                    document.entry().setId(item.id());
+                    succeeded++;
+                } else if (isRetryable(item.status())) {
+                    retry.add(document);
+                } else {
+                    failed.incrementAndGet();
+                    logger.warn("Document rejected by {}: {} {}", indexName, item.error().type(), item.error().reason());
+                }
+            }
+
+            indexed.addAndGet(succeeded);
+            if (onIndexed != null && succeeded > 0) {
+                onIndexed.accept(succeeded);
+            }
+            return retry;
+        }
+
+        private void throwIfFailed() {
+            RuntimeException error = fatalError.get();
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        @Override
+        public void close() {
+            Batch toSend;
+            List<CompletableFuture<Void>> pending;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                flushTask.cancel(false);
+                toSend = buffer.isEmpty() ? null : drainBuffer();
+            }
+
+            try {
+                if (toSend != null && fatalError.get() == null) {
+                    dispatch(toSend);
+                } else if (toSend != null) {
+                    // После фатальной ошибки остаток буфера не отправляется - он тоже не проиндексирован
+                    failed.addAndGet(toSend.documents().size());
+                    toSend.done().complete(null);
+                }
+                synchronized (this) {
+                    pending = new ArrayList<>(inFlight);
+                }
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                        .exceptionally(error -> null)
+                        .join();
+            } finally {
+                onSessionClosed(indexName);
+                refresh(indexName);
+            }
+
+            Stats stats = stats();
+            logger.info("Bulk indexed {} docs into {} in {} ms ({} docs/s), {} updated, {} failed, {} requests, {} retries",
+                    stats.indexed(), indexName, stats.durationMs(), Math.round(stats.docsPerSecond()),
+                    stats.updated(), stats.failed(), stats.bulkRequests(), stats.retries());
+            throwIfFailed();
+        }
+
+        public Stats stats() {
+            return new Stats(indexed.get(), updated.get(), failed.get(), bulkRequests.get(), retries.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+    }
+
+    // Документы одного bulk-запроса; previous - запросы, которые должны завершиться раньше (есть обновления),
+    // done завершается вместе с запросом
+    private record Batch(List<PendingDocument> documents, CompletableFuture<Void> previous,
+                         CompletableFuture<Void> done) {
+    }
+
+    // Либо документ на индексацию (entry, source), либо частичное обновление (update)
+    private record PendingDocument(LogEntry entry, byte[] source, ChainUpdate update) {
+
+        boolean isUpdate() {
+            return update != null;
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        // 429 - очередь bulk переполнена, 5xx - временная недоступность узла
+        return status == 429 || status >= 500;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during bulk retry backoff", e);
+        }
+    }
+
+    private synchronized Semaphore inFlightPermits() {
+        if (inFlightPermits == null) {
+            inFlightPermits = new Semaphore(Math.max(1, maxInFlight));
+        }
+        return inFlightPermits;
+    }
+
+    // refresh_interval выключается при открытии первой сессии и восстанавливается после закрытия последней
+    private synchronized void onSessionOpened(String indexName) {
+        if (openSessions++ > 0 || !disableRefresh) {
+            return;
+        }
+        try {
+            savedRefreshInterval = currentRefreshInterval(indexName);
+            elasticsearchClient.indices().putSettings(request -> request
+                    .index(indexName)
+                    .settings(settings -> settings.refreshInterval(time -> time.time(REFRESH_DISABLED))));
+            logger.info("Disabled refresh of {} for bulk ingest (was {})", indexName, savedRefreshInterval);
+        } catch (IOException | ElasticsearchException e) {
+            logger.warn("Failed to disable refresh of {}: {}", indexName, e.getMessage());
+        }
+    }
+
+    private synchronized void onSessionClosed(String indexName) {
+        if (--openSessions > 0 || !disableRefresh) {
+            return;
+        }
+        String restored = savedRefreshInterval != null ? savedRefreshInterval : DEFAULT_REFRESH_INTERVAL;
+        try {
+            elasticsearchClient.indices().putSettings(request -> request
+                    .index(indexName)
+                    .settings(settings -> settings.refreshInterval(time -> time.time(restored))));
+            logger.info("Restored refresh of {} to {}", indexName, restored);
+        } catch (IOException | ElasticsearchException e) {
+            logger.warn("Failed to restore refresh of {}: {}", indexName, e.getMessage());
+        }
+    }
+
+    // Явный refresh работает и при выключенном refresh_interval
+    private void refresh(String indexName) {
+        try {
+            elasticsearchClient.indices().refresh(request -> request.index(indexName));
+        } catch (IOException | ElasticsearchException e) {
+            logger.warn("Failed to refresh {}: {}", indexName, e.getMessage());
+        }
+    }
+
+    private String currentRefreshInterval(String indexName) throws IOException {
+        GetIndicesSettingsResponse response = elasticsearchClient.indices().getSettings(request -> request.index(indexName));
+        // По алиасу ответ приходит под именем физического индекса
+        IndexState state = response.get(indexName);
+        if (state == null && response.result().size() == 1) {
+            state = response.result().values().iterator().next();
+        }
+        if (state == null || state.settings() == null) {
+            return null;
+        }
+        IndexSettings settings = state.settings();
+        Time refreshInterval = settings.index() != null ? settings.index().refreshInterval() : settings.refreshInterval();
+        return refreshInterval != null && !REFRESH_DISABLED.equals(refreshInterval.time()) ? refreshInterval.time() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdownNow();
+        bulkExecutor.shutdown();
+    }
+}
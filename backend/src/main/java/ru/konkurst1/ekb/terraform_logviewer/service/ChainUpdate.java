@@ -0,0 +1,27 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Итог цепочки tf_req_id для записи, которая уже ушла на индексацию.
+ * Отправляется частичным обновлением документа documentId.
+ */
+public record ChainUpdate(String documentId, Long requestDurationMs, String requestStatus, boolean partOfRequestChain,
+                          Integer diagnosticErrorCount, Integer diagnosticWarningCount) {
+
+    // Имена полей совпадают с полями LogEntry в индексе
+    public Map<String, Object> toDocument() {
+        Map<String, Object> document = new HashMap<>();
+        if (requestDurationMs != null) {
+            document.put("requestDurationMs", requestDurationMs);
+        }
+        document.put("requestStatus", requestStatus);
+        document.put("isPartOfRequestChain", partOfRequestChain);
+        if (diagnosticErrorCount != null) {
+            document.put("diagnosticErrorCount", diagnosticErrorCount);
+            document.put("diagnosticWarningCount", diagnosticWarningCount);
+        }
+        return document;
+    }
+}
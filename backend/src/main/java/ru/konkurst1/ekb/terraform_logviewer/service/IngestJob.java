@@ -0,0 +1,138 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import ru.konkurst1.ekb.terraform_logviewer.dto.IngestJobStatus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+public class IngestJob {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final String logFileId;
+    private final String source;
+    private final String parentId;
+    private final Instant createdAt = Instant.now();
+    private final IngestProgress progress;
+    private final LogStatsCollector stats = new LogStatsCollector();
+
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    public IngestJob(String id, String logFileId, String source) {
+        this(id, logFileId, source, null);
+    }
+
+    // Задача для одного файла из архива: её прогресс и отмена связаны с задачей архива
+    public IngestJob(String id, String logFileId, String source, IngestJob parent) {
+        this.id = id;
+        this.logFileId = logFileId;
+        this.source = source;
+        this.parentId = parent != null ? parent.getId() : null;
+        this.progress = new IngestProgress(parent != null ? parent.getProgress() : null);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLogFileId() {
+        return logFileId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public IngestProgress getProgress() {
+        return progress;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void markRunning() {
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void markFinished(State finalState, String errorMessage) {
+        error = errorMessage;
+        finishedAt = Instant.now();
+        state = finalState;
+    }
+
+    // Поток прерывается только при первой отмене, чтобы повторная не оборвала удаление записей
+    synchronized void cancel() {
+        if (progress.isCancelled()) {
+            return;
+        }
+        progress.cancel();
+        Future<?> running = future;
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
+
+    public LogStatsCollector getStats() {
+        return stats;
+    }
+
+    public IngestJobStatus toStatus() {
+        double elapsedSeconds = 0;
+        if (startedAt != null) {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            elapsedSeconds = Duration.between(startedAt, end).toMillis() / 1000.0;
+        }
+
+        return new IngestJobStatus(
+                id,
+                logFileId,
+                source,
+                parentId,
+                state.name(),
+                progress.getBytesRead(),
+                progress.getLinesRead(),
+                progress.getEntriesParsed(),
+                progress.getEntriesIndexed(),
+                progress.getFailedLines(),
+                elapsedSeconds > 0 ? progress.getLinesRead() / elapsedSeconds : 0,
+                elapsedSeconds > 0 ? progress.getEntriesIndexed() / elapsedSeconds : 0,
+                progress.getDictionaryLookups(),
+                progress.getDictionaryHitRate(),
+                createdAt,
+                startedAt,
+                finishedAt,
+                stats.snapshot(),
+                error
+        );
+    }
+}
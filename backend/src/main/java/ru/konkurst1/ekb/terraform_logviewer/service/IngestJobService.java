@@ -0,0 +1,338 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Асинхронные задачи загрузки: HTTP-запрос только сохраняет файл и сразу возвращает id задачи,
+ * а сам конвейер работает на виртуальных потоках. Одновременно выполняется не больше
+ * maxConcurrentJobs задач, остальные ждут в состоянии QUEUED.
+ * Работающая задача держит read-блокировку индекса, обслуживание индекса ({@link #withIngestBlocked}) - write:
+ * пока оно идёт, новые задачи ждут в QUEUED и начинают писать уже в новый индекс.
+ */
+@Service
+public class IngestJobService {
+    private static final Logger logger = LoggerFactory.getLogger(IngestJobService.class);
+
+    @Autowired
+    private LogIngestionPipeline ingestionPipeline;
+    @Autowired
+    private LogStorageService logStorageService;
+
+    @Value("${app.ingest.spool-dir:${java.io.tmpdir}}")
+    private String spoolDir;
+
+    @Value("${app.ingest.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs = 2;
+
+    @Value("${app.ingest.job-retention:PT1H}")
+    private Duration jobRetention = Duration.ofHours(1);
+
+    @Value("${app.ingest.progress-interval:PT0.5S}")
+    private Duration progressInterval = Duration.ofMillis(500);
+
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService jobExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService progressScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ingest-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Semaphore jobPermits;
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    // Обслуживание индекса, которому нельзя пересекаться с загрузками (миграция)
+    @FunctionalInterface
+    public interface IndexMaintenance<T> {
+        T run() throws IOException;
+    }
+
+    public IngestJob submitUpload(MultipartFile file) throws IOException {
+        // Временный файл multipart удаляется по окончании запроса, поэтому переносим его к себе.
+        // Сжатые загрузки сохраняются как есть и разжимаются потоком уже при разборе
+        Path spooled = Files.createTempFile(Path.of(spoolDir), "upload-", ".log");
+        file.transferTo(spooled);
+
+        return submit(spooled, file.getOriginalFilename(), true, file.getContentType());
+    }
+
+    // Загрузка «сырым» телом запроса, сжатие указывается в Content-Encoding
+    public IngestJob submitStream(InputStream body, String filename, String encodingHint) throws IOException {
+        Path spooled = Files.createTempFile(Path.of(spoolDir), "upload-", ".log");
+        try {
+            Files.copy(body, spooled, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(spooled);
+            throw e;
+        }
+
+        return submit(spooled, filename, true, encodingHint);
+    }
+
+    public IngestJob submitLocalFile(Path file) {
+        return submit(file, file.toString(), false, null);
+    }
+
+    private IngestJob submit(Path file, String source, boolean deleteAfter, String encodingHint) {
+        evictFinishedJobs();
+
+        IngestJob job = new IngestJob(UUID.randomUUID().toString(), UUID.randomUUID().toString(), source);
+        jobs.put(job.getId(), job);
+        job.setFuture(jobExecutor.submit(() -> runJob(job, file, deleteAfter, encodingHint)));
+
+        logger.info("Queued ingest job {} for {} (logFileId {})", job.getId(), source, job.getLogFileId());
+        return job;
+    }
+
+    private void runJob(IngestJob job, Path file, boolean deleteAfter, String encodingHint) {
+        boolean acquired = false;
+        Lock ingestLock = indexLock.readLock();
+        boolean locked = false;
+        try {
+            permits().acquire();
+            acquired = true;
+            ingestLock.lockInterruptibly();
+            locked = true;
+            if (job.getProgress().isCancelled()) {
+                throw new CancellationException("Ingestion cancelled");
+            }
+
+            job.markRunning();
+            ingest(job, file, encodingHint);
+            job.markFinished(IngestJob.State.COMPLETED, null);
+
+        } catch (Exception e) {
+            if (job.getProgress().isCancelled()) {
+                // cancel(true) прервал этот поток: без сброса флага удаление оборвалось бы на первом запросе
+                Thread.interrupted();
+                // Частично загруженные записи отменённой задачи не нужны, в том числе файлы архива
+                getChildJobs(job).forEach(this::finishCancelled);
+                finishCancelled(job);
+            } else {
+                logger.error("Ingest job {} failed", job.getId(), e);
+                job.markFinished(IngestJob.State.FAILED, e.getMessage());
+            }
+        } finally {
+            if (locked) {
+                ingestLock.unlock();
+            }
+            if (acquired) {
+                permits().release();
+            }
+            if (deleteAfter) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private void ingest(IngestJob job, Path file, String encodingHint) throws IOException {
+        LogStreamDecoder.Format format = LogStreamDecoder.detect(file, encodingHint);
+        if (format == LogStreamDecoder.Format.PLAIN) {
+            // Несжатый файл отображается в память
+            ingestionPipeline.ingest(file, job.getLogFileId(), job.getProgress(), job.getStats()::accept);
+            return;
+        }
+
+        logger.info("Ingest job {}: decoding {} upload on the fly", job.getId(), format);
+        try (InputStream decoded = LogStreamDecoder.decompress(Files.newInputStream(file), format)) {
+            ArchiveInputStream<? extends ArchiveEntry> archive = LogStreamDecoder.openArchive(decoded);
+            if (archive == null) {
+                ingestionPipeline.ingest(decoded, job.getLogFileId(), job.getProgress(), job.getStats()::accept);
+            } else {
+                ingestArchive(job, archive);
+            }
+        }
+    }
+
+    // Каждый файл архива загружается под своим logFileId отдельной дочерней задачей
+    private void ingestArchive(IngestJob parent, ArchiveInputStream<? extends ArchiveEntry> archive) throws IOException {
+        int files = 0;
+        int failed = 0;
+        ArchiveEntry entry;
+        while ((entry = archive.getNextEntry()) != null) {
+            if (entry.isDirectory() || !archive.canReadEntryData(entry)) {
+                continue;
+            }
+            if (parent.getProgress().isCancelled()) {
+                throw new CancellationException("Ingestion cancelled");
+            }
+
+            IngestJob child = new IngestJob(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                    parent.getSource() + "!/" + entry.getName(), parent);
+            jobs.put(child.getId(), child);
+            child.markRunning();
+            files++;
+
+            try {
+                ingestionPipeline.ingest(LogStreamDecoder.nonClosing(archive), child.getLogFileId(), child.getProgress(),
+                        batch -> {
+                            child.getStats().accept(batch);
+                            parent.getStats().accept(batch);
+                        });
+                child.markFinished(IngestJob.State.COMPLETED, null);
+            } catch (IOException | RuntimeException e) {
+                if (parent.getProgress().isCancelled()) {
+                    throw e;
+                }
+                if (child.getProgress().isCancelled()) {
+                    finishCancelled(child);
+                } else {
+                    failed++;
+                    logger.error("Ingest of archive entry {} failed", child.getSource(), e);
+                    child.markFinished(IngestJob.State.FAILED, e.getMessage());
+                }
+            }
+        }
+
+        logger.info("Ingest job {}: {} files ingested from archive", parent.getId(), files - failed);
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + files + " archive files failed");
+        }
+    }
+
+    private void finishCancelled(IngestJob job) {
+        try {
+            logStorageService.deleteEntries(job.getLogFileId());
+        } catch (RuntimeException e) {
+            logger.error("Failed to delete entries of cancelled ingest job {}", job.getId(), e);
+        }
+        job.markFinished(IngestJob.State.CANCELLED, null);
+        logger.info("Ingest job {} cancelled", job.getId());
+    }
+
+    // Задачи файлов архива
+    public List<IngestJob> getChildJobs(IngestJob parent) {
+        return jobs.values().stream()
+                .filter(job -> parent.getId().equals(job.getParentId()))
+                .toList();
+    }
+
+    // Выполняет action, если сейчас ничего не загружается, и держит новые задачи в очереди до его окончания;
+    // пустой результат - идут загрузки
+    public <T> Optional<T> withIngestBlocked(IndexMaintenance<T> action) throws IOException {
+        Lock lock = indexLock.writeLock();
+        if (!lock.tryLock()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(action.run());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public IngestJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public List<IngestJob> getJobs() {
+        evictFinishedJobs();
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(IngestJob::getCreatedAt))
+                .toList();
+    }
+
+    public boolean cancel(String jobId) {
+        IngestJob job = jobs.get(jobId);
+        if (job == null || job.getState().isFinished()) {
+            return false;
+        }
+        job.cancel();
+        return true;
+    }
+
+    // Периодически отправляет статус задачи, пока она не завершится
+    public SseEmitter subscribe(IngestJob job) {
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+
+        task.set(progressScheduler.scheduleAtFixedRate(() -> {
+            try {
+                boolean finished = job.getState().isFinished();
+                emitter.send(SseEmitter.event()
+                        .name(finished ? "finished" : "progress")
+                        .data(job.toStatus()));
+                if (finished) {
+                    emitter.complete();
+                    cancelTask(task);
+                }
+            } catch (Exception e) {
+                // Клиент отключился
+                emitter.completeWithError(e);
+                cancelTask(task);
+            }
+        }, 0, progressInterval.toMillis(), TimeUnit.MILLISECONDS));
+
+        emitter.onCompletion(() -> cancelTask(task));
+        emitter.onTimeout(() -> cancelTask(task));
+        return emitter;
+    }
+
+    private static void cancelTask(AtomicReference<ScheduledFuture<?>> task) {
+        ScheduledFuture<?> scheduled = task.get();
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    private void evictFinishedJobs() {
+        Instant threshold = Instant.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.getState().isFinished()
+                && job.getFinishedAt() != null
+                && job.getFinishedAt().isBefore(threshold));
+    }
+
+    private synchronized Semaphore permits() {
+        if (jobPermits == null) {
+            jobPermits = new Semaphore(Math.max(1, maxConcurrentJobs), true);
+        }
+        return jobPermits;
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spooled upload {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(IngestJob::cancel);
+        jobExecutor.shutdownNow();
+        progressScheduler.shutdownNow();
+    }
+}
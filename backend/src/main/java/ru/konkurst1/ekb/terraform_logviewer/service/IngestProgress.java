@@ -0,0 +1,91 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики прогресса загрузки, которые конвейер обновляет по ходу работы.
+ * Читаются из других потоков (статус задачи, SSE), поэтому все поля атомарные.
+ * Прогресс файла из архива дублируется в прогресс всего архива, отмена архива отменяет и файл.
+ */
+public class IngestProgress {
+    private final IngestProgress parent;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong linesRead = new AtomicLong();
+    private final AtomicLong entriesParsed = new AtomicLong();
+    private final AtomicLong entriesIndexed = new AtomicLong();
+    private final AtomicLong failedLines = new AtomicLong();
+    // Обращения к словарю строк (StringDictionary) и попадания в него
+    private final AtomicLong dictionaryLookups = new AtomicLong();
+    private final AtomicLong dictionaryHits = new AtomicLong();
+    private volatile boolean cancelled;
+
+    public IngestProgress() {
+        this(null);
+    }
+
+    public IngestProgress(IngestProgress parent) {
+        this.parent = parent;
+    }
+
+    public void onChunkParsed(long bytes, long lines, long parsed, long failed) {
+        bytesRead.addAndGet(bytes);
+        linesRead.addAndGet(lines);
+        entriesParsed.addAndGet(parsed);
+        failedLines.addAndGet(failed);
+        if (parent != null) {
+            parent.onChunkParsed(bytes, lines, parsed, failed);
+        }
+    }
+
+    public void onStringsInterned(StringDictionary.Stats stats) {
+        dictionaryLookups.addAndGet(stats.lookups());
+        dictionaryHits.addAndGet(stats.hits());
+        if (parent != null) {
+            parent.onStringsInterned(stats);
+        }
+    }
+
+    public void onBatchIndexed(long indexed) {
+        entriesIndexed.addAndGet(indexed);
+        if (parent != null) {
+            parent.onBatchIndexed(indexed);
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getLinesRead() {
+        return linesRead.get();
+    }
+
+    public long getEntriesParsed() {
+        return entriesParsed.get();
+    }
+
+    public long getEntriesIndexed() {
+        return entriesIndexed.get();
+    }
+
+    public long getFailedLines() {
+        return failedLines.get();
+    }
+
+    public long getDictionaryLookups() {
+        return dictionaryLookups.get();
+    }
+
+    public double getDictionaryHitRate() {
+        long lookups = dictionaryLookups.get();
+        return lookups == 0 ? 0 : (double) dictionaryHits.get() / lookups;
+    }
+}
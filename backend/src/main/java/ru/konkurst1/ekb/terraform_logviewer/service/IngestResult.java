@@ -0,0 +1,4 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+public record IngestResult(String logFileId, long linesRead, long entriesIndexed, long failedLines, long durationMs) {
+}
@@ -0,0 +1,172 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Поиск набора ключевых слов за один проход по строке (автомат Ахо-Корасик).
+ * Регистр ASCII-букв сворачивается при чтении символа, поэтому копия строки в нижнем регистре не нужна.
+ * Слово с caseSensitive = true дополнительно сверяется с исходным текстом.
+ * Результат - битовая маска найденных слов в порядке их объявления, не больше 64 слов.
+ */
+public final class KeywordMatcher {
+
+    public record Keyword(String text, boolean caseSensitive) {
+
+        public static Keyword ignoringCase(String text) {
+            return new Keyword(text, false);
+        }
+
+        public static Keyword exact(String text) {
+            return new Keyword(text, true);
+        }
+    }
+
+    private static final int ALPHABET = 128;
+
+    private final Keyword[] keywords;
+    // Полная таблица переходов: transitions[state * ALPHABET + c]
+    private final int[] transitions;
+    // Слова, заканчивающиеся в состоянии, с учётом суффиксных ссылок
+    private final long[] outputs;
+    private final long caseSensitiveMask;
+
+    private KeywordMatcher(Keyword[] keywords, int[] transitions, long[] outputs, long caseSensitiveMask) {
+        this.keywords = keywords;
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.caseSensitiveMask = caseSensitiveMask;
+    }
+
+    public static KeywordMatcher of(List<Keyword> keywords) {
+        if (keywords.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " keywords are supported, got " + keywords.size());
+        }
+
+        // 1. Бор по свёрнутым символам
+        List<int[]> trie = new ArrayList<>();
+        List<Long> trieOutputs = new ArrayList<>();
+        trie.add(newNode());
+        trieOutputs.add(0L);
+        long caseSensitiveMask = 0;
+
+        for (int id = 0; id < keywords.size(); id++) {
+            Keyword keyword = keywords.get(id);
+            if (keyword.text().isEmpty()) {
+                throw new IllegalArgumentException("Keyword must not be empty");
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.text().length(); i++) {
+                int c = fold(keyword.text().charAt(i));
+                if (c < 0) {
+                    throw new IllegalArgumentException("Only ASCII keywords are supported: " + keyword.text());
+                }
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newNode());
+                    trieOutputs.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            trieOutputs.set(state, trieOutputs.get(state) | (1L << id));
+            if (keyword.caseSensitive()) {
+                caseSensitiveMask |= 1L << id;
+            }
+        }
+
+        // 2. Суффиксные ссылки обходом в ширину превращают бор в полный автомат
+        int states = trie.size();
+        int[] transitions = new int[states * ALPHABET];
+        long[] outputs = new long[states];
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            transitions[c] = Math.max(next, 0);
+            if (next > 0) {
+                queue.add(next);
+            }
+        }
+        outputs[0] = trieOutputs.get(0);
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = trieOutputs.get(state) | outputs[failure[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie.get(state)[c];
+                if (next >= 0) {
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    transitions[state * ALPHABET + c] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                }
+            }
+        }
+
+        return new KeywordMatcher(keywords.toArray(Keyword[]::new), transitions, outputs, caseSensitiveMask);
+    }
+
+    public long match(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        long matched = 0;
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            int c = fold(text.charAt(i));
+            // Не-ASCII символ не входит ни в одно слово
+            state = c < 0 ? 0 : transitions[state * ALPHABET + c];
+            long found = outputs[state] & ~matched;
+            if (found != 0) {
+                matched |= verified(found, text, i);
+            }
+        }
+        return matched;
+    }
+
+    public static boolean contains(long matched, int keywordIndex) {
+        return (matched & (1L << keywordIndex)) != 0;
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    // Совпадение без учёта регистра для слов с caseSensitive проверяется по исходным символам
+    private long verified(long found, CharSequence text, int end) {
+        long exact = found & caseSensitiveMask;
+        long result = found & ~caseSensitiveMask;
+        while (exact != 0) {
+            int id = Long.numberOfTrailingZeros(exact);
+            exact &= exact - 1;
+            String keyword = keywords[id].text();
+            int start = end - keyword.length() + 1;
+            boolean same = true;
+            for (int i = 0; i < keyword.length() && same; i++) {
+                same = text.charAt(start + i) == keyword.charAt(i);
+            }
+            if (same) {
+                result |= 1L << id;
+            }
+        }
+        return result;
+    }
+
+    private static int fold(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c + ('a' - 'A');
+        }
+        return c < ALPHABET ? c : -1;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+}
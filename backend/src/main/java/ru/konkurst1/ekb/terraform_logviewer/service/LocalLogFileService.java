@@ -0,0 +1,59 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Проверяет и раскрывает пути к логам на локальном (общем) томе сервера.
+ * Загружать можно только файлы внутри каталогов из app.ingest.local-roots.
+ */
+@Service
+public class LocalLogFileService {
+
+    @Value("${app.ingest.local-roots:}")
+    private List<String> localRoots = List.of();
+
+    public List<Path> resolveLogFiles(String requestedPath) throws IOException {
+        if (requestedPath == null || requestedPath.isBlank()) {
+            throw new IllegalArgumentException("path must be provided");
+        }
+
+        // toRealPath раскрывает симлинки и "..", поэтому выйти за пределы корня нельзя
+        Path path = Path.of(requestedPath).toRealPath();
+        if (!isUnderAllowedRoot(path)) {
+            throw new IllegalArgumentException("Path is outside of allowed local roots: " + requestedPath);
+        }
+
+        if (Files.isRegularFile(path)) {
+            return List.of(path);
+        }
+        if (!Files.isDirectory(path)) {
+            throw new IllegalArgumentException("Not a file or directory: " + requestedPath);
+        }
+
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private boolean isUnderAllowedRoot(Path path) throws IOException {
+        for (String root : localRoots) {
+            if (root.isBlank()) {
+                continue;
+            }
+            Path rootPath = Path.of(root.trim());
+            if (Files.exists(rootPath) && path.startsWith(rootPath.toRealPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
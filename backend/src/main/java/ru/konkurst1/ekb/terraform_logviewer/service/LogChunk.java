@@ -0,0 +1,15 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Кусок входного файла, выровненный по границе строки: data[0, limit) содержит только целые строки.
+ * data может быть как буфером в куче, так и отображённой в память частью файла.
+ * startOffset - смещение первого байта куска от начала файла.
+ */
+public record LogChunk(ByteBuffer data, long startOffset) {
+
+    public int length() {
+        return data.limit();
+    }
+}
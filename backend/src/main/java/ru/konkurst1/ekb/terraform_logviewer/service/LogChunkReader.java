@@ -0,0 +1,69 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Нарезает поток на куски примерно по chunkSize байт, каждый из которых заканчивается на '\n'.
+ * Буфер переиспользуется: кусок действителен только до следующего вызова next().
+ */
+public class LogChunkReader implements LogChunkSource {
+    private final InputStream inputStream;
+    private byte[] buffer;
+    private int consumed;
+    private int filled;
+    private long offset;
+    private boolean eof;
+
+    public LogChunkReader(InputStream inputStream, int chunkSize) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public LogChunk next() throws IOException {
+        // Хвост незаконченной строки переносим в начало буфера
+        int carry = filled - consumed;
+        System.arraycopy(buffer, consumed, buffer, 0, carry);
+        filled = carry;
+        consumed = 0;
+
+        while (true) {
+            while (!eof && filled < buffer.length) {
+                int read = inputStream.read(buffer, filled, buffer.length - filled);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    filled += read;
+                }
+            }
+
+            if (filled == 0) {
+                return null;
+            }
+
+            int end = eof ? filled : lastNewline(buffer, filled) + 1;
+            if (end > 0) {
+                LogChunk chunk = new LogChunk(ByteBuffer.wrap(buffer, 0, end).slice(), offset);
+                offset += end;
+                consumed = end;
+                return chunk;
+            }
+
+            // Строка длиннее буфера - расширяем и дочитываем
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, filled);
+            buffer = grown;
+        }
+    }
+
+    private static int lastNewline(byte[] data, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.io.IOException;
+
+/**
+ * Источник выровненных по строкам кусков. Кусок действителен только до следующего вызова next().
+ */
+public interface LogChunkSource {
+
+    // null - данные закончились
+    LogChunk next() throws IOException;
+}
@@ -0,0 +1,121 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogFileSummary;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сводка файла, которая копится по батчам конвейера загрузки и в конце сохраняется одним документом
+ * ({@link LogFileSummary}), чтобы список файлов и статистика не агрегировали записи на каждый запрос.
+ * Гистограмма по времени держит не больше maxBuckets корзин: при переполнении ширина корзины удваивается
+ * и соседние корзины сливаются. В каждом счётчике значений не больше maxTerms ключей, остальные
+ * значения считаются под {@value #OTHER}. Экземпляр на одну загрузку, не потокобезопасен.
+ */
+public class LogFileSummaryCollector {
+
+    public static final String OTHER = "_other";
+    private static final long INITIAL_INTERVAL_MS = 1000;
+
+    private final int maxBuckets;
+    private final int maxTerms;
+
+    private final Map<String, Long> levelCounts = new HashMap<>();
+    private final Map<String, Long> sectionCounts = new HashMap<>();
+    private final Map<String, Long> resourceTypeCounts = new HashMap<>();
+    private final Map<String, Long> providerCounts = new HashMap<>();
+    private final Map<String, Long> rpcCounts = new HashMap<>();
+    // Номер корзины (время / intervalMs) -> число записей
+    private final Map<Long, Long> histogram = new HashMap<>();
+    private long intervalMs = INITIAL_INTERVAL_MS;
+    private Instant firstTimestamp;
+    private Instant lastTimestamp;
+
+    public LogFileSummaryCollector(int maxBuckets, int maxTerms) {
+        this.maxBuckets = Math.max(1, maxBuckets);
+        this.maxTerms = Math.max(1, maxTerms);
+    }
+
+    public void accept(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            count(levelCounts, entry.getLevel());
+            count(sectionCounts, entry.getSection());
+            count(resourceTypeCounts, entry.getTfResourceType());
+            count(providerCounts, entry.getTfProviderAddr());
+            count(rpcCounts, entry.getTfRpc());
+
+            Instant timestamp = entry.getTimestamp();
+            if (timestamp != null) {
+                if (firstTimestamp == null || timestamp.isBefore(firstTimestamp)) {
+                    firstTimestamp = timestamp;
+                }
+                if (lastTimestamp == null || timestamp.isAfter(lastTimestamp)) {
+                    lastTimestamp = timestamp;
+                }
+                histogram.merge(Math.floorDiv(timestamp.toEpochMilli(), intervalMs), 1L, Long::sum);
+                if (histogram.size() > maxBuckets) {
+                    widenHistogram();
+                }
+            }
+        }
+    }
+
+    public LogFileSummary build(String logFileId, IngestResult result, RequestChainCorrelator.ChainStats chainStats) {
+        LogFileSummary summary = new LogFileSummary();
+        summary.setId(logFileId);
+        summary.setUploadTime(Instant.now());
+        summary.setFirstTimestamp(firstTimestamp);
+        summary.setLastTimestamp(lastTimestamp);
+        summary.setLinesRead(result.linesRead());
+        summary.setEntryCount(result.entriesIndexed());
+        summary.setFailedLines(result.failedLines());
+        summary.setDurationMs(result.durationMs());
+        summary.setLevelCounts(Map.copyOf(levelCounts));
+        summary.setSectionCounts(Map.copyOf(sectionCounts));
+        summary.setResourceTypeCounts(Map.copyOf(resourceTypeCounts));
+        summary.setProviderCounts(Map.copyOf(providerCounts));
+        summary.setRpcCounts(Map.copyOf(rpcCounts));
+        summary.setHistogramIntervalMs(intervalMs);
+        summary.setHistogram(histogramBuckets());
+        summary.setChainCount(chainStats.chains());
+        summary.setFailedChainCount(chainStats.failedChains());
+        summary.setWarningChainCount(chainStats.warningChains());
+        summary.setAvgChainDurationMs(chainStats.avgDurationMs());
+        summary.setMaxChainDurationMs(chainStats.maxDurationMs());
+        return summary;
+    }
+
+    private void count(Map<String, Long> counts, String value) {
+        if (value == null) {
+            return;
+        }
+        String key = counts.size() < maxTerms || counts.containsKey(value) ? value : OTHER;
+        counts.merge(key, 1L, Long::sum);
+    }
+
+    private void widenHistogram() {
+        while (histogram.size() > maxBuckets) {
+            intervalMs *= 2;
+            Map<Long, Long> merged = new HashMap<>();
+            histogram.forEach((bucket, count) -> merged.merge(Math.floorDiv(bucket, 2L), count, Long::sum));
+            histogram.clear();
+            histogram.putAll(merged);
+        }
+    }
+
+    private List<LogFileSummary.HistogramBucket> histogramBuckets() {
+        List<LogFileSummary.HistogramBucket> buckets = new ArrayList<>(histogram.size());
+        new TreeMap<>(histogram).forEach((bucket, count) -> {
+            LogFileSummary.HistogramBucket histogramBucket = new LogFileSummary.HistogramBucket();
+            histogramBucket.setStart(Instant.ofEpochMilli(bucket * intervalMs));
+            histogramBucket.setCount(count);
+            buckets.add(histogramBucket);
+        });
+        return buckets;
+    }
+}
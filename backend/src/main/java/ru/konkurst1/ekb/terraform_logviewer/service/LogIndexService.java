@@ -0,0 +1,291 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.ReindexResponse;
+import co.elastic.clients.elasticsearch.indices.IndicesStatsResponse;
+import co.elastic.clients.elasticsearch.indices.stats.IndexStats;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.dto.IndexMigrationResult;
+import ru.konkurst1.ekb.terraform_logviewer.dto.IndexStatus;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс записей terraform_logs. Приложение работает с алиасом terraform_logs, за которым стоит физический
+ * индекс terraform_logs_<время создания>; маппинг берётся из аннотаций {@link LogEntry}, а свойство rawJson
+ * подменяется по стратегии app.index.raw-json-mapping ({@link RawJsonMapping}); анализаторы - из log-index-settings.json.
+ * Маппинг существующего индекса не меняется: если он расходится с настройкой, нужна миграция
+ * ({@link #migrate()}) - новый физический индекс, _reindex и атомарное переключение алиаса.
+ * Индекс terraform_logs от прежних версий (обычный индекс, не алиас) при миграции удаляется
+ * в том же запросе, что и создаёт алиас.
+ */
+@Service
+public class LogIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(LogIndexService.class);
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final Duration REINDEX_POLL_INTERVAL = Duration.ofSeconds(1);
+    private static final String SETTINGS_RESOURCE = "/log-index-settings.json";
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Value("${app.index.raw-json-mapping:flattened}")
+    private String rawJsonMapping = "flattened";
+
+    @Value("${app.index.promoted-keys:}")
+    private List<String> promotedKeys = List.of();
+
+    private boolean ready;
+
+    @PostConstruct
+    void init() {
+        // Неверное значение стратегии - ошибка конфигурации, приложение не стартует
+        RawJsonMapping.fromConfig(rawJsonMapping);
+        ensureIndex();
+    }
+
+    public RawJsonMapping strategy() {
+        return RawJsonMapping.fromConfig(rawJsonMapping);
+    }
+
+    // Создаёт индекс за алиасом, если его ещё нет; вызывается при старте и перед каждой загрузкой
+    public synchronized void ensureIndex() {
+        if (ready) {
+            return;
+        }
+        String alias = aliasName();
+        try {
+            if (concreteIndices(alias).isEmpty()) {
+                String index = createIndex(alias, true);
+                logger.info("Created index {} behind alias {} with rawJson mapping {}", index, alias,
+                        strategy().configName());
+            } else {
+                Map<String, Object> mapping = elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).getMapping();
+                RawJsonMapping current = rawJsonMapping(mapping);
+                if (current != strategy()) {
+                    logger.warn("Index {} maps rawJson as {}, configured {}: run POST /api/admin/index/migrate",
+                            alias, current.configName(), strategy().configName());
+                }
+                if (!hasMessageNgram(mapping)) {
+                    logger.warn("Index {} has no message.ngram subfield, substring search finds nothing "
+                            + "until POST /api/admin/index/migrate", alias);
+                }
+            }
+            ready = true;
+        } catch (IOException | ElasticsearchException | DataAccessException e) {
+            logger.warn("Failed to prepare index {}: {}", alias, e.getMessage());
+        }
+    }
+
+    public IndexStatus status() throws IOException {
+        String alias = aliasName();
+        List<String> indices = concreteIndices(alias);
+        if (indices.isEmpty()) {
+            return new IndexStatus(alias, indices, strategy().configName(), null, false, 0, 0, 0);
+        }
+        Map<String, Object> mapping = elasticsearchOperations.indexOps(IndexCoordinates.of(alias)).getMapping();
+        IndicesStatsResponse stats = elasticsearchClient.indices().stats(request -> request.index(alias));
+        IndexStats primaries = stats.all().primaries();
+        long documents = primaries != null && primaries.docs() != null ? primaries.docs().count() : 0;
+        long storeSize = primaries != null && primaries.store() != null ? primaries.store().sizeInBytes() : 0;
+        return new IndexStatus(alias, indices, strategy().configName(), rawJsonMapping(mapping).configName(),
+                hasMessageNgram(mapping), documents, storeSize, mappedFields(mapping));
+    }
+
+    /**
+     * Переносит записи в новый индекс с маппингом по текущей настройке и переключает на него алиас.
+     * Во время миграции загрузки выполняться не должны: записи, добавленные после начала _reindex,
+     * в новый индекс не попадут. Если число документов не сошлось, алиас не переключается.
+     */
+    public synchronized IndexMigrationResult migrate() throws IOException {
+        long started = System.nanoTime();
+        String alias = aliasName();
+        List<String> sources = concreteIndices(alias);
+        String target = createIndex(alias, false);
+
+        long sourceDocuments = 0;
+        long migratedDocuments = 0;
+        if (!sources.isEmpty()) {
+            try {
+                elasticsearchClient.indices().refresh(request -> request.index(alias));
+                sourceDocuments = elasticsearchClient.count(request -> request.index(alias)).count();
+                migratedDocuments = reindex(alias, target);
+                if (migratedDocuments != sourceDocuments) {
+                    throw new IllegalStateException("Reindex copied " + migratedDocuments + " of "
+                            + sourceDocuments + " documents, alias " + alias + " left unchanged");
+                }
+            } catch (IOException | RuntimeException e) {
+                deleteIndex(target);
+                throw e;
+            }
+        }
+
+        elasticsearchClient.indices().updateAliases(request -> {
+            request.actions(action -> action.add(add -> add.index(target).alias(alias)));
+            for (String source : sources) {
+                if (source.equals(alias)) {
+                    request.actions(action -> action.removeIndex(remove -> remove.index(source)));
+                } else {
+                    request.actions(action -> action.remove(remove -> remove.index(source).alias(alias)));
+                }
+            }
+            return request;
+        });
+        for (String source : sources) {
+            if (!source.equals(alias)) {
+                deleteIndex(source);
+            }
+        }
+        ready = true;
+
+        long durationMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        logger.info("Migrated {} documents from {} to {} (rawJson mapping {}) in {} ms",
+                migratedDocuments, sources, target, strategy().configName(), durationMs);
+        return new IndexMigrationResult(sources, target, strategy().configName(), sourceDocuments,
+                migratedDocuments, durationMs);
+    }
+
+    // Число полей маппинга, включая вложенные свойства и мультиполя (text + keyword - два поля)
+    @SuppressWarnings("unchecked")
+    static int mappedFields(Map<String, Object> mapping) {
+        int count = 0;
+        if (mapping.get("properties") instanceof Map<?, ?> properties) {
+            for (Object property : properties.values()) {
+                if (property instanceof Map<?, ?> field) {
+                    Map<String, Object> fieldMapping = (Map<String, Object>) field;
+                    count += fieldMapping.containsKey("properties") ? mappedFields(fieldMapping) : 1;
+                    if (fieldMapping.get("fields") instanceof Map<?, ?> subfields) {
+                        count += subfields.size();
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    static RawJsonMapping rawJsonMapping(Map<String, Object> mapping) {
+        if (mapping.get("properties") instanceof Map<?, ?> properties
+                && properties.get("rawJson") instanceof Map<?, ?> rawJson) {
+            return RawJsonMapping.detect((Map<String, Object>) rawJson);
+        }
+        return RawJsonMapping.detect(null);
+    }
+
+    // Подполе message.ngram для поиска подстроки (есть в индексах, созданных с log-index-settings.json)
+    @SuppressWarnings("unchecked")
+    static boolean hasMessageNgram(Map<String, Object> mapping) {
+        return mapping.get("properties") instanceof Map<?, ?> properties
+                && properties.get("message") instanceof Map<?, ?> message
+                && message.get("fields") instanceof Map<?, ?> fields
+                && fields.containsKey("ngram");
+    }
+
+    private String aliasName() {
+        return elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class).getIndexName();
+    }
+
+    // Физические индексы за алиасом; для индекса прежних версий - он сам
+    private List<String> concreteIndices(String alias) throws IOException {
+        if (elasticsearchClient.indices().existsAlias(request -> request.name(alias)).value()) {
+            return List.copyOf(elasticsearchClient.indices().getAlias(request -> request.name(alias)).result().keySet());
+        }
+        if (elasticsearchClient.indices().exists(request -> request.index(alias)).value()) {
+            return List.of(alias);
+        }
+        return List.of();
+    }
+
+    private String createIndex(String alias, boolean withAlias) throws IOException {
+        String index = alias + "_" + ZonedDateTime.now(ZoneOffset.UTC).format(INDEX_SUFFIX);
+        Document mapping = elasticsearchOperations.indexOps(LogEntry.class).createMapping();
+        properties(mapping).put("rawJson", strategy().mapping(promotedKeys));
+        String json = mapping.toJson();
+        String settings = readSettings();
+
+        elasticsearchClient.indices().create(request -> {
+            request.index(index)
+                    .settings(indexSettings -> indexSettings.withJson(new StringReader(settings)))
+                    .mappings(mappings -> mappings.withJson(new StringReader(json)));
+            if (withAlias) {
+                request.aliases(alias, aliasBuilder -> aliasBuilder);
+            }
+            return request;
+        });
+        return index;
+    }
+
+    // Анализаторы индекса (message_ngram для message.ngram)
+    private static String readSettings() throws IOException {
+        try (InputStream in = LogIndexService.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing classpath resource " + SETTINGS_RESOURCE);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> properties(Document mapping) {
+        return (Map<String, Object>) mapping.get("properties");
+    }
+
+    // _reindex асинхронной задачей: ожидание в одном запросе упёрлось бы в socket-timeout клиента
+    private long reindex(String source, String target) throws IOException {
+        ReindexResponse response = elasticsearchClient.reindex(request -> request
+                .source(from -> from.index(source))
+                .dest(to -> to.index(target))
+                .waitForCompletion(false));
+        String taskId = response.task();
+        while (true) {
+            GetTasksResponse task = elasticsearchClient.tasks().get(request -> request.taskId(taskId));
+            if (task.completed()) {
+                if (task.error() != null) {
+                    throw new IllegalStateException("Reindex " + source + " -> " + target + " failed: "
+                            + task.error().reason());
+                }
+                break;
+            }
+            try {
+                Thread.sleep(REINDEX_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for reindex task " + taskId);
+            }
+        }
+        elasticsearchClient.indices().refresh(request -> request.index(target));
+        return elasticsearchClient.count(request -> request.index(target)).count();
+    }
+
+    private void deleteIndex(String index) {
+        try {
+            elasticsearchClient.indices().delete(request -> request.index(index));
+        } catch (IOException | ElasticsearchException e) {
+            logger.warn("Failed to delete index {}: {}", index, e.getMessage());
+        }
+    }
+}
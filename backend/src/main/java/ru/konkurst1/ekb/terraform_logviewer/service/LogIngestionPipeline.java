@@ -0,0 +1,355 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogParseResult;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый конвейер загрузки: read -> parse -> section -> enrich -> template -> bulk index.
+ * Файл читается кусками по chunkSize байт, выровненными по строкам; каждый кусок парсится
+ * параллельно и превращается в батч записей. Между парсингом и индексацией стоит ограниченная
+ * очередь, поэтому в памяти одновременно находится не больше queueCapacity + 2 батчей
+ * и maxInFlight + 1 bulk-запросов {@link BulkIndexer} независимо от размера файла.
+ * Цепочки tf_req_id, пересекающие границы кусков, сводит {@link RequestChainCorrelator}:
+ * итог для уже отправленных записей уходит частичными обновлениями вместе со следующими батчами.
+ * Новые и обобщённые шаблоны сообщений ({@link LogTemplateService}) стадия индексации копит по id
+ * и сохраняет одним запросом в конце загрузки вместе со сводкой файла ({@link LogFileSummaryCollector}).
+ * Перед индексацией длинные значения записей уходят в {@link BlobStore}, в индекс попадает только превью.
+ * Сам файл сохраняется блоками в {@link RawLogStore} (сжатие куска идёт параллельно с его разбором),
+ * оттуда читаются строки вокруг записи.
+ */
+@Service
+public class LogIngestionPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(LogIngestionPipeline.class);
+
+    // Маркер конца потока для стадии индексации
+    private static final IndexBatch END_OF_STREAM = new IndexBatch(List.of(), List.of(), List.of());
+
+    @Autowired
+    private LogParserService logParserService;
+    @Autowired
+    private TerraformContextEnricher contextEnricher;
+    @Autowired
+    private BulkIndexer bulkIndexer;
+    @Autowired
+    private LogTemplateService logTemplateService;
+    @Autowired
+    private LogStorageService logStorageService;
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private RawLogStore rawLogStore;
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Value("${app.ingest.chunk-size:4194304}")
+    private int chunkSize = 4 * 1024 * 1024;
+
+    @Value("${app.ingest.mmap-window-size:1073741824}")
+    private int mmapWindowSize = 1024 * 1024 * 1024;
+
+    @Value("${app.ingest.queue-capacity:4}")
+    private int queueCapacity = 4;
+
+    @Value("${app.ingest.summary-histogram-buckets:240}")
+    private int summaryHistogramBuckets = 240;
+
+    @Value("${app.ingest.summary-max-terms:1000}")
+    private int summaryMaxTerms = 1000;
+
+    private final ExecutorService indexingExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "log-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService rawStoreExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "raw-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IngestResult ingest(InputStream inputStream, String logFileId, IngestProgress progress,
+                               Consumer<List<LogEntry>> batchListener) throws IOException {
+        try (inputStream) {
+            return ingest(new LogChunkReader(inputStream, chunkSize), logFileId, progress, batchListener);
+        }
+    }
+
+    // Локальный файл отображается в память и парсится прямо из отображённых окон
+    public IngestResult ingest(Path file, String logFileId, IngestProgress progress,
+                               Consumer<List<LogEntry>> batchListener) throws IOException {
+        try (MappedLogChunkReader reader = new MappedLogChunkReader(file, chunkSize, mmapWindowSize)) {
+            return ingest(reader, logFileId, progress, batchListener);
+        }
+    }
+
+    private IngestResult ingest(LogChunkSource chunkSource, String logFileId, IngestProgress progress,
+                                Consumer<List<LogEntry>> batchListener) throws IOException {
+        // Пока файл пишется, выборки по нему не кэшируются; по окончании кэш файла сбрасывается.
+        // К этому моменту bulk-сессия закрыта, а закрытие делает refresh - записи файла уже видны поиску
+        queryResultCache.startWriting(logFileId);
+        try {
+            return ingestChunks(chunkSource, logFileId, progress, batchListener);
+        } finally {
+            queryResultCache.finishWriting(logFileId);
+        }
+    }
+
+    private IngestResult ingestChunks(LogChunkSource chunkSource, String logFileId, IngestProgress progress,
+                                      Consumer<List<LogEntry>> batchListener) throws IOException {
+        long startedAt = System.nanoTime();
+        BlockingQueue<IndexBatch> indexQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicBoolean indexerStarted = new AtomicBoolean();
+        CountDownLatch indexerStopped = new CountDownLatch(1);
+        Future<Long> indexer = indexingExecutor.submit(() -> {
+            indexerStarted.set(true);
+            try {
+                return runIndexer(indexQueue, logFileId, progress, batchListener);
+            } finally {
+                indexerStopped.countDown();
+            }
+        });
+
+        long linesRead = 0;
+        long failedLines = 0;
+        String currentSection = SectionDetectionService.INITIAL_SECTION;
+        RequestChainCorrelator correlator = contextEnricher.newCorrelator();
+        StringDictionary dictionary = logParserService.newDictionary();
+        LogFileSummaryCollector summary = new LogFileSummaryCollector(summaryHistogramBuckets, summaryMaxTerms);
+
+        try (RawLogStore.Writer rawWriter = rawLogStore.openWriter(logFileId)) {
+            LogChunk chunk;
+            while ((chunk = chunkSource.next()) != null) {
+                if (progress.isCancelled()) {
+                    throw new CancellationException("Ingestion of " + logFileId + " cancelled");
+                }
+
+                long firstLineNumber = linesRead + 1;
+                // Исходник сжимается параллельно с разбором; кусок нельзя отпускать, пока оба не закончили
+                Future<?> rawWrite = appendRaw(rawWriter, chunk, firstLineNumber);
+                LogParseResult parsed;
+                try {
+                    parsed = logParserService.parseChunk(chunk, logFileId, currentSection, firstLineNumber, dictionary);
+                } finally {
+                    awaitRawWrite(rawWrite);
+                }
+                linesRead += parsed.linesRead();
+                failedLines += parsed.errors().size();
+                progress.onChunkParsed(chunk.length(), parsed.linesRead(), parsed.entries().size(), parsed.errors().size());
+                progress.onStringsInterned(dictionary.drainStats());
+                logParsingErrors(logFileId, parsed.errors());
+
+                List<LogEntry> entries = parsed.entries();
+                if (!entries.isEmpty()) {
+                    currentSection = entries.get(entries.size() - 1).getSection();
+                    List<ChainUpdate> updates = contextEnricher.enrichWithTerraformContext(entries, correlator);
+                    List<LogTemplate> templates = logTemplateService.assignTemplates(entries);
+                    summary.accept(entries);
+                    enqueue(indexQueue, new IndexBatch(entries, updates, templates), indexer);
+                }
+            }
+            // Цепочки, оставшиеся открытыми до конца файла
+            List<ChainUpdate> remaining = correlator.finish();
+            if (!remaining.isEmpty()) {
+                enqueue(indexQueue, new IndexBatch(List.of(), remaining, List.of()), indexer);
+            }
+            enqueue(indexQueue, END_OF_STREAM, indexer);
+        } catch (IOException | RuntimeException e) {
+            indexer.cancel(true);
+            awaitStopped(indexerStarted, indexerStopped);
+            throw e;
+        }
+
+        long indexed;
+        try {
+            indexed = awaitIndexer(indexer);
+        } catch (RuntimeException e) {
+            awaitStopped(indexerStarted, indexerStopped);
+            throw e;
+        }
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        logger.info("Ingested {}: {} lines read, {} entries indexed, {} failed lines in {} ms, "
+                        + "string dictionary: {} values, hit rate {}",
+                logFileId, linesRead, indexed, failedLines, durationMs,
+                dictionary.stats().size(), String.format(Locale.ROOT, "%.3f", progress.getDictionaryHitRate()));
+
+        IngestResult result = new IngestResult(logFileId, linesRead, indexed, failedLines, durationMs);
+        logStorageService.saveSummary(summary.build(logFileId, result, correlator.chainStats()));
+        return result;
+    }
+
+    // Отменённый индексатор ещё закрывает bulk-сессию: ждёт запросы в полёте и делает refresh.
+    // Кэш файла сбрасывается только после этого. Не начавшаяся задача после отмены уже не запустится
+    private static void awaitStopped(AtomicBoolean started, CountDownLatch stopped) {
+        if (!started.get()) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                stopped.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Future<?> appendRaw(RawLogStore.Writer rawWriter, LogChunk chunk, long firstLineNumber) {
+        return rawStoreExecutor.submit(() -> {
+            rawWriter.append(chunk, firstLineNumber);
+            return null;
+        });
+    }
+
+    private void awaitRawWrite(Future<?> rawWrite) throws IOException {
+        try {
+            rawWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rawWrite.cancel(true);
+            throw new IllegalStateException("Ingestion interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Raw store write failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void logParsingErrors(String logFileId, List<ParsingError> errors) {
+        if (!errors.isEmpty()) {
+            ParsingError first = errors.get(0);
+            logger.warn("{}: {} lines failed to parse, first error: {}", logFileId, errors.size(), first.errorMessage());
+        }
+    }
+
+    private void enqueue(BlockingQueue<IndexBatch> indexQueue, IndexBatch batch, Future<Long> indexer) {
+        try {
+            // Блокирующая постановка в очередь и есть backpressure: парсинг ждёт индексацию
+            while (!indexQueue.offer(batch, 1, TimeUnit.SECONDS)) {
+                if (indexer.isDone()) {
+                    awaitIndexer(indexer);
+                    throw new IllegalStateException("Indexing stage stopped unexpectedly");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            indexer.cancel(true);
+            throw new IllegalStateException("Ingestion interrupted", e);
+        }
+    }
+
+    // Батчи конвейера перекладываются в bulk-сессию, которая сама решает, когда отправлять запрос
+    private long runIndexer(BlockingQueue<IndexBatch> indexQueue, String logFileId, IngestProgress progress,
+                            Consumer<List<LogEntry>> batchListener) throws InterruptedException, IOException {
+        BulkIndexer.Session session = bulkIndexer.openSession(progress::onBatchIndexed);
+        // Последняя версия каждого шаблона; сохранение на каждый батч останавливало бы индексацию
+        Map<String, LogTemplate> templates = new LinkedHashMap<>();
+        try (BlobStore.Writer blobWriter = blobStore.openWriter(logFileId)) {
+            while (true) {
+                IndexBatch batch = indexQueue.take();
+                if (batch == END_OF_STREAM) {
+                    break;
+                }
+                for (LogTemplate template : batch.templates()) {
+                    templates.put(template.getId(), template);
+                }
+                if (!batch.entries().isEmpty()) {
+                    blobWriter.offload(batch.entries());
+                    session.addAll(batch.entries());
+                    if (batchListener != null) {
+                        batchListener.accept(batch.entries());
+                    }
+                }
+                if (!batch.updates().isEmpty()) {
+                    session.updateAll(batch.updates());
+                }
+            }
+        } catch (InterruptedException | IOException | RuntimeException e) {
+            closeQuietly(session);
+            saveTemplatesQuietly(templates);
+            throw e;
+        }
+
+        session.close();
+        logTemplateService.saveTemplates(List.copyOf(templates.values()));
+        return session.stats().indexed();
+    }
+
+    // Записи, успевшие попасть в индекс, ссылаются на эти шаблоны, поэтому они сохраняются и при ошибке
+    private void saveTemplatesQuietly(Map<String, LogTemplate> templates) {
+        try {
+            logTemplateService.saveTemplates(List.copyOf(templates.values()));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to save message templates: {}", e.getMessage());
+        }
+    }
+
+    private void closeQuietly(BulkIndexer.Session session) {
+        try {
+            session.close();
+        } catch (RuntimeException e) {
+            logger.warn("Bulk session closed with error: {}", e.getMessage());
+        }
+    }
+
+    private long awaitIndexer(Future<Long> indexer) {
+        try {
+            return indexer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            indexer.cancel(true);
+            throw new IllegalStateException("Ingestion interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Indexing failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    // Записи куска, частичные обновления цепочек, закрытых на этом куске, и изменившиеся шаблоны
+    private record IndexBatch(List<LogEntry> entries, List<ChainUpdate> updates, List<LogTemplate> templates) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexingExecutor.shutdownNow();
+        rawStoreExecutor.shutdownNow();
+    }
+}
@@ -1,26 +1,75 @@
 package ru.konkurst1.ekb.terraform_logviewer.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogParseResult;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 @Service
 public class LogParserService {
     private static final Logger logger = LoggerFactory.getLogger(LogParserService.class);
 
+    // Фабрика потокобезопасна и переиспользуется всеми строками; codec нужен для вложенных объектов
+    private static final JsonFactory JSON_FACTORY = new ObjectMapper().getFactory();
+
+    // Частей на поток: мелкие части выравнивают нагрузку, если строки сильно разной длины
+    private static final int PARTS_PER_THREAD = 4;
+    private static final int MAX_ERROR_PREVIEW_BYTES = 512;
+    // Первая запись RPC на стороне провайдера (terraform-plugin-go)
+    private static final String RPC_REQUEST_MESSAGE = "Received request";
+
     @Autowired
     private SectionDetectionService sectionDetectionService;
     @Autowired
     private TerraformContextEnricher contextEnricher;
+
+    @Value("${app.ingest.parse-parallelism:0}")
+    private int parseParallelism;
+
+    @Value("${app.ingest.min-part-bytes:65536}")
+    private int minPartBytes = 65536;
+
+    @Value("${app.ingest.dictionary-max-entries:4096}")
+    private int dictionaryMaxEntries = 4096;
+
+    @Value("${app.ingest.dictionary-max-length:256}")
+    private int dictionaryMaxLength = 256;
+
+    private ForkJoinPool parsePool;
+
+    @PostConstruct
+    void init() {
+        int parallelism = parseParallelism > 0 ? parseParallelism : Runtime.getRuntime().availableProcessors();
+        parsePool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        parsePool.shutdown();
+    }
+
     public List<LogEntry> parseAndEnrichLogs(List<String> rawLines, String logFileId) {
         // 1. Базовый парсинг JSON
         List<LogEntry> entries = parseJsonLogs(rawLines, logFileId);
@@ -34,86 +83,288 @@ public class LogParserService {
         return entries;
     }
 
-    private List<LogEntry> parseJsonLogs(List<String> rawLines, String logFileId) {
-        return rawLines.stream()
-                .map(line -> parseSingleJsonLine(line, logFileId))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    // Словарь повторяющихся значений на одну загрузку, общий для всех её кусков
+    public StringDictionary newDictionary() {
+        return new StringDictionary(dictionaryMaxEntries, dictionaryMaxLength);
     }
 
-    private LogEntry parseSingleJsonLine(String rawLine, String logFileId) {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode json = mapper.readTree(rawLine);
-
-            LogEntry entry = new LogEntry();
-            entry.setRawJson(mapper.readValue(rawLine, Object.class));
-
-            // Извлекаем базовые поля
-            extractBasicFields(json, entry);
+    public List<LogEntry> parseJsonLogs(List<String> rawLines, String logFileId) {
+        StringDictionary dictionary = newDictionary();
+        List<LogEntry> entries = new ArrayList<>(rawLines.size());
+        for (int i = 0; i < rawLines.size(); i++) {
+            LogEntry entry = parseSingleJsonLine(rawLines.get(i), logFileId, dictionary);
+            if (entry != null) {
+                assignLine(entry, logFileId, i + 1);
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
 
-            // Извлекаем Terraform-специфичные поля
-            extractTerraformFields(json, entry);
+    // Id документа выводится из файла и номера строки: повторная загрузка перезаписывает те же документы,
+    // а частичные обновления цепочек адресуются без хранения самих записей
+    public static String documentId(String logFileId, long lineNumber) {
+        return logFileId + ":" + lineNumber;
+    }
 
-            return entry;
+    private static void assignLine(LogEntry entry, String logFileId, long lineNumber) {
+        entry.setLineNumber(Math.toIntExact(lineNumber));
+        entry.setId(documentId(logFileId, lineNumber));
+    }
 
+    LogEntry parseSingleJsonLine(String rawLine, String logFileId, StringDictionary dictionary) {
+        try (JsonParser parser = JSON_FACTORY.createParser(rawLine)) {
+            return parseEntry(parser, logFileId, dictionary);
         } catch (Exception e) {
             logger.warn("Failed to parse JSON line: {}", e.getMessage());
             return null;
         }
     }
 
-    private void extractBasicFields(JsonNode json, LogEntry entry) {
-        // Обязательные поля из JSON логов Terraform
-        if (json.has("@timestamp")) {
-            try {
-                String timestampStr = json.get("@timestamp").asText();
-                // Конвертируем формат "2025-09-09T15:47:33.319437+03:00" в Instant
-                timestampStr = timestampStr.replace("+03:00", "Z");
-                entry.setTimestamp(Instant.parse(timestampStr));
-            } catch (Exception e) {
-                logger.warn("Failed to parse timestamp: {}", json.get("@timestamp").asText());
-                entry.setTimestamp(Instant.now());
+    // Разбирает выровненный по строкам кусок параллельно и проставляет секции так же,
+    // как последовательный detectSections, начиная с initialSection.
+    // firstLineNumber - номер (с 1) первой строки куска в файле, dictionary - словарь загрузки (см. newDictionary)
+    public LogParseResult parseChunk(LogChunk chunk, String logFileId, String initialSection, long firstLineNumber,
+                                     StringDictionary dictionary) {
+        // Правила читаются один раз: перезагрузка во время разбора не смешает два набора в одном куске
+        SectionDetectionService.CompiledRules rules = sectionDetectionService.currentRules();
+        List<ForkJoinTask<ChunkPart>> parseTasks = splitChunk(chunk.data(), chunk.length()).stream()
+                .map(range -> parsePool.submit(() -> parsePart(chunk.data(), range[0], range[1], logFileId, dictionary, rules)))
+                .toList();
+        List<ChunkPart> parts = parseTasks.stream().map(ForkJoinTask::join).toList();
+
+        // Фаза 2: последовательно протаскиваем секцию через границы частей
+        String carried = initialSection;
+        List<ForkJoinTask<?>> resolveTasks = new ArrayList<>(parts.size());
+        for (ChunkPart part : parts) {
+            String carriedIn = carried;
+            resolveTasks.add(parsePool.submit(() -> sectionDetectionService.resolveSections(part.entries(), carriedIn)));
+            if (part.lastTransition() != null) {
+                carried = part.lastTransition();
             }
         }
+        resolveTasks.forEach(ForkJoinTask::join);
 
-        if (json.has("@level")) {
-            String levelStr = json.get("@level").asText().toUpperCase();
-            try {
-                entry.setLevel(levelStr); // Сохраняем как строку "INFO", "DEBUG" и т.д.
-            } catch (Exception e) {
-                entry.setLevel("INFO"); // fallback
+        int entryCount = parts.stream().mapToInt(part -> part.entries().size()).sum();
+        List<LogEntry> entries = new ArrayList<>(entryCount);
+        List<ParsingError> errors = new ArrayList<>();
+        long linesRead = 0;
+        for (ChunkPart part : parts) {
+            // В части номера строк и смещения относительные, здесь они становятся номерами и смещениями в файле
+            long partFirstLine = firstLineNumber + linesRead;
+            for (LogEntry entry : part.entries()) {
+                assignLine(entry, logFileId, partFirstLine + entry.getLineNumber());
+                entry.setByteOffset(chunk.startOffset() + entry.getByteOffset());
+                entries.add(entry);
             }
+            for (ParsingError error : part.errors()) {
+                errors.add(new ParsingError(Math.toIntExact(partFirstLine + error.lineNumber()),
+                        error.rawLine(), error.errorMessage()));
+            }
+            linesRead += part.linesRead();
         }
+        return new LogParseResult(entries, errors, linesRead);
+    }
 
-        if (json.has("@message")) {
-            entry.setMessage(json.get("@message").asText());
+    // Делит кусок на части примерно равного размера, каждая заканчивается на '\n'
+    private List<int[]> splitChunk(ByteBuffer data, int length) {
+        int partCount = Math.max(1, Math.min(parsePool.getParallelism() * PARTS_PER_THREAD, length / minPartBytes));
+        int partSize = length / partCount;
+        List<int[]> ranges = new ArrayList<>(partCount);
+
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + partSize);
+            while (end < length && data.get(end - 1) != '\n') {
+                end++;
+            }
+            ranges.add(new int[]{start, end});
+            start = end;
         }
+        return ranges;
     }
 
-    private void extractTerraformFields(JsonNode json, LogEntry entry) {
-        // Terraform-specific поля для группировки и фильтрации
-        if (json.has("tf_resource_type")) {
-            entry.setTfResourceType(json.get("tf_resource_type").asText());
+    // Фаза 1: парсинг строк части и поиск переходов между секциями
+    private ChunkPart parsePart(ByteBuffer data, int from, int to, String logFileId, StringDictionary dictionary,
+                                SectionDetectionService.CompiledRules rules) {
+        List<LogEntry> entries = new ArrayList<>();
+        List<ParsingError> errors = new ArrayList<>();
+        long linesRead = 0;
+        // Для отображённого в память файла строка копируется в байтовый буфер части, не в String
+        byte[] scratch = data.hasArray() ? null : new byte[8192];
+
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && data.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && data.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            int relativeLine = (int) linesRead++;
+
+            if (!isBlank(data, lineStart, contentEnd)) {
+                int length = contentEnd - lineStart;
+                if (scratch != null && scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                try (JsonParser parser = createParser(data, lineStart, length, scratch)) {
+                    LogEntry entry = parseEntry(parser, logFileId, dictionary);
+                    entry.setLineNumber(relativeLine);
+                    entry.setByteOffset((long) lineStart);
+                    entries.add(entry);
+                } catch (Exception e) {
+                    errors.add(new ParsingError(relativeLine, preview(data, lineStart, contentEnd), e.getMessage()));
+                }
+            }
+            lineStart = lineEnd + 1;
         }
 
-        if (json.has("tf_req_id")) {
-            entry.setTfReqId(json.get("tf_req_id").asText());
+        String lastTransition = sectionDetectionService.findTransitions(rules, entries);
+        return new ChunkPart(entries, errors, linesRead, lastTransition);
+    }
+
+    private JsonParser createParser(ByteBuffer data, int offset, int length, byte[] scratch) throws IOException {
+        if (data.hasArray()) {
+            return JSON_FACTORY.createParser(data.array(), data.arrayOffset() + offset, length);
         }
+        data.get(offset, scratch, 0, length);
+        return JSON_FACTORY.createParser(scratch, 0, length);
+    }
 
-        if (json.has("tf_rpc")) {
-            entry.setRequestType("request");
-        } else if (json.has("tf_proto_version")) {
-            entry.setRequestType("response");
+    private static boolean isBlank(ByteBuffer data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = data.get(i);
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private static String preview(ByteBuffer data, int from, int to) {
+        byte[] bytes = new byte[Math.min(to - from, MAX_ERROR_PREVIEW_BYTES)];
+        data.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record ChunkPart(List<LogEntry> entries, List<ParsingError> errors, long linesRead, String lastTransition) {
+    }
 
-        // Дополнительные поля которые могут быть полезны
-        if (json.has("@module")) {
-            entry.setModule(json.get("@module").asText());
+    // Один проход по токенам: одновременно строим rawJson и вытаскиваем типизированные поля
+    private LogEntry parseEntry(JsonParser parser, String logFileId, StringDictionary dictionary) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Log line is not a JSON object");
         }
 
-        if (json.has("tf_provider_addr")) {
-            entry.setTfProviderAddr(json.get("tf_provider_addr").asText());
+        LogEntry entry = new LogEntry();
+        entry.setLogFileId(logFileId);
+        Map<String, Object> rawJson = new LinkedHashMap<>();
+        boolean hasProtoVersion = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Имена полей канонизируются парсером, новой строки на каждую запись не создаётся
+            String fieldName = parser.currentName();
+            JsonToken token = parser.nextToken();
+            // Повторяющиеся значения берутся из словаря прямо по символам парсера; rawJson и поля записи
+            // ссылаются на тот же экземпляр
+            Object value = token == JsonToken.VALUE_STRING && isDictionaryField(fieldName)
+                    ? dictionary.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())
+                    : readValue(parser, token);
+            rawJson.put(fieldName, value);
+
+            switch (fieldName) {
+                case "@timestamp" -> entry.setTimestamp(parseTimestamp(asText(value)));
+                case "@level" -> entry.setLevel(normalizeLevel(asText(value)));
+                case "@message" -> entry.setMessage(asText(value));
+                case "@module" -> entry.setModule(asText(value));
+                case "@caller" -> entry.setCaller(asText(value));
+                case "tf_resource_type" -> entry.setTfResourceType(asText(value));
+                case "tf_req_id" -> entry.setTfReqId(asText(value));
+                case "tf_provider_addr" -> entry.setTfProviderAddr(asText(value));
+                case "tf_rpc" -> entry.setTfRpc(asText(value));
+                case "tf_proto_version" -> hasProtoVersion = true;
+                case "tf_req_duration_ms" -> entry.setRequestDurationMs(asLong(value));
+                case "diagnostic_error_count" -> entry.setDiagnosticErrorCount(asInteger(value));
+                case "diagnostic_warning_count" -> entry.setDiagnosticWarningCount(asInteger(value));
+                default -> {
+                }
+            }
+        }
+
+        entry.setRequestType(requestType(entry, hasProtoVersion));
+
+        entry.setRawJson(rawJson);
+        return entry;
+    }
+
+    private static boolean isDictionaryField(String fieldName) {
+        return switch (fieldName) {
+            case "@level", "@module", "@caller", "tf_resource_type", "tf_data_source_type", "tf_provider_addr",
+                 "tf_rpc", "tf_proto_version" -> true;
+            default -> false;
+        };
+    }
+
+    // Уровни Terraform пишет в нижнем регистре; известные отдаются константами без новой строки на запись
+    private static String normalizeLevel(String level) {
+        return switch (level) {
+            case "trace" -> "TRACE";
+            case "debug" -> "DEBUG";
+            case "info" -> "INFO";
+            case "warn" -> "WARN";
+            case "error" -> "ERROR";
+            default -> level.toUpperCase(Locale.ROOT);
+        };
+    }
+
+    private Object readValue(JsonParser parser, JsonToken token) throws IOException {
+        return switch (token) {
+            case VALUE_STRING -> parser.getText();
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getNumberValue();
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case VALUE_NULL -> null;
+            // Вложенные объекты (диагностики, тела http) дочитываем тем же парсером
+            case START_OBJECT, START_ARRAY -> parser.readValueAs(Object.class);
+            default -> throw new IOException("Unexpected token " + token);
+        };
+    }
+
+    // Запрос RPC - "Received request" с tf_rpc, ответ - запись с tf_req_duration_ms
+    // (или только с tf_proto_version у старых SDK); промежуточные записи цепочки без типа
+    private static String requestType(LogEntry entry, boolean hasProtoVersion) {
+        if (entry.getRequestDurationMs() != null || (hasProtoVersion && entry.getTfRpc() == null)) {
+            return "response";
+        }
+        if (entry.getTfRpc() != null && RPC_REQUEST_MESSAGE.equals(entry.getMessage())) {
+            return "request";
+        }
+        return null;
+    }
+
+    private static Long asLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static Integer asInteger(Object value) {
+        return value instanceof Number number ? number.intValue() : null;
+    }
+
+    private static String asText(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private Instant parseTimestamp(String timestampStr) {
+        if (timestampStr == null) {
+            return null;
+        }
+        try {
+            // Формат Terraform "2025-09-09T15:47:33.319437+03:00", смещение учитывается
+            return TimestampParser.parse(timestampStr);
+        } catch (DateTimeParseException e) {
+            // Подставлять текущее время нельзя: запись встанет не на своё место при сортировке
+            logger.warn("Failed to parse timestamp: {}", timestampStr);
+            return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,21 +1,26 @@
 package ru.konkurst1.ekb.terraform_logviewer.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
 import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.data.elasticsearch.core.query.UpdateQuery;
 import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.dto.CursorPage;
 import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepository;
+import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepositoryImpl;
 
 import java.util.List;
 import java.util.Map;
@@ -30,13 +35,56 @@ public class LogSearchService {
     @Autowired
     private ElasticsearchOperations elasticsearchOperations;
 
+    @Autowired
+    private SearchCursorService searchCursorService;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    // Сколько записей экспорт читает за один запрос к Elasticsearch
+    @Value("${app.export.batch-size:1000}")
+    private int exportBatchSize = 1000;
+
     public Page<LogEntry> advancedSearch(SearchFilters filters, String logFileId) {
+        return queryResultCache.get(logFileId, "advanced|" + QueryResultCache.filtersKey(filters),
+                () -> searchPage(filters, logFileId), Page::getContent);
+    }
+
+    private Page<LogEntry> searchPage(SearchFilters filters, String logFileId) {
         Pageable pageable = PageRequest.of(
                 filters.getPage(),
                 filters.getSize(),
-                Sort.by("timestamp").ascending()
+                buildSort(filters)
         );
 
+        Criteria criteria = buildCriteria(filters, logFileId);
+
+        Query query = new CriteriaQuery(criteria).setPageable(pageable);
+        SearchHits<LogEntry> searchHits = elasticsearchOperations.search(query, LogEntry.class);
+
+        List<LogEntry> content = searchHits.getSearchHits().stream()
+                .map(SearchHit::getContent)
+                .collect(Collectors.toList());
+
+        return new org.springframework.data.domain.PageImpl<>(
+                content, pageable, searchHits.getTotalHits()
+        );
+    }
+
+    // Те же фильтры и сортировка, но курсором (SearchCursorService): page из фильтров не используется
+    // Страницы курсора не кэшируются: keep-alive PIT продлевает только запрос к Elasticsearch
+    public CursorPage advancedSearchByCursor(SearchFilters filters, String logFileId, String cursor) {
+        return searchCursorService.page(buildCriteria(filters, logFileId), buildSort(filters), filters.getSize(), cursor);
+    }
+
+    // Вся выборка по фильтрам (без page/size) в порядке сортировки фильтров; первый батч уже прочитан,
+    // записи отдаёт Scan.forEach, вызывающий закрывает обход
+    public SearchCursorService.Scan openExport(SearchFilters filters) {
+        return searchCursorService.openScan(buildCriteria(filters, filters.getLogFileId()), buildSort(filters),
+                exportBatchSize);
+    }
+
+    static Criteria buildCriteria(SearchFilters filters, String logFileId) {
         Criteria criteria = new Criteria();
 
         if (logFileId != null && !logFileId.isEmpty()) {
@@ -45,10 +93,8 @@ public class LogSearchService {
 
         // Free text search
         if (filters.getFreeText() != null && !filters.getFreeText().trim().isEmpty()) {
-            String searchTerm = filters.getFreeText().toLowerCase();
-            Criteria messageCriteria = new Criteria("message").contains(searchTerm)
-                    .or(new Criteria("rawMessage").contains(searchTerm));
-            criteria = criteria.and(messageCriteria);
+            criteria = criteria.subCriteria(
+                    LogEntryRepositoryImpl.messageCriteria(filters.getFreeText(), filters.getTextMatch()));
         }
 
         // Resource type filter
@@ -79,21 +125,57 @@ public class LogSearchService {
             criteria = criteria.and(new Criteria("timestamp").lessThanEqual(filters.getTimestampTo()));
         }
 
+        // Template filters
+        if (filters.getTemplateId() != null && !filters.getTemplateId().isEmpty()) {
+            criteria = criteria.and(new Criteria("templateId").is(filters.getTemplateId()));
+        }
+        if (filters.getExcludeTemplateIds() != null && !filters.getExcludeTemplateIds().isEmpty()) {
+            criteria = criteria.and(new Criteria("templateId").not().in(filters.getExcludeTemplateIds()));
+        }
+
+        // Enrichment filters
+        if (filters.getTfRpc() != null && !filters.getTfRpc().isEmpty()) {
+            criteria = criteria.and(new Criteria("tfRpc").is(filters.getTfRpc()));
+        }
+        if (filters.getRequestType() != null && !filters.getRequestType().isEmpty()) {
+            criteria = criteria.and(new Criteria("requestType").is(filters.getRequestType()));
+        }
+
+        if (filters.getRequestStatus() != null && !filters.getRequestStatus().isEmpty()) {
+            criteria = criteria.and(new Criteria("requestStatus").is(filters.getRequestStatus()));
+        }
+        if (filters.getOperationType() != null && !filters.getOperationType().isEmpty()) {
+            criteria = criteria.and(new Criteria("operationType").is(filters.getOperationType()));
+        }
+        if (filters.getMinDurationMs() != null) {
+            criteria = criteria.and(new Criteria("requestDurationMs").greaterThanEqual(filters.getMinDurationMs()));
+        }
+        if (filters.getMaxDurationMs() != null) {
+            criteria = criteria.and(new Criteria("requestDurationMs").lessThanEqual(filters.getMaxDurationMs()));
+        }
+        if (filters.getMinSeverity() != null) {
+            criteria = criteria.and(new Criteria("severityScore").greaterThanEqual(filters.getMinSeverity()));
+        }
+        if (filters.getMaxSeverity() != null) {
+            criteria = criteria.and(new Criteria("severityScore").lessThanEqual(filters.getMaxSeverity()));
+        }
+
         // Unread filter
         if (Boolean.TRUE.equals(filters.getOnlyUnread())) {
             criteria = criteria.and(new Criteria("isRead").is(false));
         }
+        return criteria;
+    }
 
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        SearchHits<LogEntry> searchHits = elasticsearchOperations.search(query, LogEntry.class);
-
-        List<LogEntry> content = searchHits.getSearchHits().stream()
-                .map(SearchHit::getContent)
-                .collect(Collectors.toList());
-
-        return new org.springframework.data.domain.PageImpl<>(
-                content, pageable, searchHits.getTotalHits()
-        );
+    // Сортировка по выбранному полю, при равенстве - по времени
+    static Sort buildSort(SearchFilters filters) {
+        SearchFilters.SortField sortBy = filters.getSortBy() != null ? filters.getSortBy() : SearchFilters.SortField.TIMESTAMP;
+        Sort.Direction direction = filters.getSortDirection() != null ? filters.getSortDirection() : sortBy.getDefaultDirection();
+        Sort sort = Sort.by(direction, sortBy.getProperty());
+        if (sortBy != SearchFilters.SortField.TIMESTAMP) {
+            sort = sort.and(Sort.by("timestamp").ascending());
+        }
+        return sort;
     }
 
     public Map<String, List<LogEntry>> groupByRequestId(List<LogEntry> entries) {
@@ -113,7 +195,13 @@ public class LogSearchService {
                         .build())
                 .collect(Collectors.toList());
 
-        elasticsearchOperations.bulkUpdate(updateQueries, LogEntry.class);
+        // Отметка прочтения - единственное изменение загруженных записей. Кэш сбрасывается после refresh,
+        // иначе выборка между сбросом и refresh закэширует старые isRead. WAIT_UNTIL не подходит: пока идёт
+        // загрузка, refresh_interval выключен (BulkIndexer) и запрос ждал бы её окончания
+        elasticsearchOperations.bulkUpdate(updateQueries,
+                BulkOptions.builder().withRefreshPolicy(RefreshPolicy.IMMEDIATE).build(),
+                elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class));
+        queryResultCache.invalidateEntries(entryIds);
     }
 
 
@@ -0,0 +1,61 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика загрузки, которая считается по батчам во время индексации за один проход
+ * по каждой записи. Батчи могут приходить из разных потоков.
+ */
+public class LogStatsCollector {
+
+    private final LongAdder totalEntries = new LongAdder();
+    private final LongAdder planSectionEntries = new LongAdder();
+    private final LongAdder applySectionEntries = new LongAdder();
+    private final LongAdder errorEntries = new LongAdder();
+    private final LongAdder warnEntries = new LongAdder();
+
+    public void accept(List<LogEntry> batch) {
+        long plan = 0;
+        long apply = 0;
+        long errors = 0;
+        long warnings = 0;
+
+        for (LogEntry entry : batch) {
+            String section = entry.getSection();
+            if ("plan".equals(section)) {
+                plan++;
+            } else if ("apply".equals(section)) {
+                apply++;
+            }
+
+            String level = entry.getLevel();
+            if ("ERROR".equals(level)) {
+                errors++;
+            } else if ("WARN".equals(level)) {
+                warnings++;
+            }
+        }
+
+        totalEntries.add(batch.size());
+        planSectionEntries.add(plan);
+        applySectionEntries.add(apply);
+        errorEntries.add(errors);
+        warnEntries.add(warnings);
+    }
+
+    // Ключи совпадают с прежним ответом /upload, на них рассчитан фронтенд
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalEntries", totalEntries.sum());
+        stats.put("planSectionEntries", planSectionEntries.sum());
+        stats.put("applySectionEntries", applySectionEntries.sum());
+        stats.put("errorEntries", errorEntries.sum());
+        stats.put("warnEntries", warnEntries.sum());
+        return stats;
+    }
+}
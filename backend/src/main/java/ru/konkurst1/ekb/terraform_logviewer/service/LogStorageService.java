@@ -7,13 +7,24 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.dto.CursorPage;
 import ru.konkurst1.ekb.terraform_logviewer.dto.LogFileInfo;
+import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogFileSummary;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepository;
+import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepositoryImpl;
+import ru.konkurst1.ekb.terraform_logviewer.repository.LogFileSummaryRepository;
 
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class LogStorageService {
@@ -21,6 +32,16 @@ public class LogStorageService {
 
     @Autowired
     private LogEntryRepository logEntryRepository;
+    @Autowired
+    private LogFileSummaryRepository logFileSummaryRepository;
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private RawLogStore rawLogStore;
+    @Autowired
+    private SearchCursorService searchCursorService;
+    @Autowired
+    private QueryResultCache queryResultCache;
 
     public void saveEntries(List<LogEntry> entries) {
         logger.info("Saving {} log entries to Elasticsearch", entries.size());
@@ -28,11 +49,69 @@ public class LogStorageService {
         logger.info("Successfully saved {} entries", entries.size());
     }
 
+    public void deleteEntries(String logFileId) {
+        logger.info("Deleting entries of log file {}", logFileId);
+        logEntryRepository.deleteByLogFileId(logFileId);
+        logFileSummaryRepository.deleteById(logFileId);
+        blobStore.delete(logFileId);
+        rawLogStore.delete(logFileId);
+        queryResultCache.invalidate(logFileId);
+    }
+
+    public void saveSummary(LogFileSummary summary) {
+        logFileSummaryRepository.save(summary);
+    }
+
+    // Полные значения полей, вынесенных из индекса при загрузке (LogEntry.truncatedFields)
+    public Optional<Map<String, Object>> getFullValues(String entryId) throws IOException {
+        Optional<LogEntry> entry = logEntryRepository.findById(entryId);
+        if (entry.isEmpty() || entry.get().getBlobRef() == null) {
+            return Optional.empty();
+        }
+        return blobStore.read(entry.get().getLogFileId(), entry.get().getBlobRef());
+    }
+
+    // Строки исходного файла вокруг записи. Номер строки и файл берутся из id записи (LogParserService.documentId),
+    // поэтому Elasticsearch не нужен: поиск блока в индексе RawLogStore и одно чтение с диска
+    public Optional<List<RawLogStore.RawLine>> getContext(String entryId, int before, int after) throws IOException {
+        int separator = entryId.lastIndexOf(':');
+        if (separator <= 0) {
+            return Optional.empty();
+        }
+        long lineNumber;
+        try {
+            lineNumber = Long.parseLong(entryId, separator + 1, entryId.length(), 10);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        return rawLogStore.readContext(entryId.substring(0, separator), lineNumber, before, after);
+    }
+
+    public Optional<LogFileSummary> getSummary(String logFileId) {
+        return logFileSummaryRepository.findById(logFileId);
+    }
+
     public Page<LogEntry> findEntries(String logFileId, int page, int size,
                                       LogLevel level, String section, Boolean hasErrors) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("timestamp").ascending());
 
-        return logEntryRepository.findByLogFileIdAndFilters(logFileId, level, section, hasErrors, pageable);
+        String key = "entries|" + page + "|" + size + "|" + level + "|" + section + "|" + hasErrors;
+        return queryResultCache.get(logFileId, key,
+                () -> logEntryRepository.findByLogFileIdAndFilters(logFileId, level, section, hasErrors, pageable),
+                Page::getContent);
+    }
+
+    // То же, что findEntries, но курсором: глубина страницы не влияет на её цену (SearchCursorService).
+    // Страницы не кэшируются: страница из кэша не продлила бы keep-alive PIT, и следующая упала бы на истёкшем PIT
+    public CursorPage findEntriesByCursor(String logFileId, LogLevel level, String section, Boolean hasErrors,
+                                          int size, String cursor) {
+        return searchCursorService.page(LogEntryRepositoryImpl.filterCriteria(logFileId, level, section, hasErrors),
+                Sort.by("timestamp").ascending(), size, cursor);
+    }
+
+    // Поток держит scroll-контекст Elasticsearch, его нужно закрыть
+    public Stream<LogEntry> streamEntries(String logFileId) {
+        return logEntryRepository.streamByLogFileIdOrderByTimestampAsc(logFileId);
     }
 
     public Long getUnreadCount(String logFileId) {
@@ -41,11 +120,65 @@ public class LogStorageService {
 
     public Page<LogEntry> searchEntries(String logFileId, String query, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("timestamp").ascending());
-        return logEntryRepository.findByLogFileIdAndMessageContainingIgnoreCase(logFileId, query, pageable);
+        return logEntryRepository.searchMessages(logFileId, query, pageable);
+    }
+
+    public CursorPage searchEntriesByCursor(String logFileId, String query, int size, String cursor) {
+        Criteria criteria = new Criteria("logFileId").is(logFileId)
+                .subCriteria(LogEntryRepositoryImpl.messageCriteria(query, SearchFilters.TextMatch.AUTO));
+        return searchCursorService.page(criteria, Sort.by("timestamp").ascending(), size, cursor);
+    }
+
+    // Список файлов читается из сводок, а не агрегацией по записям; сводки отдаются страницами
+    public List<LogFileInfo> getLogFiles(int page, int size) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by("uploadTime").descending());
+        return logFileSummaryRepository.findAll(pageable).stream()
+                .map(summary -> new LogFileInfo(summary.getId(), summary.getUploadTime(),
+                        summary.getEntryCount(), summary.getFailedLines()))
+                .toList();
+    }
+
+    // Ключи прежнего ответа /stats (на них рассчитан фронтенд): по сводке одного файла или, по всем файлам,
+    // счётчиками Elasticsearch (_count), чтобы не читать все сводки в память
+    public Map<String, Object> getStats(String logFileId) {
+        if (logFileId == null || logFileId.isEmpty()) {
+            return stats(logEntryRepository.count(),
+                    logEntryRepository.countMatching(new Criteria("section").is("plan")),
+                    logEntryRepository.countMatching(new Criteria("section").is("apply")),
+                    logEntryRepository.countMatching(new Criteria("level").is(LogLevel.ERROR)),
+                    logEntryRepository.countMatching(new Criteria("level").is(LogLevel.WARN)),
+                    logFileSummaryRepository.count());
+        }
+
+        Optional<LogFileSummary> found = getSummary(logFileId);
+        if (found.isEmpty()) {
+            return stats(0, 0, 0, 0, 0, 0);
+        }
+        LogFileSummary summary = found.get();
+        Map<String, Object> stats = stats(summary.getEntryCount() != null ? summary.getEntryCount() : 0,
+                count(summary.getSectionCounts(), "plan"),
+                count(summary.getSectionCounts(), "apply"),
+                count(summary.getLevelCounts(), "ERROR"),
+                count(summary.getLevelCounts(), "WARN"),
+                1);
+        stats.put("summary", summary);
+        return stats;
+    }
+
+    private static Map<String, Object> stats(long totalEntries, long planEntries, long applyEntries,
+                                             long errorEntries, long warnEntries, long files) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalEntries", totalEntries);
+        stats.put("planSectionEntries", planEntries);
+        stats.put("applySectionEntries", applyEntries);
+        stats.put("errorEntries", errorEntries);
+        stats.put("warnEntries", warnEntries);
+        stats.put("files", files);
+        return stats;
     }
 
-    public List<LogFileInfo> getLogFiles() {
-        return logEntryRepository.findLogFileInfo();
+    private static long count(Map<String, Long> counts, String key) {
+        return counts != null ? counts.getOrDefault(key, 0L) : 0;
     }
 
     public List<String> getDistinctResourceTypes() {
@@ -0,0 +1,134 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Распознаёт формат загруженного файла по сигнатуре (или по Content-Encoding, если сигнатуры нет)
+ * и распаковывает его потоком: gzip и zstd разжимаются на лету прямо в парсер,
+ * tar и zip (в том числе tar.gz) читаются по записям.
+ */
+public final class LogStreamDecoder {
+
+    public enum Format {
+        PLAIN, GZIP, ZSTD, ZIP, TAR
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Сигнатура "ustar" стоит в заголовке tar по смещению 257
+    private static final int TAR_MAGIC_OFFSET = 257;
+    private static final int PEEK_SIZE = TAR_MAGIC_OFFSET + 5;
+
+    private LogStreamDecoder() {
+    }
+
+    public static Format detect(Path file, String encodingHint) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), PEEK_SIZE)) {
+            return detect(in, encodingHint);
+        }
+    }
+
+    // Поток должен поддерживать mark/reset, позиция не меняется
+    static Format detect(InputStream in, String encodingHint) throws IOException {
+        Format detected = detectMagic(peek(in));
+        Format hinted = fromHint(encodingHint);
+        if (detected == Format.PLAIN && (hinted == Format.GZIP || hinted == Format.ZSTD)) {
+            throw new IOException("Upload declared as " + encodingHint + " but is not " + hinted + "-compressed");
+        }
+        return detected;
+    }
+
+    // Разжимает gzip/zstd; для остальных форматов возвращает исходные данные. Результат поддерживает mark/reset
+    public static InputStream decompress(InputStream raw, Format format) throws IOException {
+        InputStream buffered = new BufferedInputStream(raw, BUFFER_SIZE);
+        InputStream decoded = switch (format) {
+            // decompressConcatenated: gzip-файлы, склеенные через cat, читаются целиком
+            case GZIP -> new GzipCompressorInputStream(buffered, true);
+            case ZSTD -> new ZstdCompressorInputStream(buffered);
+            default -> buffered;
+        };
+        return decoded == buffered ? buffered : new BufferedInputStream(decoded, BUFFER_SIZE);
+    }
+
+    // Архив по сигнатуре распакованных данных или null, если это обычный лог
+    public static ArchiveInputStream<? extends ArchiveEntry> openArchive(InputStream decoded) throws IOException {
+        return switch (detectMagic(peek(decoded))) {
+            case ZIP -> new ZipArchiveInputStream(decoded);
+            case TAR -> new TarArchiveInputStream(decoded);
+            default -> null;
+        };
+    }
+
+    // Запись архива читается конвейером, который закрывает поток по окончании, а архив нужен дальше
+    public static InputStream nonClosing(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    static Format fromHint(String encodingHint) {
+        if (encodingHint == null) {
+            return null;
+        }
+        String hint = encodingHint.toLowerCase(Locale.ROOT).trim();
+        if (hint.endsWith("gzip")) {
+            return Format.GZIP;
+        }
+        if (hint.endsWith("zstd")) {
+            return Format.ZSTD;
+        }
+        return null;
+    }
+
+    private static byte[] peek(InputStream in) throws IOException {
+        in.mark(PEEK_SIZE);
+        try {
+            return in.readNBytes(PEEK_SIZE);
+        } finally {
+            in.reset();
+        }
+    }
+
+    private static Format detectMagic(byte[] head) {
+        if (startsWith(head, 0x1F, 0x8B)) {
+            return Format.GZIP;
+        }
+        if (startsWith(head, 0x28, 0xB5, 0x2F, 0xFD)) {
+            return Format.ZSTD;
+        }
+        if (startsWith(head, 0x50, 0x4B, 0x03, 0x04)) {
+            return Format.ZIP;
+        }
+        if (head.length >= PEEK_SIZE && head[TAR_MAGIC_OFFSET] == 'u' && head[TAR_MAGIC_OFFSET + 1] == 's'
+                && head[TAR_MAGIC_OFFSET + 2] == 't' && head[TAR_MAGIC_OFFSET + 3] == 'a' && head[TAR_MAGIC_OFFSET + 4] == 'r') {
+            return Format.TAR;
+        }
+        return Format.PLAIN;
+    }
+
+    private static boolean startsWith(byte[] head, int... magic) {
+        if (head.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((head[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.dto.TemplateCount;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogTemplate;
+import ru.konkurst1.ekb.terraform_logviewer.repository.LogTemplateRepository;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Шаблоны сообщений: разметка записей при загрузке ({@link TemplateMiner}), боковой индекс
+ * terraform_log_templates и "топ шаблонов" - terms-агрегация по keyword-полю templateId.
+ * Майнер один на приложение, поэтому одинаковые сообщения разных файлов получают один templateId;
+ * при старте он заполняется сохранёнными шаблонами, и id переживают перезапуск.
+ */
+@Service
+public class LogTemplateService {
+    private static final Logger logger = LoggerFactory.getLogger(LogTemplateService.class);
+
+    // Больше за один поиск Elasticsearch не отдаёт (index.max_result_window по умолчанию)
+    private static final int MAX_RESTORED = 10_000;
+
+    @Autowired
+    private LogTemplateRepository logTemplateRepository;
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Value("${app.templates.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.templates.depth:4}")
+    private int depth = 4;
+
+    @Value("${app.templates.similarity-threshold:0.4}")
+    private double similarityThreshold = 0.4;
+
+    @Value("${app.templates.max-children:100}")
+    private int maxChildren = 100;
+
+    @Value("${app.templates.max-clusters:10000}")
+    private int maxClusters = 10000;
+
+    @Value("${app.templates.max-tokens:80}")
+    private int maxTokens = 80;
+
+    @Value("${app.templates.max-parameter-samples:5}")
+    private int maxParameterSamples = 5;
+
+    private TemplateMiner miner = newMiner();
+
+    @PostConstruct
+    void init() {
+        miner = newMiner();
+        if (enabled) {
+            restoreTemplates();
+        }
+    }
+
+    // Последние maxClusters сохранённых шаблонов; самые свежие восстанавливаются последними и вытесняются позже
+    private void restoreTemplates() {
+        try {
+            Sort sort = Sort.by(Sort.Direction.DESC, "updatedAt");
+            List<LogTemplate> stored = new ArrayList<>(logTemplateRepository
+                    .findAll(PageRequest.of(0, Math.min(maxClusters, MAX_RESTORED), sort))
+                    .getContent());
+            Collections.reverse(stored);
+            for (LogTemplate template : stored) {
+                miner.restore(toTemplate(template));
+            }
+            logger.info("Restored {} message templates", miner.clusterCount());
+        } catch (ElasticsearchException | DataAccessException e) {
+            logger.warn("Failed to restore message templates, ids of known templates may change: {}", e.getMessage());
+        }
+    }
+
+    private TemplateMiner newMiner() {
+        return new TemplateMiner(depth, similarityThreshold, maxChildren, maxClusters, maxTokens, maxParameterSamples);
+    }
+
+    // Проставляет templateId записям батча; возвращает шаблоны, которые появились или обобщились
+    public List<LogTemplate> assignTemplates(List<LogEntry> entries) {
+        if (!enabled || entries.isEmpty()) {
+            return List.of();
+        }
+        miner.assignTemplates(entries);
+        Instant now = Instant.now();
+        return miner.drainChanged().stream()
+                .map(template -> toDocument(template, now))
+                .toList();
+    }
+
+    // Вызывается один раз в конце загрузки, а не на каждый батч
+    public void saveTemplates(List<LogTemplate> templates) {
+        if (!templates.isEmpty()) {
+            logTemplateRepository.saveAll(templates);
+        }
+    }
+
+    public Optional<LogTemplate> findTemplate(String templateId) {
+        Optional<LogTemplate> stored = logTemplateRepository.findById(templateId);
+        if (stored.isPresent()) {
+            return stored;
+        }
+        // Ещё не сохранённый (или не сохранившийся) шаблон берётся из памяти майнера
+        return Optional.ofNullable(miner.get(templateId)).map(template -> toDocument(template, null));
+    }
+
+    // Самые частые шаблоны файла (или всех файлов, если logFileId не задан)
+    public List<TemplateCount> topTemplates(String logFileId, int size) throws IOException {
+        String indexName = elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class).getIndexName();
+        SearchResponse<Void> response = elasticsearchClient.search(request -> {
+            request.index(indexName)
+                    .size(0)
+                    .aggregations("templates", aggregation -> aggregation
+                            .terms(terms -> terms.field("templateId").size(size)));
+            if (logFileId != null && !logFileId.isEmpty()) {
+                request.query(query -> query.term(term -> term.field("logFileId").value(logFileId)));
+            }
+            return request;
+        }, Void.class);
+
+        List<StringTermsBucket> buckets = response.aggregations().get("templates").sterms().buckets().array();
+        List<String> ids = buckets.stream().map(bucket -> bucket.key().stringValue()).toList();
+        Map<String, String> texts = new HashMap<>();
+        logTemplateRepository.findAllById(ids).forEach(template -> texts.put(template.getId(), template.getTemplate()));
+
+        List<TemplateCount> result = new ArrayList<>(buckets.size());
+        for (StringTermsBucket bucket : buckets) {
+            String templateId = bucket.key().stringValue();
+            String text = texts.get(templateId);
+            if (text == null) {
+                TemplateMiner.Template template = miner.get(templateId);
+                text = template != null ? template.text() : null;
+            }
+            result.add(new TemplateCount(templateId, text, bucket.docCount()));
+        }
+        return result;
+    }
+
+    private static TemplateMiner.Template toTemplate(LogTemplate document) {
+        List<List<String>> parameterSamples = new ArrayList<>();
+        if (document.getParameters() != null) {
+            for (LogTemplate.Parameter parameter : document.getParameters()) {
+                parameterSamples.add(parameter.getSamples() != null ? parameter.getSamples() : List.of());
+            }
+        }
+        int tokenCount = document.getTokenCount() != null ? document.getTokenCount() : 0;
+        String text = document.getTemplate() != null ? document.getTemplate() : "";
+        return new TemplateMiner.Template(document.getId(), text, tokenCount, parameterSamples);
+    }
+
+    private static LogTemplate toDocument(TemplateMiner.Template template, Instant updatedAt) {
+        List<LogTemplate.Parameter> parameters = new ArrayList<>(template.parameterSamples().size());
+        for (int i = 0; i < template.parameterSamples().size(); i++) {
+            LogTemplate.Parameter parameter = new LogTemplate.Parameter();
+            parameter.setIndex(i);
+            parameter.setSamples(template.parameterSamples().get(i));
+            parameters.add(parameter);
+        }
+
+        LogTemplate document = new LogTemplate();
+        document.setId(template.id());
+        document.setTemplate(template.text());
+        document.setTokenCount(template.tokenCount());
+        document.setParameters(parameters);
+        document.setUpdatedAt(updatedAt);
+        return document;
+    }
+}
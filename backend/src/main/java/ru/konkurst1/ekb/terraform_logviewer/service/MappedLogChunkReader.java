@@ -0,0 +1,99 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Читает локальный файл через FileChannel.map: файл отображается окнами по windowSize байт,
+ * внутри окна границы строк ищутся прямо в отображённом буфере, куски отдаются как его срезы
+ * без копирования в кучу.
+ */
+public class MappedLogChunkReader implements LogChunkSource, AutoCloseable {
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int chunkSize;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowPosition;
+
+    public MappedLogChunkReader(Path file, int chunkSize, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.chunkSize = chunkSize;
+        this.windowSize = Math.max(windowSize, chunkSize);
+    }
+
+    @Override
+    public LogChunk next() throws IOException {
+        if (window == null || windowPosition >= window.limit()) {
+            long nextStart = window == null ? 0 : windowStart + window.limit();
+            if (nextStart >= fileSize) {
+                return null;
+            }
+            mapWindow(nextStart);
+        }
+
+        int remaining = window.limit() - windowPosition;
+        int end = windowPosition + Math.min(chunkSize, remaining);
+        if (end < window.limit()) {
+            // Окно заканчивается на границе строки, поэтому перевод строки найдётся внутри него
+            int newline = lastNewline(window, windowPosition, end);
+            end = newline >= 0 ? newline + 1 : firstNewline(window, end) + 1;
+        }
+
+        LogChunk chunk = new LogChunk(window.slice(windowPosition, end - windowPosition), windowStart + windowPosition);
+        windowPosition = end;
+        return chunk;
+    }
+
+    // Отображает окно, начинающееся с start и обрезанное по последнему переводу строки
+    private void mapWindow(long start) throws IOException {
+        long size = Math.min(windowSize, fileSize - start);
+        while (true) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            boolean lastWindow = start + size >= fileSize;
+            int newline = lastWindow ? -1 : lastNewline(mapped, 0, (int) size);
+            if (lastWindow || newline >= 0) {
+                window = mapped;
+                window.limit(lastWindow ? (int) size : newline + 1);
+                windowStart = start;
+                windowPosition = 0;
+                return;
+            }
+            if (size >= Integer.MAX_VALUE - 8) {
+                throw new IOException("Log line at offset " + start + " is longer than 2GB");
+            }
+            // Строка длиннее окна - расширяем окно
+            size = Math.min(Math.min(size * 2, Integer.MAX_VALUE - 8), fileSize - start);
+        }
+    }
+
+    private static int lastNewline(MappedByteBuffer buffer, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int firstNewline(MappedByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return buffer.limit() - 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -108,7 +108,7 @@ public class PluginManagerService {
         }
     }
 
-    private PluginRequest buildPluginRequest(List<LogEntry> entries, Map<String, String> parameters) {
+    PluginRequest buildPluginRequest(List<LogEntry> entries, Map<String, String> parameters) {
         PluginRequest.Builder requestBuilder = PluginRequest.newBuilder();
 
         for (LogEntry entry : entries) {
@@ -136,6 +136,9 @@ public class PluginManagerService {
             if (entry.getRequestType() != null) {
                 entryBuilder.setRequestType(entry.getRequestType());
             }
+            if (entry.getTfRpc() != null) {
+                entryBuilder.setTfRpc(entry.getTfRpc());
+            }
             if (entry.getModule() != null) {
                 // Можно добавить поле module в proto если нужно
             }
@@ -143,18 +146,24 @@ public class PluginManagerService {
                 // Можно добавить поле tfProviderAddr в proto если нужно
             }
 
-            // Новые поля из обогащения
+            // Поля из обогащения
             if (entry.getRequestDurationMs() != null) {
-                // Можно добавить в statistics или как отдельное поле
+                entryBuilder.setRequestDurationMs(entry.getRequestDurationMs());
             }
             if (entry.getRequestStatus() != null) {
-                // Можно добавить в statistics или как отдельное поле
+                entryBuilder.setRequestStatus(entry.getRequestStatus());
             }
             if (entry.getOperationType() != null) {
-                // Можно добавить в statistics или как отдельное поле
+                entryBuilder.setOperationType(entry.getOperationType());
             }
             if (entry.getSeverityScore() != null) {
-                // Можно добавить в statistics или как отдельное поле
+                entryBuilder.setSeverityScore(entry.getSeverityScore());
+            }
+            if (entry.getDiagnosticErrorCount() != null) {
+                entryBuilder.setDiagnosticErrorCount(entry.getDiagnosticErrorCount());
+            }
+            if (entry.getDiagnosticWarningCount() != null) {
+                entryBuilder.setDiagnosticWarningCount(entry.getDiagnosticWarningCount());
             }
 
             requestBuilder.addEntries(entryBuilder.build());
@@ -192,6 +201,7 @@ public class PluginManagerService {
             entry.setTfResourceType(proto.getTfResourceType());
             entry.setTfReqId(proto.getTfReqId());
             entry.setRequestType(proto.getRequestType());
+            entry.setTfRpc(proto.getTfRpc());
 
             // Восстанавливаем rawJson из jsonBody
             if (!proto.getJsonBody().isEmpty()) {
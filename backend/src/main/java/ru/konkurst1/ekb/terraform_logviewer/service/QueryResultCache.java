@@ -0,0 +1,243 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.dto.QueryCacheStats;
+import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов выборок (advancedSearch, findEntries) с LRU-вытеснением
+ * по суммарному оценочному размеру записей (app.cache.max-bytes) и по числу результатов (app.cache.max-entries).
+ * Загруженные файлы не меняются, кроме отметки прочтения, поэтому результат файла сбрасывается только
+ * при markAsRead его записей, удалении файла и загрузке под его logFileId; выборки без logFileId
+ * сбрасываются вместе с любым файлом. Сбрасывать нужно после того, как изменение стало видно поиску (refresh).
+ * Пока файл загружается, его результаты не кэшируются.
+ * Результат, загрузка которого пересеклась со сбросом, в кэш не попадает (счётчик version).
+ */
+@Service
+public class QueryResultCache {
+    // Выборки по всем файлам (logFileId не задан)
+    static final String ALL_FILES = "*";
+    // Оценка памяти записи без строк: объект, поля, обёртки чисел
+    static final int ENTRY_OVERHEAD = 320;
+    static final int RESULT_OVERHEAD = 256;
+
+    // Поля в алфавитном порядке: порядок полей класса на ключ не влияет
+    private static final ObjectMapper KEY_MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .build();
+
+    @Value("${app.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.cache.max-bytes:67108864}")
+    private long maxBytes = 64L * 1024 * 1024;
+
+    @Value("${app.cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    record Key(String logFileId, String query) {
+    }
+
+    private record Cached(Object value, long weight) {
+    }
+
+    // Порядок доступа: первым идёт давно не использованный результат
+    private final LinkedHashMap<Key, Cached> results = new LinkedHashMap<>(256, 0.75f, true);
+    // Файлы, которые сейчас загружаются, и число их загрузок
+    private final Map<String, Integer> writing = new HashMap<>();
+    private long version;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Результат из кэша или от loader. content - записи результата, по ним оценивается размер.
+     */
+    public <T> T get(String logFileId, String query, Supplier<T> loader, Function<T, List<LogEntry>> content) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(fileKey(logFileId), query);
+        long loadVersion;
+        synchronized (this) {
+            Cached cached = results.get(key);
+            if (cached != null) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                T value = (T) cached.value();
+                return value;
+            }
+            misses++;
+            loadVersion = version;
+        }
+
+        T value = loader.get();
+        if (value != null) {
+            put(key, value, RESULT_OVERHEAD + estimateSize(content.apply(value)), loadVersion);
+        }
+        return value;
+    }
+
+    // Сброс результатов файла и выборок по всем файлам
+    public synchronized void invalidate(String logFileId) {
+        version++;
+        invalidations++;
+        String file = fileKey(logFileId);
+        Iterator<Map.Entry<Key, Cached>> iterator = results.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Cached> entry = iterator.next();
+            String cachedFile = entry.getKey().logFileId();
+            if (cachedFile.equals(file) || cachedFile.equals(ALL_FILES) || file.equals(ALL_FILES)) {
+                weight -= entry.getValue().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    // Сброс по id записей (logFileId:lineNumber, см. LogParserService.documentId); чужой формат id - сброс всего
+    public void invalidateEntries(Collection<String> entryIds) {
+        List<String> files = new ArrayList<>();
+        for (String entryId : entryIds) {
+            int separator = entryId.lastIndexOf(':');
+            String file = separator > 0 ? entryId.substring(0, separator) : ALL_FILES;
+            if (!files.contains(file)) {
+                files.add(file);
+            }
+        }
+        files.forEach(this::invalidate);
+    }
+
+    // Начало загрузки файла: пока она идёт, выборки по нему видят неполные данные и не кэшируются
+    public synchronized void startWriting(String logFileId) {
+        writing.merge(logFileId, 1, Integer::sum);
+        invalidate(logFileId);
+    }
+
+    public synchronized void finishWriting(String logFileId) {
+        writing.computeIfPresent(logFileId, (file, count) -> count > 1 ? count - 1 : null);
+        invalidate(logFileId);
+    }
+
+    public synchronized void clear() {
+        version++;
+        invalidations++;
+        results.clear();
+        weight = 0;
+    }
+
+    public synchronized QueryCacheStats stats() {
+        long requests = hits + misses;
+        return new QueryCacheStats(enabled, results.size(), weight, maxBytes, maxEntries, hits, misses,
+                evictions, invalidations, requests > 0 ? (double) hits / requests : 0);
+    }
+
+    private synchronized void put(Key key, Object value, long valueWeight, long loadVersion) {
+        // Пока шла загрузка, что-то сбросили - результат мог устареть
+        if (loadVersion != version || valueWeight > maxBytes || isWriting(key.logFileId())) {
+            return;
+        }
+        Cached previous = results.put(key, new Cached(value, valueWeight));
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += valueWeight;
+
+        Iterator<Map.Entry<Key, Cached>> eldest = results.entrySet().iterator();
+        while ((weight > maxBytes || results.size() > maxEntries) && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private boolean isWriting(String file) {
+        return file.equals(ALL_FILES) ? !writing.isEmpty() : writing.containsKey(file);
+    }
+
+    private static String fileKey(String logFileId) {
+        return logFileId == null || logFileId.isEmpty() ? ALL_FILES : logFileId;
+    }
+
+    /**
+     * Ключ фильтров: JSON с упорядоченными полями без пустых значений и значений по умолчанию,
+     * чтобы одинаковые по смыслу запросы (null и "", порядок excludeTemplateIds, явное направление
+     * сортировки по умолчанию) давали один ключ. logFileId фильтров не входит: он часть ключа кэша.
+     */
+    public static String filtersKey(SearchFilters filters) {
+        ObjectNode node = KEY_MAPPER.valueToTree(filters);
+        node.remove("logFileId");
+        List<String> empty = new ArrayList<>();
+        node.fields().forEachRemaining(field -> {
+            if (field.getValue().isNull() || (field.getValue().isTextual() && field.getValue().asText().isBlank())
+                    || (field.getValue().isArray() && field.getValue().isEmpty())
+                    || (field.getValue().isBoolean() && !field.getValue().asBoolean())) {
+                empty.add(field.getKey());
+            }
+        });
+        node.remove(empty);
+        if (filters.getExcludeTemplateIds() != null && !filters.getExcludeTemplateIds().isEmpty()) {
+            node.set("excludeTemplateIds", KEY_MAPPER.valueToTree(
+                    filters.getExcludeTemplateIds().stream().filter(Objects::nonNull).distinct().sorted().toList()));
+        }
+        SearchFilters.SortField sortBy = filters.getSortBy() != null ? filters.getSortBy() : SearchFilters.SortField.TIMESTAMP;
+        if (filters.getSortDirection() == sortBy.getDefaultDirection()) {
+            node.remove("sortDirection");
+        }
+        return node.toString();
+    }
+
+    // Оценка памяти записей: строки (2 байта на символ), rawJson целиком, остальное - ENTRY_OVERHEAD
+    static long estimateSize(List<LogEntry> entries) {
+        long size = 0;
+        for (LogEntry entry : entries) {
+            size += ENTRY_OVERHEAD + chars(entry.getId()) + chars(entry.getMessage()) + chars(entry.getCaller())
+                    + chars(entry.getTfReqId()) + chars(entry.getTfResourceType()) + estimateValue(entry.getRawJson());
+        }
+        return size;
+    }
+
+    private static long estimateValue(Object value) {
+        if (value instanceof String string) {
+            return 40 + chars(string);
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 64;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += 32 + estimateValue(entry.getKey()) + estimateValue(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 40;
+            for (Object item : collection) {
+                size += 8 + estimateValue(item);
+            }
+            return size;
+        }
+        return value != null ? 24 : 0;
+    }
+
+    private static long chars(String value) {
+        return value != null ? 2L * value.length() : 0;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Как поле rawJson записи маппится в индексе terraform_logs (app.index.raw-json-mapping).
+ * OBJECT - прежний динамический object: каждый новый ключ лога (tf_http_*, заголовки HTTP,
+ * tf_client_capability_*, ...) становится отдельным полем маппинга (строка - text + keyword).
+ * FLATTENED - одно поле flattened: все листья ищутся как keyword, маппинг не растёт.
+ * DISABLED - rawJson только хранится в _source и не индексируется.
+ * PROMOTED - индексируются только ключи из app.index.promoted-keys (keyword), остальные только в _source.
+ */
+public enum RawJsonMapping {
+    OBJECT,
+    FLATTENED,
+    DISABLED,
+    PROMOTED;
+
+    // Длинные значения (тела HTTP, планы) в keyword-индекс не попадают, в _source они остаются
+    static final int IGNORE_ABOVE = 256;
+
+    public static RawJsonMapping fromConfig(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown rawJson mapping '" + value
+                    + "', expected one of object, flattened, disabled, promoted");
+        }
+    }
+
+    // Свойство rawJson для маппинга индекса
+    public Map<String, Object> mapping(List<String> promotedKeys) {
+        Map<String, Object> property = new LinkedHashMap<>();
+        switch (this) {
+            case OBJECT -> property.put("type", "object");
+            case FLATTENED -> {
+                property.put("type", "flattened");
+                property.put("ignore_above", IGNORE_ABOVE);
+            }
+            case DISABLED -> {
+                property.put("type", "object");
+                property.put("enabled", false);
+            }
+            case PROMOTED -> {
+                Map<String, Object> properties = new LinkedHashMap<>();
+                for (String key : promotedKeys) {
+                    properties.put(key, Map.of("type", "keyword", "ignore_above", IGNORE_ABOVE));
+                }
+                property.put("type", "object");
+                property.put("dynamic", false);
+                property.put("properties", properties);
+            }
+        }
+        return property;
+    }
+
+    // Стратегия по свойству rawJson из маппинга существующего индекса; null - rawJson ещё не маппился
+    public static RawJsonMapping detect(Map<String, Object> property) {
+        if (property == null) {
+            return OBJECT;
+        }
+        if ("flattened".equals(property.get("type"))) {
+            return FLATTENED;
+        }
+        if ("false".equals(String.valueOf(property.get("enabled")))) {
+            return DISABLED;
+        }
+        if ("false".equals(String.valueOf(property.get("dynamic")))) {
+            return PROMOTED;
+        }
+        return OBJECT;
+    }
+
+    public String configName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
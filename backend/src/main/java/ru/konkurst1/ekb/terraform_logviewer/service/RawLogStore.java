@@ -0,0 +1,364 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Исходный файл загрузки, сжатый независимыми блоками: {@code <dir>/<logFileId>.raw} - блоки deflate
+ * по ~blockSize байт, выровненные по строкам, {@code <dir>/<logFileId>.rawidx} - разреженный индекс,
+ * одна запись на блок (смещение в файле, номер первой строки, положение сжатого блока).
+ * Строки вокруг записи читаются без Elasticsearch: поиск блока по индексу в памяти и один
+ * позиционный read подряд идущих сжатых блоков, которые покрывают нужный диапазон строк.
+ */
+@Service
+public class RawLogStore {
+    private static final Logger logger = LoggerFactory.getLogger(RawLogStore.class);
+    private static final String DATA_SUFFIX = ".raw";
+    private static final String INDEX_SUFFIX = ".rawidx";
+    // offset(8) + firstLine(8) + compressedOffset(8) + compressedLength(4) + length(4)
+    private static final int INDEX_RECORD_SIZE = 32;
+    private static final int MAX_CACHED_INDEXES = 32;
+
+    @Value("${app.raw.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.raw.dir:${java.io.tmpdir}/terraform-logviewer-raw}")
+    private String directory = System.getProperty("java.io.tmpdir") + "/terraform-logviewer-raw";
+
+    @Value("${app.raw.block-size:65536}")
+    private int blockSize = 65536;
+
+    @Value("${app.raw.compression-level:1}")
+    private int compressionLevel = Deflater.BEST_SPEED;
+
+    // Индексы недавно читавшихся файлов; порядок доступа - для вытеснения
+    private final Map<String, BlockIndex> indexCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Строка исходного файла: номер (с 1), смещение первого байта и текст без перевода строки.
+     */
+    public record RawLine(long lineNumber, long byteOffset, String text) {
+    }
+
+    public Writer openWriter(String logFileId) throws IOException {
+        Path data = dataFile(logFileId);
+        invalidate(logFileId);
+        if (!enabled) {
+            return new Writer(logFileId, null, null);
+        }
+        Files.createDirectories(data.getParent());
+        // Повторная загрузка того же logFileId перезаписывает файл: смещения блоков должны начинаться с нуля
+        return new Writer(logFileId,
+                FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                FileChannel.open(indexFile(logFileId), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Строки с lineNumber - before по lineNumber + after (в пределах файла).
+     * Пусто, если исходник файла не сохранялся или такой строки в нём нет.
+     */
+    public Optional<List<RawLine>> readContext(String logFileId, long lineNumber, int before, int after)
+            throws IOException {
+        BlockIndex index = index(logFileId);
+        if (index == null || lineNumber < 1 || lineNumber >= index.endLine) {
+            return Optional.empty();
+        }
+        long fromLine = Math.max(1, lineNumber - Math.max(0, before));
+        long toLine = Math.min(index.endLine - 1, lineNumber + Math.max(0, after));
+        int firstBlock = index.blockOf(fromLine);
+        int lastBlock = index.blockOf(toLine);
+
+        // Сжатые блоки лежат подряд, поэтому весь диапазон - один read
+        long readStart = index.compressedOffsets[firstBlock];
+        int readLength = Math.toIntExact(index.compressedOffsets[lastBlock] + index.compressedLengths[lastBlock] - readStart);
+        ByteBuffer compressed = ByteBuffer.allocate(readLength);
+        try (FileChannel channel = FileChannel.open(dataFile(logFileId), StandardOpenOption.READ)) {
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed, readStart + compressed.position()) < 0) {
+                    throw new IOException("Raw store of " + logFileId + " is shorter than its index");
+                }
+            }
+        }
+
+        List<RawLine> lines = new ArrayList<>(Math.toIntExact(toLine - fromLine + 1));
+        Inflater inflater = new Inflater(true);
+        try {
+            for (int block = firstBlock; block <= lastBlock; block++) {
+                byte[] raw = inflate(inflater, compressed.array(),
+                        Math.toIntExact(index.compressedOffsets[block] - readStart),
+                        index.compressedLengths[block], index.lengths[block]);
+                collectLines(raw, index.offsets[block], index.firstLines[block], fromLine, toLine, lines);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted raw store block of " + logFileId + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return Optional.of(lines);
+    }
+
+    public void delete(String logFileId) {
+        invalidate(logFileId);
+        try {
+            Files.deleteIfExists(dataFile(logFileId));
+            Files.deleteIfExists(indexFile(logFileId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete raw store of {}: {}", logFileId, e.getMessage());
+        }
+    }
+
+    private static void collectLines(byte[] raw, long blockOffset, long firstLine, long fromLine, long toLine,
+                                     List<RawLine> lines) {
+        long line = firstLine;
+        int start = 0;
+        while (start < raw.length && line <= toLine) {
+            int end = start;
+            while (end < raw.length && raw[end] != '\n') {
+                end++;
+            }
+            if (line >= fromLine) {
+                int contentEnd = end > start && raw[end - 1] == '\r' ? end - 1 : end;
+                lines.add(new RawLine(line, blockOffset + start,
+                        new String(raw, start, contentEnd - start, StandardCharsets.UTF_8)));
+            }
+            line++;
+            start = end + 1;
+        }
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] input, int offset, int length, int rawLength)
+            throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(input, offset, length);
+        byte[] raw = new byte[rawLength];
+        int filled = 0;
+        while (filled < rawLength) {
+            int inflated = inflater.inflate(raw, filled, rawLength - filled);
+            if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                throw new DataFormatException("block ended after " + filled + " of " + rawLength + " bytes");
+            }
+            filled += inflated;
+        }
+        return raw;
+    }
+
+    private BlockIndex index(String logFileId) throws IOException {
+        synchronized (indexCache) {
+            BlockIndex cached = indexCache.get(logFileId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Path file = indexFile(logFileId);
+        if (!Files.exists(file) || !Files.exists(dataFile(logFileId))) {
+            return null;
+        }
+        BlockIndex index = BlockIndex.read(Files.readAllBytes(file));
+        if (index == null) {
+            return null;
+        }
+        synchronized (indexCache) {
+            indexCache.put(logFileId, index);
+            if (indexCache.size() > MAX_CACHED_INDEXES) {
+                indexCache.remove(indexCache.keySet().iterator().next());
+            }
+        }
+        return index;
+    }
+
+    private void invalidate(String logFileId) {
+        synchronized (indexCache) {
+            indexCache.remove(logFileId);
+        }
+    }
+
+    private Path dataFile(String logFileId) {
+        return file(logFileId, DATA_SUFFIX);
+    }
+
+    private Path indexFile(String logFileId) {
+        return file(logFileId, INDEX_SUFFIX);
+    }
+
+    private Path file(String logFileId, String suffix) {
+        // logFileId становится именем файла, выйти за пределы каталога он не должен
+        if (logFileId == null || logFileId.isEmpty() || logFileId.contains("/") || logFileId.contains("\\")
+                || logFileId.contains("..")) {
+            throw new IllegalArgumentException("Invalid logFileId for raw store: " + logFileId);
+        }
+        return Path.of(directory).resolve(logFileId + suffix);
+    }
+
+    // Разреженный индекс блоков в виде параллельных массивов; endLine - номер строки после последней
+    private record BlockIndex(long[] offsets, long[] firstLines, long[] compressedOffsets, int[] compressedLengths,
+                              int[] lengths, long endLine) {
+
+        static BlockIndex read(byte[] bytes) {
+            int blocks = bytes.length / INDEX_RECORD_SIZE;
+            if (blocks == 0) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            long[] offsets = new long[blocks];
+            long[] firstLines = new long[blocks];
+            long[] compressedOffsets = new long[blocks];
+            int[] compressedLengths = new int[blocks];
+            int[] lengths = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                offsets[i] = buffer.getLong();
+                firstLines[i] = buffer.getLong();
+                compressedOffsets[i] = buffer.getLong();
+                compressedLengths[i] = buffer.getInt();
+                lengths[i] = buffer.getInt();
+            }
+            // Последняя запись - хвостовая (см. Writer.close): блока за ней нет, только номер строки за концом файла
+            long endLine = firstLines[blocks - 1];
+            return new BlockIndex(Arrays.copyOf(offsets, blocks - 1), Arrays.copyOf(firstLines, blocks - 1),
+                    Arrays.copyOf(compressedOffsets, blocks - 1), Arrays.copyOf(compressedLengths, blocks - 1),
+                    Arrays.copyOf(lengths, blocks - 1), endLine);
+        }
+
+        // Блок, в котором лежит строка: последний с firstLine <= line
+        int blockOf(long line) {
+            int found = Arrays.binarySearch(firstLines, line);
+            return found >= 0 ? found : -found - 2;
+        }
+    }
+
+    /**
+     * Запись исходника одной загрузки; append вызывается по порядку кусков одним потоком.
+     */
+    public class Writer implements AutoCloseable {
+        private final String logFileId;
+        private final FileChannel data;
+        private final FileChannel index;
+        private final Deflater deflater;
+        private final ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private byte[] input = new byte[0];
+        private byte[] output = new byte[0];
+        private long compressedPosition;
+        private long uncompressedBytes;
+        private long nextLine = 1;
+        private int blocks;
+
+        private Writer(String logFileId, FileChannel data, FileChannel index) {
+            this.logFileId = logFileId;
+            this.data = data;
+            this.index = index;
+            this.deflater = data != null ? new Deflater(compressionLevel, true) : null;
+        }
+
+        // Кусок режется на блоки по границам строк; firstLineNumber - номер первой строки куска в файле
+        public void append(LogChunk chunk, long firstLineNumber) throws IOException {
+            if (data == null) {
+                return;
+            }
+            if (chunk.startOffset() != uncompressedBytes || firstLineNumber != nextLine) {
+                throw new IllegalStateException("Raw store of " + logFileId + " expects offset " + uncompressedBytes
+                        + ", line " + nextLine + " but got " + chunk.startOffset() + ", line " + firstLineNumber);
+            }
+            ByteBuffer source = chunk.data();
+            int length = chunk.length();
+            int start = 0;
+            while (start < length) {
+                int end = Math.min(length, start + blockSize);
+                while (end < length && source.get(end - 1) != '\n') {
+                    end++;
+                }
+                writeBlock(source, start, end - start);
+                start = end;
+            }
+        }
+
+        private void writeBlock(ByteBuffer source, int from, int length) throws IOException {
+            if (input.length < length) {
+                input = new byte[length];
+            }
+            // Абсолютное чтение: кусок в это время параллельно читают потоки разбора
+            source.get(from, input, 0, length);
+            int lines = 0;
+            for (int i = 0; i < length; i++) {
+                if (input[i] == '\n') {
+                    lines++;
+                }
+            }
+            if (input[length - 1] != '\n') {
+                lines++; // последняя строка файла без перевода строки
+            }
+
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            int compressedLength = 0;
+            if (output.length < length + 64) {
+                output = new byte[length + length / 8 + 64];
+            }
+            while (!deflater.finished()) {
+                if (compressedLength == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+            }
+            writeFully(data, ByteBuffer.wrap(output, 0, compressedLength));
+            writeIndexRecord(uncompressedBytes, nextLine, compressedPosition, compressedLength, length);
+
+            compressedPosition += compressedLength;
+            uncompressedBytes += length;
+            nextLine += lines;
+            blocks++;
+        }
+
+        private void writeIndexRecord(long offset, long firstLine, long compressedOffset, int compressedLength,
+                                      int length) throws IOException {
+            record.clear();
+            record.putLong(offset).putLong(firstLine).putLong(compressedOffset).putInt(compressedLength).putInt(length);
+            record.flip();
+            writeFully(index, record);
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (data == null) {
+                return;
+            }
+            try {
+                // Хвостовая запись: смещение и номер строки за концом файла
+                writeIndexRecord(uncompressedBytes, nextLine, compressedPosition, 0, 0);
+            } finally {
+                deflater.end();
+                data.close();
+                index.close();
+            }
+            invalidate(logFileId);
+            logger.info("{}: raw file stored in {} blocks, {} -> {} bytes", logFileId, blocks, uncompressedBytes,
+                    compressedPosition);
+        }
+    }
+}
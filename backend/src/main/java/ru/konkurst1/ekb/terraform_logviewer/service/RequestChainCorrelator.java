@@ -0,0 +1,321 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковая корреляция цепочек tf_req_id при загрузке кусками.
+ * В цепочке различаются запись-запрос и запись-ответ RPC: длительность берётся из tf_req_duration_ms, который
+ * сообщил провайдер, а без него - по времени между запросом и ответом (или по границам цепочки);
+ * счётчики диагностик ответа (diagnostic_error_count/diagnostic_warning_count) переходят на всю цепочку.
+ * После ответа цепочка ждёт хвостовые записи ("Response contains error
+ * diagnostic", "Served request") ещё responseGrace и закрывается; без ответа - после простоя idleTimeout.
+ * Время считается по меткам лога, поэтому итог не зависит от того, где прошли границы кусков.
+ * Кроме того цепочка закрывается, когда в ней набралось maxChainEntries записей или когда открытых цепочек
+ * больше maxOpenChains (тогда закрывается самая давно не обновлявшаяся).
+ * Записям текущего батча итог проставляется сразу, для уже отданных на индексацию возвращаются {@link ChainUpdate}.
+ * Запись, пришедшая после закрытия, цепочку не открывает: длительность, статус и {@link ChainStats} остаются
+ * прежними, но одиночная цепочка становится цепочкой, и её первой записи уходит {@link ChainUpdate}.
+ * От отданных записей хранятся только id, поэтому память пропорциональна числу одновременно открытых RPC,
+ * а не размеру файла. Итоги закрытых цепочек копятся в {@link ChainStats} для сводки файла.
+ * Экземпляр на одну загрузку, не потокобезопасен.
+ */
+public final class RequestChainCorrelator {
+
+    private final Duration idleTimeout;
+    private final Duration responseGrace;
+    private final int maxOpenChains;
+    private final int maxChainEntries;
+
+    // Порядок доступа: в голове цепочки, которые дольше всех не получали записей
+    private final LinkedHashMap<String, OpenChain> openChains = new LinkedHashMap<>(16, 0.75f, true);
+    // Недавно закрытые цепочки: записи, пришедшие после закрытия, сразу получают итог
+    private final Map<String, ClosedChain> closedChains;
+    private final List<ChainUpdate> updates = new ArrayList<>();
+    private Instant latestTimestamp;
+    private long chainCount;
+    private long failedChainCount;
+    private long warningChainCount;
+    private long timedChainCount;
+    private long totalDurationMs;
+    private long maxDurationMs;
+
+    public RequestChainCorrelator(Duration idleTimeout, Duration responseGrace, int maxOpenChains, int maxChainEntries) {
+        this.idleTimeout = idleTimeout;
+        this.responseGrace = responseGrace;
+        this.maxOpenChains = Math.max(1, maxOpenChains);
+        this.maxChainEntries = Math.max(1, maxChainEntries);
+        this.closedChains = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ClosedChain> eldest) {
+                return size() > RequestChainCorrelator.this.maxOpenChains;
+            }
+        };
+    }
+
+    // Очередной батч потока; записи открытых цепочек после вызова считаются отданными на индексацию
+    public List<ChainUpdate> accept(List<LogEntry> batch) {
+        return process(batch, false);
+    }
+
+    // Последний батч: все цепочки закрываются, итог проставляется прямо в записи
+    public List<ChainUpdate> acceptLast(List<LogEntry> batch) {
+        return process(batch, true);
+    }
+
+    // Конец потока: закрывает оставшиеся цепочки
+    public List<ChainUpdate> finish() {
+        return process(List.of(), true);
+    }
+
+    public int openChainCount() {
+        return openChains.size();
+    }
+
+    /**
+     * Итоги закрытых цепочек; timedChains - цепочки с известной длительностью, по ним считаются средняя и максимум.
+     */
+    public record ChainStats(long chains, long failedChains, long warningChains, long timedChains,
+                             long totalDurationMs, long maxDurationMs) {
+
+        public long avgDurationMs() {
+            return timedChains > 0 ? totalDurationMs / timedChains : 0;
+        }
+    }
+
+    public ChainStats chainStats() {
+        return new ChainStats(chainCount, failedChainCount, warningChainCount, timedChainCount,
+                totalDurationMs, maxDurationMs);
+    }
+
+    private List<ChainUpdate> process(List<LogEntry> batch, boolean last) {
+        for (LogEntry entry : batch) {
+            // Время лога идёт по всем записям, не только по записям цепочек
+            Instant timestamp = entry.getTimestamp();
+            if (timestamp != null && (latestTimestamp == null || timestamp.isAfter(latestTimestamp))) {
+                latestTimestamp = timestamp;
+            }
+            String tfReqId = entry.getTfReqId();
+            if (tfReqId == null || tfReqId.isEmpty()) {
+                continue;
+            }
+
+            OpenChain chain = openChains.get(tfReqId);
+            if (chain != null && timestamp != null && chain.isExpired(timestamp)) {
+                openChains.remove(tfReqId);
+                close(chain);
+                chain = null;
+            }
+
+            ClosedChain closed = chain == null ? closedChains.get(tfReqId) : null;
+            if (closed != null) {
+                lateEntry(tfReqId, closed).applyTo(entry);
+                continue;
+            }
+
+            if (chain == null) {
+                chain = new OpenChain(tfReqId);
+                openChains.put(tfReqId, chain);
+            }
+            chain.add(entry);
+            if (chain.size >= maxChainEntries) {
+                openChains.remove(tfReqId);
+                close(chain);
+            } else if (openChains.size() > maxOpenChains) {
+                Iterator<OpenChain> eldest = openChains.values().iterator();
+                OpenChain evicted = eldest.next();
+                eldest.remove();
+                close(evicted);
+            }
+        }
+
+        if (last) {
+            openChains.values().forEach(this::close);
+            openChains.clear();
+        } else {
+            evictExpired();
+            openChains.values().forEach(OpenChain::detachPending);
+        }
+
+        List<ChainUpdate> result = new ArrayList<>(updates);
+        updates.clear();
+        return result;
+    }
+
+    private void evictExpired() {
+        if (latestTimestamp == null) {
+            return;
+        }
+        Iterator<OpenChain> iterator = openChains.values().iterator();
+        while (iterator.hasNext()) {
+            OpenChain chain = iterator.next();
+            if (chain.isExpired(latestTimestamp)) {
+                iterator.remove();
+                close(chain);
+            }
+        }
+    }
+
+    // Запись пришла после закрытия: цепочка точно из нескольких записей, первая запись одиночной цепочки обновляется
+    private ChainResult lateEntry(String tfReqId, ClosedChain closed) {
+        if (closed.result().partOfRequestChain()) {
+            return closed.result();
+        }
+        ChainResult result = closed.result().asChain();
+        for (String documentId : closed.documentIds()) {
+            updates.add(result.toUpdate(documentId));
+        }
+        closedChains.put(tfReqId, new ClosedChain(result, List.of()));
+        return result;
+    }
+
+    private void close(OpenChain chain) {
+        ChainResult result = chain.result();
+        List<String> documentIds = new ArrayList<>(chain.indexedIds);
+        for (LogEntry entry : chain.pending) {
+            result.applyTo(entry);
+            if (entry.getId() != null) {
+                documentIds.add(entry.getId());
+            }
+        }
+        for (String documentId : chain.indexedIds) {
+            updates.add(result.toUpdate(documentId));
+        }
+        // id нужны только одиночной цепочке: её запись обновится, если придёт ещё одна
+        closedChains.put(chain.tfReqId, new ClosedChain(result, result.partOfRequestChain() ? List.of() : documentIds));
+
+        chainCount++;
+        if ("failed".equals(result.status())) {
+            failedChainCount++;
+        } else if ("warning".equals(result.status())) {
+            warningChainCount++;
+        }
+        if (result.durationMs() != null) {
+            timedChainCount++;
+            totalDurationMs += result.durationMs();
+            maxDurationMs = Math.max(maxDurationMs, result.durationMs());
+        }
+    }
+
+    private record ChainResult(Long durationMs, String status, boolean partOfRequestChain,
+                               Integer diagnosticErrorCount, Integer diagnosticWarningCount) {
+
+        void applyTo(LogEntry entry) {
+            entry.setRequestDurationMs(durationMs);
+            entry.setRequestStatus(status);
+            entry.setIsPartOfRequestChain(partOfRequestChain);
+            entry.setDiagnosticErrorCount(diagnosticErrorCount);
+            entry.setDiagnosticWarningCount(diagnosticWarningCount);
+        }
+
+        ChainUpdate toUpdate(String documentId) {
+            return new ChainUpdate(documentId, durationMs, status, partOfRequestChain,
+                    diagnosticErrorCount, diagnosticWarningCount);
+        }
+
+        ChainResult asChain() {
+            return new ChainResult(durationMs, status, true, diagnosticErrorCount, diagnosticWarningCount);
+        }
+    }
+
+    private record ClosedChain(ChainResult result, List<String> documentIds) {
+    }
+
+    // Границы по времени и уровни без сортировки; записи текущего батча держатся ссылками, прошлых - по id
+    private final class OpenChain {
+        private final String tfReqId;
+        private final List<LogEntry> pending = new ArrayList<>();
+        private final List<String> indexedIds = new ArrayList<>();
+        private int size;
+        private Instant start;
+        private Instant end;
+        private boolean missingTimestamp;
+        private boolean hasErrors;
+        private boolean hasWarnings;
+        private boolean responded;
+        private Instant requestAt;
+        private Instant responseAt;
+        private Long providerDurationMs;
+        private Integer diagnosticErrorCount;
+        private Integer diagnosticWarningCount;
+
+        OpenChain(String tfReqId) {
+            this.tfReqId = tfReqId;
+        }
+
+        void add(LogEntry entry) {
+            pending.add(entry);
+            size++;
+
+            Instant timestamp = entry.getTimestamp();
+            if (timestamp == null) {
+                missingTimestamp = true;
+            } else {
+                if (start == null || timestamp.isBefore(start)) {
+                    start = timestamp;
+                }
+                if (end == null || timestamp.isAfter(end)) {
+                    end = timestamp;
+                }
+            }
+
+            hasErrors |= "ERROR".equals(entry.getLevel());
+            hasWarnings |= "WARN".equals(entry.getLevel());
+
+            if ("request".equals(entry.getRequestType()) && requestAt == null) {
+                requestAt = timestamp;
+            } else if ("response".equals(entry.getRequestType())) {
+                // Поля ответа читаются до того, как итог цепочки перезапишет длительность записи
+                responded = true;
+                responseAt = timestamp;
+                if (entry.getRequestDurationMs() != null) {
+                    providerDurationMs = entry.getRequestDurationMs();
+                }
+                diagnosticErrorCount = entry.getDiagnosticErrorCount();
+                diagnosticWarningCount = entry.getDiagnosticWarningCount();
+            }
+        }
+
+        // Цепочка без записей дольше допустимого к моменту now (по времени лога)
+        boolean isExpired(Instant now) {
+            if (end == null) {
+                return false;
+            }
+            return end.plus(responded ? responseGrace : idleTimeout).isBefore(now);
+        }
+
+        void detachPending() {
+            for (LogEntry entry : pending) {
+                if (entry.getId() != null) {
+                    indexedIds.add(entry.getId());
+                }
+            }
+            pending.clear();
+        }
+
+        ChainResult result() {
+            boolean errors = hasErrors || (diagnosticErrorCount != null && diagnosticErrorCount > 0);
+            boolean warnings = hasWarnings || (diagnosticWarningCount != null && diagnosticWarningCount > 0);
+            String status = errors ? "failed" : warnings ? "warning" : "success";
+            return new ChainResult(durationMs(), status, size > 1, diagnosticErrorCount, diagnosticWarningCount);
+        }
+
+        // Провайдер меряет RPC сам; иначе запрос-ответ, иначе границы цепочки из нескольких записей с известным временем
+        private Long durationMs() {
+            if (providerDurationMs != null) {
+                return providerDurationMs;
+            }
+            if (requestAt != null && responseAt != null) {
+                return Duration.between(requestAt, responseAt).toMillis();
+            }
+            return size > 1 && !missingTimestamp ? Duration.between(start, end).toMillis() : null;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Service;
+import ru.konkurst1.ekb.terraform_logviewer.dto.CursorPage;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Постраничная выдача курсором вместо from+size: первая страница открывает point-in-time,
+ * следующие продолжают его через search_after по значениям сортировки крайней записи страницы,
+ * поэтому цена страницы не зависит от глубины и предел в 10 000 записей не действует.
+ * К сортировке добавляются lineNumber и _shard_doc, чтобы порядок был полным. Назад листается тем же
+ * search_after при развёрнутой сортировке (пустые значения тоже меняют сторону), страница затем переворачивается.
+ * Курсор непрозрачен для клиента: base64 от id PIT, значений сортировки и направления; фильтры клиент
+ * передаёт с курсором те же, что и на первой странице.
+ */
+@Service
+public class SearchCursorService {
+    private static final Logger logger = LoggerFactory.getLogger(SearchCursorService.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String SHARD_DOC = "_shard_doc";
+    static final int MAX_PAGE_SIZE = 1000;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    // PIT продлевается каждым запросом страницы
+    @Value("${app.search.pit-keep-alive:PT5M}")
+    private Duration pitKeepAlive = Duration.ofMinutes(5);
+
+    // Содержимое курсора: id PIT, search_after и направление
+    record Cursor(String pit, List<Object> after, boolean backward) {
+    }
+
+    public CursorPage page(Criteria criteria, Sort sort, int size, String cursor) {
+        Cursor position = cursor != null && !cursor.isEmpty() ? decode(cursor) : null;
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        boolean backward = position != null && position.backward();
+        String pit = position != null
+                ? position.pit()
+                : elasticsearchOperations.openPointInTime(
+                        elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class), pitKeepAlive);
+
+        // Одна лишняя запись показывает, есть ли что-то за страницей
+        CriteriaQuery query = new CriteriaQuery(criteria);
+        query.setPageable(PageRequest.of(0, pageSize + 1, cursorSort(sort, backward)));
+        query.setPointInTime(new Query.PointInTime(pit, pitKeepAlive));
+        if (position != null) {
+            query.setSearchAfter(position.after());
+        }
+        // Общее число считается только для первой страницы: в PIT оно не меняется
+        query.setTrackTotalHits(position == null);
+        SearchHits<LogEntry> searchHits = elasticsearchOperations.search(query, LogEntry.class);
+        // Elasticsearch может вернуть обновлённый id PIT, следующие курсоры берут его
+        String nextPit = searchHits.getPointInTimeId() != null ? searchHits.getPointInTimeId() : pit;
+
+        List<SearchHit<LogEntry>> hits = new ArrayList<>(searchHits.getSearchHits());
+        boolean more = hits.size() > pageSize;
+        if (more) {
+            hits = new ArrayList<>(hits.subList(0, pageSize));
+        }
+        if (backward) {
+            Collections.reverse(hits);
+        }
+
+        String nextCursor = null;
+        String prevCursor = null;
+        if (!hits.isEmpty()) {
+            // Назад пришли со страницы, которая идёт после этой; вперёд - с той, что была до неё
+            boolean hasNext = backward || more;
+            boolean hasPrev = backward ? more : position != null;
+            if (hasNext) {
+                nextCursor = encode(new Cursor(nextPit, hits.get(hits.size() - 1).getSortValues(), false));
+            }
+            if (hasPrev) {
+                prevCursor = encode(new Cursor(nextPit, hits.get(0).getSortValues(), true));
+            }
+        }
+        Long totalElements = position == null ? searchHits.getTotalHits() : null;
+        return new CursorPage(hits.stream().map(SearchHit::getContent).toList(), nextCursor, prevCursor, totalElements);
+    }
+
+    /**
+     * Обходит всю выборку батчами по batchSize в одном PIT (экспорт): в памяти только текущий батч.
+     * PIT закрывается в конце, в том числе если consumer бросил исключение (например, клиент оборвал загрузку).
+     */
+    public long scan(Criteria criteria, Sort sort, int batchSize, EntryConsumer consumer) throws IOException {
+        try (Scan scan = openScan(criteria, sort, batchSize)) {
+            return scan.forEach(consumer);
+        }
+    }
+
+    // Открывает PIT и читает первый батч сразу: ошибка Elasticsearch видна до того, как начат ответ
+    public Scan openScan(Criteria criteria, Sort sort, int batchSize) {
+        String pit = elasticsearchOperations.openPointInTime(
+                elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class), pitKeepAlive);
+        Scan scan = new Scan(criteria, cursorSort(sort, false), Math.max(1, batchSize), pit);
+        try {
+            scan.hits = scan.fetch(null);
+        } catch (RuntimeException e) {
+            scan.close();
+            throw e;
+        }
+        return scan;
+    }
+
+    /**
+     * Обход выборки, начатый {@link #openScan}; forEach вызывается один раз, close закрывает PIT.
+     */
+    public class Scan implements AutoCloseable {
+        private final Criteria criteria;
+        private final Sort order;
+        private final int pageSize;
+        private String pit;
+        private List<SearchHit<LogEntry>> hits = List.of();
+
+        private Scan(Criteria criteria, Sort order, int pageSize, String pit) {
+            this.criteria = criteria;
+            this.order = order;
+            this.pageSize = pageSize;
+            this.pit = pit;
+        }
+
+        public long forEach(EntryConsumer consumer) throws IOException {
+            long count = 0;
+            while (true) {
+                for (SearchHit<LogEntry> hit : hits) {
+                    consumer.accept(hit.getContent());
+                }
+                count += hits.size();
+                if (hits.size() < pageSize) {
+                    hits = List.of();
+                    return count;
+                }
+                hits = fetch(hits.get(hits.size() - 1).getSortValues());
+            }
+        }
+
+        private List<SearchHit<LogEntry>> fetch(List<Object> after) {
+            CriteriaQuery query = new CriteriaQuery(criteria);
+            query.setPageable(PageRequest.of(0, pageSize, order));
+            query.setPointInTime(new Query.PointInTime(pit, pitKeepAlive));
+            query.setSearchAfter(after);
+            query.setTrackTotalHits(false);
+            SearchHits<LogEntry> searchHits = elasticsearchOperations.search(query, LogEntry.class);
+            if (searchHits.getPointInTimeId() != null) {
+                pit = searchHits.getPointInTimeId();
+            }
+            return searchHits.getSearchHits();
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(pit);
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(LogEntry entry) throws IOException;
+    }
+
+    // Закрывает PIT курсора, не дожидаясь keep-alive
+    public boolean close(String cursor) {
+        return Boolean.TRUE.equals(elasticsearchOperations.closePointInTime(decode(cursor).pit()));
+    }
+
+    private void closeQuietly(String pit) {
+        try {
+            elasticsearchOperations.closePointInTime(pit);
+        } catch (RuntimeException e) {
+            // PIT всё равно истечёт через keep-alive
+            logger.warn("Failed to close point in time: {}", e.getMessage());
+        }
+    }
+
+    static Sort cursorSort(Sort sort, boolean backward) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort.and(Sort.by("lineNumber").ascending())) {
+            orders.add(backward
+                    ? order.with(order.isAscending() ? Sort.Direction.DESC : Sort.Direction.ASC).nullsFirst()
+                    : order.nullsLast());
+        }
+        orders.add(backward ? Sort.Order.desc(SHARD_DOC) : Sort.Order.asc(SHARD_DOC));
+        return Sort.by(orders);
+    }
+
+    static String encode(Cursor cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(cursor));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode cursor", e);
+        }
+    }
+
+    static Cursor decode(String cursor) {
+        try {
+            Cursor decoded = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII)),
+                    Cursor.class);
+            if (decoded.pit() == null || decoded.after() == null || decoded.after().isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return decoded;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -1,50 +1,173 @@
 package ru.konkurst1.ekb.terraform_logviewer.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Секции (plan/apply/other) по маркерам в сообщении.
+ * Правила читаются из JSON ({@link SectionRule}, порядок - приоритет) и компилируются в один {@link KeywordMatcher},
+ * поэтому сообщение просматривается один раз независимо от числа правил.
+ * Правила перечитываются без перезапуска через {@link #reloadRules()}; новый набор подменяет старый целиком.
+ */
 @Service
 public class SectionDetectionService {
-    
+    private static final Logger logger = LoggerFactory.getLogger(SectionDetectionService.class);
+
+    public static final String INITIAL_SECTION = "other";
+
+    private static final String DEFAULT_RULES_RESOURCE = "/section-rules.json";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Пусто - правила по умолчанию из classpath
+    @Value("${app.sections.rules-file:}")
+    private String rulesFile = "";
+
+    // Потоки разбора читают ссылку один раз на батч, чтобы батч размечался одним набором правил
+    private volatile CompiledRules compiledRules = compile(readDefaultRules());
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!rulesFile.isBlank()) {
+            reloadRules();
+        }
+    }
+
+    public List<SectionRule> getRules() {
+        return compiledRules.rules();
+    }
+
+    // Снимок текущего набора правил: параллельный разбор берёт его один раз на кусок и передаёт во все части
+    CompiledRules currentRules() {
+        return compiledRules;
+    }
+
+    // Перечитывает файл правил; при ошибке остаётся прежний набор
+    public synchronized List<SectionRule> reloadRules() throws IOException {
+        if (rulesFile.isBlank()) {
+            return updateRules(readDefaultRules());
+        }
+        try (InputStream in = Files.newInputStream(Path.of(rulesFile))) {
+            return updateRules(readRules(in));
+        }
+    }
+
+    public List<SectionRule> updateRules(List<SectionRule> rules) {
+        CompiledRules compiled = compile(rules);
+        compiledRules = compiled;
+        logger.info("Loaded {} section rules ({} markers)", compiled.rules().size(), compiled.matcher().size());
+        return compiled.rules();
+    }
+
     public List<LogEntry> detectSections(List<LogEntry> entries) {
-        String currentSection = "other";
-        List<LogEntry> result = new ArrayList<>();
-        
+        detectSectionsFrom(entries, INITIAL_SECTION);
+        return new ArrayList<>(entries);
+    }
+
+    // Проставляет секции батчу, продолжая с секции, на которой закончился предыдущий батч.
+    // Возвращает секцию последней записи для передачи в следующий батч.
+    public String detectSectionsFrom(List<LogEntry> entries, String initialSection) {
+        CompiledRules rules = compiledRules;
+        String currentSection = initialSection;
+
         for (LogEntry entry : entries) {
-            String detectedSection = detectSection(entry.getMessage(), currentSection);
+            String detectedSection = rules.detect(entry.getMessage(), currentSection);
             entry.setSection(detectedSection);
             currentSection = detectedSection;
-            result.add(entry);
         }
-        
-        return result;
+
+        return currentSection;
+    }
+
+    // Фаза 1 параллельного разбора: в section записывается только явный переход (или null).
+    // Возвращает последний переход в куске, null - кусок не меняет секцию.
+    String findTransitions(CompiledRules rules, List<LogEntry> entries) {
+        String lastTransition = null;
+
+        for (LogEntry entry : entries) {
+            String transition = rules.detect(entry.getMessage(), null);
+            entry.setSection(transition);
+            if (transition != null) {
+                lastTransition = transition;
+            }
+        }
+
+        return lastTransition;
+    }
+
+    // Фаза 3: заполняет секции куска, начиная с состояния, пришедшего из предыдущих кусков.
+    // Правила здесь не нужны - протаскиваются только переходы, найденные в фазе 1
+    public void resolveSections(List<LogEntry> entries, String carriedInSection) {
+        String currentSection = carriedInSection;
+
+        for (LogEntry entry : entries) {
+            if (entry.getSection() == null) {
+                entry.setSection(currentSection);
+            } else {
+                currentSection = entry.getSection();
+            }
+        }
     }
     
-    private String detectSection(String message, String currentSection) {
-        if (message == null) return currentSection;
-        
-        // Эвристики для определения секций
-        if (message.contains("backend/local: starting Plan operation") ||
-            message.contains("Terraform will perform the following actions") ||
-            message.toLowerCase().contains("terraform plan")) {
-            return "plan";
-        }
-        
-        if (message.contains("backend/local: starting Apply operation") ||
-            message.contains("Applying...") ||
-            message.toLowerCase().contains("terraform apply")) {
-            return "apply";
-        }
-        
-        if (message.contains("Apply complete!") ||
-            message.contains("Plan:") ||
-            message.contains("complete!")) {
-            return "other";
-        }
-        
-        return currentSection;
+    private static CompiledRules compile(List<SectionRule> rules) {
+        if (rules == null) {
+            throw new IllegalArgumentException("Section rules are missing");
+        }
+        List<KeywordMatcher.Keyword> keywords = new ArrayList<>();
+        List<String> sections = new ArrayList<>();
+        for (SectionRule rule : rules) {
+            if (rule == null || rule.section() == null || rule.section().isBlank()) {
+                throw new IllegalArgumentException("Section rule without section: " + rule);
+            }
+            if (rule.markers() == null || rule.markers().isEmpty()) {
+                throw new IllegalArgumentException("Section rule without markers: " + rule.section());
+            }
+            // Слова идут в порядке правил, поэтому младший бит маски - правило с наибольшим приоритетом
+            for (String marker : rule.markers()) {
+                if (marker == null) {
+                    throw new IllegalArgumentException("Empty marker in section rule: " + rule.section());
+                }
+                keywords.add(rule.ignoreCase() ? KeywordMatcher.Keyword.ignoringCase(marker) : KeywordMatcher.Keyword.exact(marker));
+                sections.add(rule.section());
+            }
+        }
+        return new CompiledRules(List.copyOf(rules), KeywordMatcher.of(keywords), sections.toArray(String[]::new));
+    }
+
+    private static List<SectionRule> readDefaultRules() {
+        try (InputStream in = SectionDetectionService.class.getResourceAsStream(DEFAULT_RULES_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing classpath resource " + DEFAULT_RULES_RESOURCE);
+            }
+            return readRules(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + DEFAULT_RULES_RESOURCE, e);
+        }
+    }
+
+    private static List<SectionRule> readRules(InputStream in) throws IOException {
+        return MAPPER.readValue(in, new TypeReference<List<SectionRule>>() {
+        });
+    }
+
+    record CompiledRules(List<SectionRule> rules, KeywordMatcher matcher, String[] sections) {
+
+        String detect(String message, String currentSection) {
+            long matched = matcher.match(message);
+            return matched == 0 ? currentSection : sections[Long.numberOfTrailingZeros(matched)];
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.util.List;
+
+/**
+ * Правило секции: если сообщение содержит любой из markers, запись начинает секцию section.
+ * Порядок правил в конфигурации - приоритет, при нескольких совпадениях выигрывает первое правило.
+ * Маркеры - ASCII-подстроки, с ignoreCase регистр латинских букв не учитывается.
+ */
+public record SectionRule(String section, List<String> markers, boolean ignoreCase) {
+}
@@ -0,0 +1,138 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Словарь строк для полей с небольшим числом значений (уровень, модуль, @caller, провайдер, ...), один на загрузку.
+ * Поиск идёт прямо по символам парсера: при попадании новая String не создаётся, и все записи батчей
+ * в памяти ссылаются на один экземпляр значения.
+ * Таблица с открытой адресацией фиксированного размера, вставка через CAS, поэтому потоки разбора
+ * работают без блокировок. Значения длиннее maxLength и сверх maxEntries не интернируются,
+ * так что случайно попавшее сюда поле с большим числом значений не раздувает словарь.
+ */
+public final class StringDictionary {
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final int maxEntries;
+    private final int maxLength;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    public StringDictionary(int maxEntries, int maxLength) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxLength = maxLength;
+        // Заполнение не больше половины (плюс гонка вставок на число потоков), пробы остаются короткими
+        int capacity = Integer.highestOneBit(Math.max(2, this.maxEntries) * 2 - 1) << 1;
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public record Stats(long hits, long misses, long bypassed, int size) {
+
+        public long lookups() {
+            return hits + misses + bypassed;
+        }
+
+        public double hitRate() {
+            long lookups = lookups();
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    public String intern(char[] chars, int offset, int length) {
+        if (length > maxLength) {
+            bypassed.increment();
+            return new String(chars, offset, length);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[offset + i];
+        }
+
+        int index = spread(hash) & mask;
+        while (true) {
+            String existing = table.get(index);
+            if (existing == null) {
+                if (size.get() >= maxEntries) {
+                    bypassed.increment();
+                    return new String(chars, offset, length);
+                }
+                String value = new String(chars, offset, length);
+                if (table.compareAndSet(index, null, value)) {
+                    size.incrementAndGet();
+                    misses.increment();
+                    return value;
+                }
+                // Слот занял другой поток, возможно тем же значением
+                existing = table.get(index);
+            }
+            if (sameChars(existing, chars, offset, length)) {
+                hits.increment();
+                return existing;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length() > maxLength) {
+            bypassed.increment();
+            return value;
+        }
+
+        int index = spread(value.hashCode()) & mask;
+        while (true) {
+            String existing = table.get(index);
+            if (existing == null) {
+                if (size.get() >= maxEntries) {
+                    bypassed.increment();
+                    return value;
+                }
+                if (table.compareAndSet(index, null, value)) {
+                    size.incrementAndGet();
+                    misses.increment();
+                    return value;
+                }
+                existing = table.get(index);
+            }
+            if (existing.equals(value)) {
+                hits.increment();
+                return existing;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), bypassed.sum(), size.get());
+    }
+
+    // Счётчики с последнего вызова; вызывается между кусками, когда потоки разбора уже закончили
+    public Stats drainStats() {
+        return new Stats(hits.sumThenReset(), misses.sumThenReset(), bypassed.sumThenReset(), size.get());
+    }
+
+    private static boolean sameChars(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
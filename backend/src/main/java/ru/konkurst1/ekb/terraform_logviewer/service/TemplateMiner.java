@@ -0,0 +1,305 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Онлайн-выделение шаблонов сообщений по алгоритму Drain.
+ * Дерево префиксов фиксированной глубины: первый уровень - число токенов, следующие depth - 2 уровня -
+ * первые токены сообщения (токен с цифрами идёт в ветку wildcard). В листе - кластеры-шаблоны; сообщение
+ * попадает в самый похожий кластер с похожестью не ниже similarityThreshold, иначе открывает новый.
+ * При слиянии различающиеся позиции шаблона становятся {@value #WILDCARD}.
+ * Id кластера - хэш шаблона на момент создания и дальше не меняется, даже когда шаблон обобщается.
+ * Сам по себе такой id зависит от того, какое сообщение пришло первым, поэтому сохранённые кластеры
+ * возвращаются в майнер через {@link #restore}: после перезапуска и в другом файле те же сообщения
+ * попадают в уже известные кластеры с прежними id независимо от порядка.
+ * Память ограничена: не больше maxChildren детей у узла, maxClusters кластеров (давно не встречавшиеся
+ * вытесняются), maxTokens токенов в шаблоне и maxSamples примеров значений на параметр.
+ * Один экземпляр на приложение, методы синхронизированы: батч размечается под одной блокировкой.
+ */
+public final class TemplateMiner {
+
+    // Параметр в шаблоне всегда этот экземпляр, поэтому внутри шаблона он сравнивается по ссылке
+    public static final String WILDCARD = "<*>";
+
+    private final int depth;
+    private final double similarityThreshold;
+    private final int maxChildren;
+    private final int maxClusters;
+    private final int maxTokens;
+    private final int maxSamples;
+
+    private final Map<Integer, Node> roots = new HashMap<>();
+    // Порядок доступа: в голове кластеры, которые дольше всех не встречались
+    private final LinkedHashMap<String, Cluster> clusters = new LinkedHashMap<>(256, 0.75f, true);
+    private final Set<Cluster> changed = new LinkedHashSet<>();
+
+    public TemplateMiner(int depth, double similarityThreshold, int maxChildren, int maxClusters, int maxTokens,
+                         int maxSamples) {
+        this.depth = Math.max(3, depth);
+        this.similarityThreshold = similarityThreshold;
+        this.maxChildren = Math.max(1, maxChildren);
+        this.maxClusters = Math.max(1, maxClusters);
+        this.maxTokens = Math.max(2, maxTokens);
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Снимок шаблона для бокового индекса; parameterSamples - примеры значений по порядку параметров шаблона.
+     */
+    public record Template(String id, String text, int tokenCount, List<List<String>> parameterSamples) {
+    }
+
+    public synchronized void assignTemplates(List<LogEntry> entries) {
+        for (LogEntry entry : entries) {
+            entry.setTemplateId(match(entry.getMessage()));
+        }
+    }
+
+    public synchronized String match(String message) {
+        String[] tokens = tokenize(message);
+        Node leaf = leaf(tokens);
+        Cluster cluster = bestCluster(leaf.clusters, tokens);
+        if (cluster == null) {
+            cluster = createCluster(leaf, tokens);
+        } else {
+            clusters.get(cluster.id); // отметка доступа для вытеснения
+            cluster.merge(tokens);
+        }
+        cluster.sample(tokens);
+        return cluster.id;
+    }
+
+    // Шаблоны, созданные или изменённые с прошлого вызова
+    public synchronized List<Template> drainChanged() {
+        List<Template> result = new ArrayList<>(changed.size());
+        for (Cluster cluster : changed) {
+            result.add(cluster.snapshot());
+        }
+        changed.clear();
+        return result;
+    }
+
+    // Возвращает сохранённый кластер с прежним id; такой кластер не считается изменённым
+    public synchronized void restore(Template template) {
+        if (clusters.containsKey(template.id())) {
+            return;
+        }
+        String[] tokens = template.tokenCount() == 0 ? new String[0] : template.text().split(" ", -1);
+        if (tokens.length != template.tokenCount()) {
+            return;
+        }
+        List<Integer> parameters = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].equals(WILDCARD)) {
+                tokens[i] = WILDCARD;
+                parameters.add(i);
+            }
+        }
+
+        Node leaf = leaf(tokens);
+        Cluster cluster = new Cluster(template.id(), tokens, leaf);
+        List<List<String>> samples = template.parameterSamples();
+        for (int p = 0; p < parameters.size() && p < samples.size(); p++) {
+            for (String value : samples.get(p)) {
+                cluster.addSample(parameters.get(p), value);
+            }
+        }
+        changed.remove(cluster);
+        add(cluster);
+    }
+
+    public synchronized Template get(String templateId) {
+        Cluster cluster = clusters.get(templateId);
+        return cluster != null ? cluster.snapshot() : null;
+    }
+
+    public synchronized int clusterCount() {
+        return clusters.size();
+    }
+
+    private String[] tokenize(String message) {
+        List<String> tokens = new ArrayList<>();
+        if (message != null) {
+            int length = message.length();
+            int i = 0;
+            while (i < length && tokens.size() < maxTokens) {
+                while (i < length && Character.isWhitespace(message.charAt(i))) {
+                    i++;
+                }
+                int start = i;
+                while (i < length && !Character.isWhitespace(message.charAt(i))) {
+                    i++;
+                }
+                if (i > start) {
+                    tokens.add(message.substring(start, i));
+                }
+            }
+            // Хвост длинного сообщения (планы, многострочные диагностики) сворачивается в один параметр
+            if (tokens.size() == maxTokens && !message.substring(i).isBlank()) {
+                tokens.set(maxTokens - 1, WILDCARD);
+            }
+        }
+        return tokens.toArray(String[]::new);
+    }
+
+    // Спуск по дереву с созданием узлов; при переполнении узла токен уходит в ветку wildcard
+    private Node leaf(String[] tokens) {
+        Node node = roots.computeIfAbsent(tokens.length, length -> new Node());
+        int levels = Math.min(depth - 2, tokens.length);
+        for (int i = 0; i < levels; i++) {
+            String key = hasDigit(tokens[i]) ? WILDCARD : tokens[i];
+            Node child = node.children.get(key);
+            if (child == null) {
+                key = node.children.size() < maxChildren ? key : WILDCARD;
+                child = node.children.computeIfAbsent(key, k -> new Node());
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private Cluster bestCluster(List<Cluster> candidates, String[] tokens) {
+        Cluster best = null;
+        double bestSimilarity = -1;
+        int bestParameters = -1;
+        for (Cluster cluster : candidates) {
+            int same = 0;
+            int parameters = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                String templateToken = cluster.tokens[i];
+                if (templateToken == WILDCARD) {
+                    parameters++;
+                } else if (templateToken.equals(tokens[i])) {
+                    same++;
+                }
+            }
+            double similarity = tokens.length == 0 ? 1 : (double) same / tokens.length;
+            if (similarity > bestSimilarity || (similarity == bestSimilarity && parameters > bestParameters)) {
+                best = cluster;
+                bestSimilarity = similarity;
+                bestParameters = parameters;
+            }
+        }
+        return best != null && bestSimilarity >= similarityThreshold ? best : null;
+    }
+
+    private Cluster createCluster(Node leaf, String[] tokens) {
+        String[] template = new String[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            template[i] = hasDigit(tokens[i]) || tokens[i].equals(WILDCARD) ? WILDCARD : tokens[i];
+        }
+
+        String id = templateId(template);
+        for (int suffix = 1; clusters.containsKey(id); suffix++) {
+            id = templateId(template) + "-" + suffix;
+        }
+
+        Cluster cluster = new Cluster(id, template, leaf);
+        add(cluster);
+        changed.add(cluster);
+        return cluster;
+    }
+
+    private void add(Cluster cluster) {
+        cluster.leaf.clusters.add(cluster);
+        clusters.put(cluster.id, cluster);
+        if (clusters.size() > maxClusters) {
+            Cluster evicted = clusters.values().iterator().next();
+            clusters.remove(evicted.id);
+            evicted.leaf.clusters.remove(evicted);
+            changed.remove(evicted);
+        }
+    }
+
+    // FNV-1a по тексту шаблона на момент создания кластера
+    private static String templateId(String[] template) {
+        long hash = 0xcbf29ce484222325L;
+        for (String token : template) {
+            for (int i = 0; i < token.length(); i++) {
+                hash = (hash ^ token.charAt(i)) * 0x100000001b3L;
+            }
+            hash = (hash ^ ' ') * 0x100000001b3L;
+        }
+        return String.format("%016x", hash);
+    }
+
+    private static boolean hasDigit(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<Cluster> clusters = new ArrayList<>(2);
+    }
+
+    private final class Cluster {
+        private final String id;
+        private final String[] tokens;
+        private final Node leaf;
+        // Примеры значений по позиции токена, только для позиций-параметров
+        private final Map<Integer, Set<String>> samples = new HashMap<>();
+
+        Cluster(String id, String[] tokens, Node leaf) {
+            this.id = id;
+            this.tokens = tokens;
+            this.leaf = leaf;
+        }
+
+        void merge(String[] message) {
+            boolean generalized = false;
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i] != WILDCARD && !tokens[i].equals(message[i])) {
+                    // Прежнее значение позиции - тоже пример параметра
+                    addSample(i, tokens[i]);
+                    tokens[i] = WILDCARD;
+                    generalized = true;
+                }
+            }
+            if (generalized) {
+                changed.add(this);
+            }
+        }
+
+        void sample(String[] message) {
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i] == WILDCARD && !message[i].equals(WILDCARD)) {
+                    addSample(i, message[i]);
+                }
+            }
+        }
+
+        private void addSample(int position, String value) {
+            if (maxSamples <= 0) {
+                return;
+            }
+            Set<String> values = samples.computeIfAbsent(position, key -> new LinkedHashSet<>());
+            if (values.size() < maxSamples && values.add(value)) {
+                changed.add(this);
+            }
+        }
+
+        Template snapshot() {
+            List<List<String>> parameterSamples = new ArrayList<>();
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i] == WILDCARD) {
+                    parameterSamples.add(List.copyOf(samples.getOrDefault(i, Set.of())));
+                }
+            }
+            return new Template(id, String.join(" ", tokens), tokens.length, parameterSamples);
+        }
+    }
+}
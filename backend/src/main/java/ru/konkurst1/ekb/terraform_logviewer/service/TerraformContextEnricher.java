@@ -1,142 +1,125 @@
 package ru.konkurst1.ekb.terraform_logviewer.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * Обогащение записей за один проход: тип операции и важность считаются по ключевым словам
+ * одним прогоном {@link KeywordMatcher} по сообщению, а цепочки tf_req_id (длительность и статус)
+ * сводит {@link RequestChainCorrelator}.
+ * Результаты пишутся в типизированные поля {@link LogEntry}, чтобы по ним можно было фильтровать,
+ * сортировать и агрегировать в Elasticsearch.
+ */
 @Service
 public class TerraformContextEnricher {
-    
+
+    // Порядок слов задаёт индексы в маске совпадений
+    private static final int CREATING = 0;
+    private static final int CREATE = 1;
+    private static final int UPDATING = 2;
+    private static final int UPDATE = 3;
+    private static final int DESTROYING = 4;
+    private static final int DESTROY = 5;
+    private static final int READING = 6;
+    private static final int READ = 7;
+    private static final int FAILED = 8;
+    private static final int ERROR = 9;
+
+    // Видим в пакете для KeywordMatcherBenchmark
+    static final KeywordMatcher MESSAGE_KEYWORDS = KeywordMatcher.of(List.of(
+            KeywordMatcher.Keyword.ignoringCase("creating"),
+            KeywordMatcher.Keyword.exact("Create"),
+            KeywordMatcher.Keyword.ignoringCase("updating"),
+            KeywordMatcher.Keyword.exact("Update"),
+            KeywordMatcher.Keyword.ignoringCase("destroying"),
+            KeywordMatcher.Keyword.exact("Destroy"),
+            KeywordMatcher.Keyword.ignoringCase("reading"),
+            KeywordMatcher.Keyword.exact("Read"),
+            KeywordMatcher.Keyword.ignoringCase("failed"),
+            KeywordMatcher.Keyword.ignoringCase("error")));
+
+    @Value("${app.ingest.chain-idle-timeout:PT10M}")
+    private Duration chainIdleTimeout = Duration.ofMinutes(10);
+
+    @Value("${app.ingest.chain-response-grace:PT1S}")
+    private Duration chainResponseGrace = Duration.ofSeconds(1);
+
+    @Value("${app.ingest.max-open-chains:10000}")
+    private int maxOpenChains = 10_000;
+
+    @Value("${app.ingest.max-chain-entries:10000}")
+    private int maxChainEntries = 10_000;
+
+    // Весь список целиком: цепочки закрываются в конце, итог проставляется прямо в записи
     public List<LogEntry> enrichWithTerraformContext(List<LogEntry> entries) {
-        // 1. Группировка запросов-ответов по tf_req_id
-        Map<String, List<LogEntry>> requests = groupByRequestId(entries);
-        
-        // 2. Вычисление длительности запросов
-        calculateRequestDurations(requests);
-        
-        // 3. Определение статуса операций
-        determineOperationStatus(requests);
-        
-        // 4. Обогащение дополнительными метаданными
-        return enrichWithMetadata(entries, requests);
-    }
-    
-    private Map<String, List<LogEntry>> groupByRequestId(List<LogEntry> entries) {
-        return entries.stream()
-            .filter(entry -> entry.getTfReqId() != null && !entry.getTfReqId().isEmpty())
-            .collect(Collectors.groupingBy(LogEntry::getTfReqId));
+        enrichEntries(entries);
+        newCorrelator().acceptLast(entries);
+        return entries;
     }
-    
-    private void calculateRequestDurations(Map<String, List<LogEntry>> requests) {
-        for (Map.Entry<String, List<LogEntry>> requestEntry : requests.entrySet()) {
-            List<LogEntry> requestChain = requestEntry.getValue();
-            
-            if (requestChain.size() > 1) {
-                // Сортируем по времени
-                requestChain.sort(Comparator.comparing(LogEntry::getTimestamp));
-                
-                Instant startTime = requestChain.get(0).getTimestamp();
-                Instant endTime = requestChain.get(requestChain.size() - 1).getTimestamp();
-                long durationMs = Duration.between(startTime, endTime).toMillis();
-                
-                // Добавляем длительность ко всем записям цепочки
-                requestChain.forEach(entry -> {
-                    // Можно сохранить в отдельное поле или в rawJson
-                    if (entry.getRawJson() instanceof Map) {
-                        ((Map<String, Object>) entry.getRawJson()).put("request_duration_ms", durationMs);
-                    }
-                });
-            }
-        }
+
+    // Очередной кусок потока: для записей прошлых кусков возвращаются частичные обновления
+    public List<ChainUpdate> enrichWithTerraformContext(List<LogEntry> entries, RequestChainCorrelator correlator) {
+        enrichEntries(entries);
+        return correlator.accept(entries);
     }
-    
-    private void determineOperationStatus(Map<String, List<LogEntry>> requests) {
-        for (Map.Entry<String, List<LogEntry>> requestEntry : requests.entrySet()) {
-            List<LogEntry> requestChain = requestEntry.getValue();
-            
-            // Определяем статус по наличию ошибок в цепочке
-            boolean hasErrors = requestChain.stream()
-                .anyMatch(entry -> "ERROR".equals(entry.getLevel()));
-                
-            boolean hasWarnings = requestChain.stream()
-                .anyMatch(entry -> "WARN".equals(entry.getLevel()));
-            
-            String status = hasErrors ? "failed" : hasWarnings ? "warning" : "success";
-            
-            // Добавляем статус ко всем записям цепочки
-            requestChain.forEach(entry -> {
-                if (entry.getRawJson() instanceof Map) {
-                    ((Map<String, Object>) entry.getRawJson()).put("request_status", status);
-                }
-            });
-        }
+
+    public RequestChainCorrelator newCorrelator() {
+        return new RequestChainCorrelator(chainIdleTimeout, chainResponseGrace, maxOpenChains, maxChainEntries);
     }
-    
-    private List<LogEntry> enrichWithMetadata(List<LogEntry> entries, Map<String, List<LogEntry>> requests) {
-        // Дополнительное обогащение
+
+    // Тип операции и важность записи
+    private void enrichEntries(List<LogEntry> entries) {
         for (LogEntry entry : entries) {
-            // Определяем тип операции на основе resource_type
+            long keywords = MESSAGE_KEYWORDS.match(entry.getMessage());
             if (entry.getTfResourceType() != null) {
-                String operationType = determineOperationType(entry.getTfResourceType(), entry.getMessage());
-                if (entry.getRawJson() instanceof Map) {
-                    ((Map<String, Object>) entry.getRawJson()).put("operation_type", operationType);
-                }
-            }
-            
-            // Вычисляем "важность" записи на основе уровня и контекста
-            int severity = calculateSeverity(entry);
-            if (entry.getRawJson() instanceof Map) {
-                ((Map<String, Object>) entry.getRawJson()).put("severity_score", severity);
+                entry.setOperationType(determineOperationType(keywords));
             }
+            entry.setSeverityScore(calculateSeverity(entry, keywords));
+            entry.setIsPartOfRequestChain(false);
         }
-        
-        return entries;
     }
-    
-    private String determineOperationType(String resourceType, String message) {
-        if (message != null) {
-            if (message.toLowerCase().contains("creating") || message.contains("Create")) {
-                return "create";
-            } else if (message.toLowerCase().contains("updating") || message.contains("Update")) {
-                return "update";
-            } else if (message.toLowerCase().contains("destroying") || message.contains("Destroy")) {
-                return "delete";
-            } else if (message.toLowerCase().contains("reading") || message.contains("Read")) {
-                return "read";
-            }
+
+    private static String determineOperationType(long keywords) {
+        if (KeywordMatcher.contains(keywords, CREATING) || KeywordMatcher.contains(keywords, CREATE)) {
+            return "create";
+        } else if (KeywordMatcher.contains(keywords, UPDATING) || KeywordMatcher.contains(keywords, UPDATE)) {
+            return "update";
+        } else if (KeywordMatcher.contains(keywords, DESTROYING) || KeywordMatcher.contains(keywords, DESTROY)) {
+            return "delete";
+        } else if (KeywordMatcher.contains(keywords, READING) || KeywordMatcher.contains(keywords, READ)) {
+            return "read";
         }
         return "unknown";
     }
-    
-    private int calculateSeverity(LogEntry entry) {
+
+    private static int calculateSeverity(LogEntry entry, long keywords) {
         int score = 0;
-        
+
         // Базовый score по уровню логирования
-        switch (entry.getLevel()) {
-            case "ERROR": score += 10; break;
-            case "WARN": score += 5; break;
-            case "INFO": score += 1; break;
-            case "DEBUG": score += 0; break;
+        String level = entry.getLevel();
+        if (level != null) {
+            switch (level) {
+                case "ERROR" -> score += 10;
+                case "WARN" -> score += 5;
+                case "INFO" -> score += 1;
+                default -> {
+                }
+            }
         }
-        
-        // Дополнительные факторы
+
+        // Compute ресурсы обычно более критичны
         if (entry.getTfResourceType() != null && entry.getTfResourceType().contains("compute")) {
-            score += 2; // Compute ресурсы обычно более критичны
+            score += 2;
         }
-        
-        if (entry.getMessage() != null) {
-            if (entry.getMessage().toLowerCase().contains("failed") || 
-                entry.getMessage().toLowerCase().contains("error")) {
-                score += 3;
-            }
+
+        if (KeywordMatcher.contains(keywords, FAILED) || KeywordMatcher.contains(keywords, ERROR)) {
+            score += 3;
         }
-        
+
         return score;
     }
-}
\ No newline at end of file
+}
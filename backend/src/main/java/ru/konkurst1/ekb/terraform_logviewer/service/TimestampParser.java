@@ -0,0 +1,151 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Разбор RFC 3339 меток времени вида 2025-09-09T15:47:33.319437+03:00 без промежуточных объектов:
+ * строка читается посимвольно (или побайтно прямо из буфера), дата переводится в эпоху арифметически.
+ * Поддерживаются любые смещения и Z, дробная часть до наносекунд.
+ */
+public final class TimestampParser {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    // Дней от 0000-03-01 до 1970-01-01 в пролептическом григорианском календаре
+    private static final long DAYS_0000_TO_1970 = 719_468;
+    private static final int[] NANO_SCALE = {
+            100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+    };
+
+    private TimestampParser() {
+    }
+
+    public static Instant parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    // Байты в ASCII/UTF-8, например значение поля прямо из буфера куска
+    public static Instant parse(byte[] bytes, int offset, int length) {
+        return parse((Object) bytes, offset, length);
+    }
+
+    // source - CharSequence или byte[]; доступ через charAt() без обёрток, чтобы не выделять память
+    private static Instant parse(Object source, int start, int length) {
+        int end = start + length;
+        // Минимум: yyyy-MM-ddTHH:mm:ssZ
+        if (length < 20) {
+            throw error(source, start, end, "too short");
+        }
+
+        int p = start;
+        int year = digits(source, p, 4);
+        int month = digits(source, p + 5, 2);
+        int day = digits(source, p + 8, 2);
+        int hour = digits(source, p + 11, 2);
+        int minute = digits(source, p + 14, 2);
+        int second = digits(source, p + 17, 2);
+        char separator = charAt(source, p + 10);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0
+                || charAt(source, p + 4) != '-' || charAt(source, p + 7) != '-'
+                || (separator != 'T' && separator != 't' && separator != ' ')
+                || charAt(source, p + 13) != ':' || charAt(source, p + 16) != ':') {
+            throw error(source, start, end, "expected yyyy-MM-ddTHH:mm:ss");
+        }
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 60) {
+            throw error(source, start, end, "field out of range");
+        }
+        p += 19;
+
+        int nano = 0;
+        if (p < end && charAt(source, p) == '.') {
+            p++;
+            int fractionStart = p;
+            while (p < end && isDigit(charAt(source, p))) {
+                if (p - fractionStart < NANO_SCALE.length) {
+                    nano += (charAt(source, p) - '0') * NANO_SCALE[p - fractionStart];
+                }
+                p++;
+            }
+            if (p == fractionStart) {
+                throw error(source, start, end, "empty fraction");
+            }
+        }
+
+        if (p >= end) {
+            throw error(source, start, end, "missing offset");
+        }
+        int offsetSeconds;
+        char sign = charAt(source, p);
+        if ((sign == 'Z' || sign == 'z') && p + 1 == end) {
+            offsetSeconds = 0;
+        } else if ((sign == '+' || sign == '-') && p + 6 == end && charAt(source, p + 3) == ':') {
+            int offsetHours = digits(source, p + 1, 2);
+            int offsetMinutes = digits(source, p + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetHours > 18 || offsetMinutes > 59) {
+                throw error(source, start, end, "invalid offset");
+            }
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+        } else {
+            throw error(source, start, end, "invalid offset");
+        }
+
+        // Секунда координации (:60) приводится к последней наносекунде минуты, как в ISO_INSTANT
+        if (second == 60) {
+            second = 59;
+            nano = 999_999_999;
+        }
+
+        long epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY
+                + hour * 3600L + minute * 60L + second - offsetSeconds;
+        return Instant.ofEpochSecond(epochSecond, nano);
+    }
+
+    // Алгоритм days_from_civil (H. Hinnant): год считается с марта, чтобы 29 февраля было последним днём
+    static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        int shiftedMonth = month > 2 ? month - 3 : month + 9;
+        long dayOfYear = (153L * shiftedMonth + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // Число из count цифр или -1, если встретилась не цифра
+    private static int digits(Object source, int position, int count) {
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            char c = charAt(source, i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static char charAt(Object source, int index) {
+        return source instanceof byte[] bytes ? (char) (bytes[index] & 0xFF) : ((CharSequence) source).charAt(index);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static DateTimeParseException error(Object source, int start, int end, String reason) {
+        CharSequence text = source instanceof byte[] bytes
+                ? new String(bytes, start, end - start, StandardCharsets.ISO_8859_1)
+                : ((CharSequence) source).subSequence(start, end);
+        return new DateTimeParseException("Invalid RFC 3339 timestamp (" + reason + "): " + text, text, 0);
+    }
+}
@@ -1,28 +1,38 @@
 package ru.konkurst1.ekb.terraform_logviewer.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.konkurst1.ekb.terraform_logviewer.dto.LogUploadResponse;
 import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepository;
+import ru.konkurst1.ekb.terraform_logviewer.service.IngestJobService;
 import ru.konkurst1.ekb.terraform_logviewer.service.LogParserService;
 import ru.konkurst1.ekb.terraform_logviewer.service.LogSearchService;
 import ru.konkurst1.ekb.terraform_logviewer.service.LogStorageService;
+import ru.konkurst1.ekb.terraform_logviewer.service.SearchCursorService;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -42,6 +52,12 @@ class LogControllerTest {
     @Mock
     private LogEntryRepository logEntryRepository;
 
+    @Mock
+    private IngestJobService ingestJobService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @InjectMocks
     private LogController logController;
 
@@ -169,6 +185,90 @@ class LogControllerTest {
         assertEquals(2, response.getBody().size());
     }
 
+    @Test
+    void uploadLogs_WhenSpoolingFails_ShouldReturnErrorBody() throws IOException {
+        // Arrange
+        MultipartFile file = mock(MultipartFile.class);
+        when(ingestJobService.submitUpload(file)).thenThrow(new IOException("No space left on device"));
+
+        // Act
+        ResponseEntity<?> response = logController.uploadLogs(file);
+
+        // Assert
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals(Map.of("error", "No space left on device"), response.getBody());
+    }
+
+    @Test
+    void exportNdjson_WithGzip_ShouldStreamAllEntriesAsLines() throws IOException {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        filters.setLogFileId("test-file");
+        SearchCursorService.Scan scan = mock(SearchCursorService.Scan.class);
+        when(logSearchService.openExport(filters)).thenReturn(scan);
+        when(scan.forEach(any())).thenAnswer(invocation -> {
+            SearchCursorService.EntryConsumer consumer = invocation.getArgument(0);
+            for (int i = 0; i < 3; i++) {
+                consumer.accept(createTestLogEntry());
+            }
+            return 3L;
+        });
+
+        // Act
+        ResponseEntity<?> response = logController.exportNdjson(filters, true);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(body);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getHeaders().getContentDisposition().getFilename().endsWith(".ndjson.gz"));
+        String ndjson = new String(new GZIPInputStream(new ByteArrayInputStream(body.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        List<String> lines = ndjson.lines().toList();
+        assertEquals(3, lines.size());
+        assertEquals("Test message", objectMapper.readTree(lines.get(0)).get("message").asText());
+        verify(scan).close();
+    }
+
+    @Test
+    void exportFilteredLogs_WhenFirstSearchFails_ShouldReturnErrorBody() {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        when(logSearchService.openExport(filters)).thenThrow(new IllegalStateException("all shards failed"));
+
+        // Act
+        ResponseEntity<?> response = logController.exportFilteredLogs(filters);
+
+        // Assert
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals(Map.of("error", "all shards failed"), response.getBody());
+    }
+
+    @Test
+    void exportFilteredLogs_WhenSearchFailsMidStream_ShouldEndDocumentWithError() throws IOException {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        SearchCursorService.Scan scan = mock(SearchCursorService.Scan.class);
+        when(logSearchService.openExport(filters)).thenReturn(scan);
+        when(scan.forEach(any())).thenAnswer(invocation -> {
+            SearchCursorService.EntryConsumer consumer = invocation.getArgument(0);
+            consumer.accept(createTestLogEntry());
+            throw new IllegalStateException("search_context_missing_exception");
+        });
+
+        // Act
+        ResponseEntity<?> response = logController.exportFilteredLogs(filters);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(body);
+
+        // Assert
+        JsonNode document = objectMapper.readTree(body.toByteArray());
+        assertEquals(1, document.get("entries").size());
+        assertEquals("search_context_missing_exception", document.get("error").asText());
+        assertFalse(document.has("totalEntries"));
+        verify(scan).close();
+    }
+
     private LogEntry createTestLogEntry() {
         LogEntry entry = new LogEntry();
         entry.setId("1L");
@@ -0,0 +1,122 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobStoreTest {
+
+    private final BlobStore blobStore = new BlobStore();
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        directory = Files.createTempDirectory("blob-store");
+        ReflectionTestUtils.setField(blobStore, "directory", directory.toString());
+        ReflectionTestUtils.setField(blobStore, "threshold", 100);
+        ReflectionTestUtils.setField(blobStore, "previewLength", 10);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void offload_ShouldReplaceLongValuesWithPreviewAndKeepFullValues() throws Exception {
+        // Arrange
+        String message = "m".repeat(150);
+        String body = "{\"id\":\"" + "b".repeat(500) + "\"}";
+        Map<String, Object> rawJson = new LinkedHashMap<>();
+        rawJson.put("@level", "trace");
+        rawJson.put("@message", message);
+        rawJson.put("tf_http_res_body", body);
+        LogEntry large = createEntry("file-1:1", message, rawJson);
+        LogEntry small = createEntry("file-1:2", "short", Map.of("@message", "short"));
+
+        // Act
+        try (BlobStore.Writer writer = blobStore.openWriter("file-1")) {
+            writer.offload(List.of(large, small));
+        }
+        Map<String, Object> full = blobStore.read("file-1", large.getBlobRef()).orElseThrow();
+
+        // Assert
+        assertEquals("mmmmmmmmmm…", large.getMessage());
+        Map<?, ?> indexed = (Map<?, ?>) large.getRawJson();
+        assertEquals("mmmmmmmmmm…", indexed.get("@message"));
+        assertEquals("{\"id\":\"bbb…", indexed.get("tf_http_res_body"));
+        assertEquals("trace", indexed.get("@level"));
+        assertEquals(List.of("@message", "tf_http_res_body"), large.getTruncatedFields());
+        assertEquals(Map.of("@message", message, "tf_http_res_body", body), full);
+        assertNull(small.getBlobRef());
+        assertEquals("short", small.getMessage());
+        // Сжатые значения меньше исходных
+        assertTrue(Files.size(directory.resolve("file-1.blobs")) < message.length() + body.length());
+    }
+
+    @Test
+    void offload_WithoutLongValues_ShouldNotCreateFile() throws Exception {
+        // Arrange
+        LogEntry small = createEntry("file-1:1", "short", Map.of("@message", "short"));
+
+        // Act
+        try (BlobStore.Writer writer = blobStore.openWriter("file-1")) {
+            writer.offload(List.of(small));
+        }
+
+        // Assert
+        assertNull(small.getBlobRef());
+        assertFalse(Files.exists(directory.resolve("file-1.blobs")));
+    }
+
+    @Test
+    void openWriter_ForExistingFile_ShouldAppendAfterPreviousBlobs() throws Exception {
+        // Arrange
+        LogEntry first = createEntry("file-1:1", "x".repeat(200), Map.of("@message", "x".repeat(200)));
+        LogEntry second = createEntry("file-1:2", "y".repeat(300), Map.of("@message", "y".repeat(300)));
+
+        // Act
+        try (BlobStore.Writer writer = blobStore.openWriter("file-1")) {
+            writer.offload(List.of(first));
+        }
+        try (BlobStore.Writer writer = blobStore.openWriter("file-1")) {
+            writer.offload(List.of(second));
+        }
+
+        // Assert
+        assertEquals(Map.of("@message", "x".repeat(200)), blobStore.read("file-1", first.getBlobRef()).orElseThrow());
+        assertEquals(Map.of("@message", "y".repeat(300)), blobStore.read("file-1", second.getBlobRef()).orElseThrow());
+    }
+
+    @Test
+    void openWriter_WithPathInLogFileId_ShouldReject() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> blobStore.openWriter("../file-1"));
+        assertThrows(IllegalArgumentException.class, () -> blobStore.read("a/b", "0:10"));
+    }
+
+    private LogEntry createEntry(String id, String message, Map<String, Object> rawJson) {
+        LogEntry entry = new LogEntry();
+        entry.setId(id);
+        entry.setLogFileId("file-1");
+        entry.setMessage(message);
+        entry.setRawJson(new LinkedHashMap<>(rawJson));
+        return entry;
+    }
+}
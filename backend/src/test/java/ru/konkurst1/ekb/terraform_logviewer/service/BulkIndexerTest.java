@@ -0,0 +1,312 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkIndexerTest {
+
+    @Mock
+    private ElasticsearchClient elasticsearchClient;
+
+    @Mock
+    private ElasticsearchIndicesClient indicesClient;
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Mock
+    private ElasticsearchConverter elasticsearchConverter;
+
+    @Mock
+    private LogIndexService logIndexService;
+
+    @InjectMocks
+    private BulkIndexer bulkIndexer;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bulkIndexer, "maxDocs", 2);
+        ReflectionTestUtils.setField(bulkIndexer, "initialBackoff", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(bulkIndexer, "disableRefresh", false);
+
+        when(elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class)).thenReturn(IndexCoordinates.of("terraform_logs"));
+        lenient().when(elasticsearchClient.indices()).thenReturn(indicesClient);
+        when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(elasticsearchConverter);
+        when(elasticsearchConverter.mapObject(any())).thenAnswer(invocation -> {
+            LogEntry entry = invocation.getArgument(0);
+            return Document.from(Map.of("message", entry.getMessage()));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkIndexer.shutdown();
+    }
+
+    @Test
+    void session_ShouldFlushEveryMaxDocsAndOnClose() throws Exception {
+        // Arrange
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            return response(request.operations().size(), 201);
+        });
+        AtomicLong reported = new AtomicLong();
+
+        // Act
+        BulkIndexer.Session session = bulkIndexer.openSession(reported::addAndGet);
+        session.addAll(createEntries(5));
+        session.close();
+
+        // Assert
+        verify(elasticsearchClient, times(3)).bulk(any(BulkRequest.class));
+        assertEquals(5, session.stats().indexed());
+        assertEquals(0, session.stats().failed());
+        assertEquals(5, reported.get());
+    }
+
+    @Test
+    void session_WhenItemsRejectedWith429_ShouldRetryOnlyRejectedItems() throws Exception {
+        // Arrange
+        List<Integer> batchSizes = new ArrayList<>();
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            batchSizes.add(request.operations().size());
+            // Первый запрос: второй документ отклонён из-за переполненной очереди
+            return batchSizes.size() == 1
+                    ? BulkResponse.of(r -> r.errors(true).took(1).items(List.of(item(201), item(429))))
+                    : response(request.operations().size(), 201);
+        });
+
+        // Act
+        BulkIndexer.Session session = bulkIndexer.openSession(null);
+        session.addAll(createEntries(2));
+        session.close();
+
+        // Assert
+        assertEquals(List.of(2, 1), batchSizes);
+        assertEquals(2, session.stats().indexed());
+        assertEquals(1, session.stats().retries());
+    }
+
+    @Test
+    void session_WhenItemRejectedWithMappingError_ShouldCountItAsFailed() throws Exception {
+        // Arrange
+        when(elasticsearchClient.bulk(any(BulkRequest.class)))
+                .thenReturn(BulkResponse.of(r -> r.errors(true).took(1).items(List.of(item(201), item(400)))));
+
+        // Act
+        BulkIndexer.Session session = bulkIndexer.openSession(null);
+        session.addAll(createEntries(2));
+        session.close();
+
+        // Assert
+        verify(elasticsearchClient, times(1)).bulk(any(BulkRequest.class));
+        assertEquals(1, session.stats().indexed());
+        assertEquals(1, session.stats().failed());
+    }
+
+    @Test
+    void session_WhenBulkRequestFails_ShouldResendWithSameIds() throws Exception {
+        // Arrange: первый запрос обрывается, повтор перезаписывает те же документы
+        List<List<String>> sentIds = new ArrayList<>();
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            sentIds.add(request.operations().stream().map(operation -> operation.index().id()).toList());
+            if (sentIds.size() == 1) {
+                throw new IOException("Connection reset");
+            }
+            return response(request.operations().size(), 201);
+        });
+        List<LogEntry> entries = createEntries(2);
+        entries.get(0).setId("test-file:1");
+        entries.get(1).setId("test-file:2");
+
+        // Act
+        BulkIndexer.Session session = bulkIndexer.openSession(null);
+        session.addAll(entries);
+        session.close();
+
+        // Assert
+        assertEquals(List.of(List.of("test-file:1", "test-file:2"), List.of("test-file:1", "test-file:2")), sentIds);
+        assertEquals(2, session.stats().indexed());
+        assertEquals(1, session.stats().retries());
+    }
+
+    @Test
+    void close_AfterFatalError_ShouldCountBufferedDocumentsAsFailed() throws Exception {
+        // Arrange: первый запрос проваливается без повторов, третий документ остаётся в буфере
+        ReflectionTestUtils.setField(bulkIndexer, "maxRetries", 0);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenThrow(new IOException("Connection refused"));
+        BulkIndexer.Session session = bulkIndexer.openSession(null);
+        session.addAll(createEntries(3));
+        AtomicReference<?> fatalError = (AtomicReference<?>) ReflectionTestUtils.getField(session, "fatalError");
+        while (fatalError.get() == null) {
+            Thread.sleep(1);
+        }
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, session::close);
+        verify(elasticsearchClient, times(1)).bulk(any(BulkRequest.class));
+        assertEquals(3, session.stats().failed());
+        assertEquals(0, session.stats().indexed());
+    }
+
+    @Test
+    void session_WithChainUpdates_ShouldSendThemAfterPreviousRequests() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(bulkIndexer, "maxInFlight", 2);
+        AtomicBoolean firstCompleted = new AtomicBoolean();
+        List<Boolean> updatesSentAfterIndexing = new ArrayList<>();
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            if (request.operations().get(0).isUpdate()) {
+                updatesSentAfterIndexing.add(firstCompleted.get());
+            } else {
+                // Медленная индексация: обновление не должно её обогнать
+                Thread.sleep(50);
+                firstCompleted.set(true);
+            }
+            return response(request.operations().size(), 200);
+        });
+
+        // Act
+        BulkIndexer.Session session = bulkIndexer.openSession(null);
+        session.addAll(createEntries(2));
+        session.updateAll(List.of(
+                new ChainUpdate("test-file:1", 10L, "success", true, 0, 0),
+                new ChainUpdate("test-file:2", 10L, "success", true, 0, 0)));
+        session.close();
+
+        // Assert
+        assertEquals(List.of(true), updatesSentAfterIndexing);
+        assertEquals(2, session.stats().indexed());
+        assertEquals(2, session.stats().updated());
+    }
+
+    @Test
+    void session_WithUpdatesWhileIdleFlushWaitsForSlot_ShouldSendThemAfterFlushedEntries() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(bulkIndexer, "maxInFlight", 1);
+        ReflectionTestUtils.setField(bulkIndexer, "flushInterval", Duration.ofMillis(20));
+        List<String> sent = new CopyOnWriteArrayList<>();
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            sent.add(request.operations().get(0).isUpdate() ? "update" : "index");
+            return response(request.operations().size(), 200);
+        });
+        Semaphore permits = ReflectionTestUtils.invokeMethod(bulkIndexer, "inFlightPermits");
+        permits.acquire();
+        BulkIndexer.Session session = bulkIndexer.openSession(null);
+        session.addAll(createEntries(1));
+        // Фоновый сброс уже снял документ с буфера и ждёт свободного слота
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!permits.hasQueuedThreads() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(permits.hasQueuedThreads());
+
+        // Act
+        Thread updater = Thread.ofVirtual().start(() -> session.updateAll(List.of(
+                new ChainUpdate("test-file:1", 10L, "success", true, 0, 0),
+                new ChainUpdate("test-file:2", 10L, "success", true, 0, 0))));
+        Thread.sleep(50);
+        permits.release();
+        updater.join(TimeUnit.SECONDS.toMillis(5));
+        session.close();
+
+        // Assert
+        assertEquals(List.of("index", "update"), sent);
+        assertEquals(1, session.stats().indexed());
+        assertEquals(2, session.stats().updated());
+        assertEquals(0, session.stats().failed());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void close_WhileAnotherSessionIsOpen_ShouldRefreshBeforeReturning() throws Exception {
+        // Arrange
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            return response(request.operations().size(), 201);
+        });
+        BulkIndexer.Session other = bulkIndexer.openSession(count -> {
+        });
+        BulkIndexer.Session session = bulkIndexer.openSession(count -> {
+        });
+        session.addAll(createEntries(1));
+
+        // Act
+        session.close();
+
+        // Assert
+        // Документы закрытой сессии видны поиску, не дожидаясь последней сессии
+        verify(indicesClient).refresh(any(Function.class));
+        other.close();
+        verify(indicesClient, times(2)).refresh(any(Function.class));
+    }
+
+    private static BulkResponse response(int items, int status) {
+        List<BulkResponseItem> responseItems = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            responseItems.add(item(status));
+        }
+        return BulkResponse.of(r -> r.errors(status >= 300).took(1).items(responseItems));
+    }
+
+    private static BulkResponseItem item(int status) {
+        return BulkResponseItem.of(i -> {
+            i.operationType(OperationType.Index).index("terraform_logs").status(status);
+            if (status >= 300) {
+                i.error(e -> e.type("rejected").reason("status " + status));
+            } else {
+                i.id("doc-" + System.nanoTime());
+            }
+            return i;
+        });
+    }
+
+    private List<LogEntry> createEntries(int count) {
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LogEntry entry = new LogEntry();
+            entry.setMessage("message-" + i);
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
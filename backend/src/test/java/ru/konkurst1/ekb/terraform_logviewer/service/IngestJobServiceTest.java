@@ -0,0 +1,106 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IngestJobServiceTest {
+
+    @Mock
+    private LogIngestionPipeline ingestionPipeline;
+
+    @Mock
+    private LogStorageService logStorageService;
+
+    @InjectMocks
+    private IngestJobService ingestJobService;
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    void tearDown() {
+        ingestJobService.shutdown();
+    }
+
+    @Test
+    void withIngestBlocked_WhileJobIsRunning_ShouldRefuse() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(ingestionPipeline.ingest(any(Path.class), anyString(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        IngestJob job = ingestJobService.submitLocalFile(logFile());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        Optional<String> result = ingestJobService.withIngestBlocked(() -> "migrated");
+
+        // Assert
+        assertTrue(result.isEmpty());
+        release.countDown();
+        awaitFinished(job);
+        assertEquals(IngestJob.State.COMPLETED, job.getState());
+    }
+
+    @Test
+    void withIngestBlocked_ShouldHoldJobsSubmittedDuringMaintenanceUntilItEnds() throws Exception {
+        // Arrange
+        ReentrantReadWriteLock indexLock = (ReentrantReadWriteLock) ReflectionTestUtils.getField(ingestJobService, "indexLock");
+        Path file = logFile();
+        IngestJob[] submitted = new IngestJob[1];
+
+        // Act
+        Optional<String> result = ingestJobService.withIngestBlocked(() -> {
+            submitted[0] = ingestJobService.submitLocalFile(file);
+            // Задача дошла до блокировки индекса и ждёт окончания миграции
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!indexLock.hasQueuedThreads() && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertTrue(indexLock.hasQueuedThreads());
+            assertEquals(IngestJob.State.QUEUED, submitted[0].getState());
+            verifyNoInteractions(ingestionPipeline);
+            return "migrated";
+        });
+
+        // Assert
+        assertEquals(Optional.of("migrated"), result);
+        awaitFinished(submitted[0]);
+        assertEquals(IngestJob.State.COMPLETED, submitted[0].getState());
+        verify(ingestionPipeline).ingest(eq(file), eq(submitted[0].getLogFileId()), any(), any());
+    }
+
+    private Path logFile() throws Exception {
+        Path file = directory.resolve("terraform.log");
+        Files.writeString(file, "{\"@level\":\"info\",\"@message\":\"Terraform version: 1.9.0\"}\n");
+        return file;
+    }
+
+    private static void awaitFinished(IngestJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.getState().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
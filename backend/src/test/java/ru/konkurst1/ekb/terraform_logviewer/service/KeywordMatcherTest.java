@@ -0,0 +1,90 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+
+    private final KeywordMatcher matcher = KeywordMatcher.of(List.of(
+            KeywordMatcher.Keyword.ignoringCase("creating"),
+            KeywordMatcher.Keyword.exact("Create"),
+            KeywordMatcher.Keyword.ignoringCase("error"),
+            KeywordMatcher.Keyword.ignoringCase("rror")));
+
+    @Test
+    void match_ShouldFoldCaseOnlyForCaseInsensitiveKeywords() {
+        // Act & Assert
+        assertTrue(KeywordMatcher.contains(matcher.match("aws_instance: CREATING..."), 0));
+        assertTrue(KeywordMatcher.contains(matcher.match("Plan: Create 2 resources"), 1));
+        assertFalse(KeywordMatcher.contains(matcher.match("plan: create 2 resources"), 1));
+        assertFalse(KeywordMatcher.contains(matcher.match("CREATE"), 1));
+    }
+
+    @Test
+    void match_WithOverlappingKeywords_ShouldReportAll() {
+        // Act
+        long matched = matcher.match("provider Error: timeout");
+
+        // Assert
+        assertTrue(KeywordMatcher.contains(matched, 2));
+        assertTrue(KeywordMatcher.contains(matched, 3));
+        assertFalse(KeywordMatcher.contains(matched, 0));
+    }
+
+    @Test
+    void match_WithNullOrNonAsciiText_ShouldNotFail() {
+        // Act & Assert
+        assertEquals(0, matcher.match(null));
+        assertEquals(0, matcher.match("Ошибка создания"));
+        assertTrue(KeywordMatcher.contains(matcher.match("ресурс: creating"), 0));
+    }
+
+    @Test
+    void match_WithRandomText_ShouldMatchStringContains() {
+        // Arrange
+        String[] words = {"creating", "Create", "error", "rror"};
+        boolean[] caseSensitive = {false, true, false, false};
+        String alphabet = "creatingCREATINGo rR";
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(24); j > 0; j--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            text.insert(random.nextInt(text.length() + 1), words[random.nextInt(words.length)]);
+            String message = text.toString();
+
+            long expected = 0;
+            for (int k = 0; k < words.length; k++) {
+                boolean found = caseSensitive[k]
+                        ? message.contains(words[k])
+                        : message.toLowerCase(Locale.ROOT).contains(words[k]);
+                if (found) {
+                    expected |= 1L << k;
+                }
+            }
+
+            // Act & Assert
+            assertEquals(expected, matcher.match(message), message);
+        }
+    }
+
+    @Test
+    void of_WithTooManyKeywords_ShouldThrow() {
+        // Arrange
+        List<KeywordMatcher.Keyword> keywords = new ArrayList<>();
+        for (int i = 0; i <= Long.SIZE; i++) {
+            keywords.add(KeywordMatcher.Keyword.exact("k" + i));
+        }
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> KeywordMatcher.of(keywords));
+    }
+}
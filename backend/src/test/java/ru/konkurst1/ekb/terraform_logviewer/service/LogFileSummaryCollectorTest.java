@@ -0,0 +1,99 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogFileSummary;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFileSummaryCollectorTest {
+
+    private static final Instant START = Instant.parse("2025-09-09T12:00:00Z");
+    private static final RequestChainCorrelator.ChainStats CHAINS =
+            new RequestChainCorrelator.ChainStats(4, 1, 1, 2, 300, 200);
+
+    @Test
+    void build_ShouldCountValuesAcrossBatches() {
+        // Arrange
+        LogFileSummaryCollector collector = new LogFileSummaryCollector(100, 100);
+        collector.accept(List.of(
+                createEntry(START, "INFO", "plan", "t1_vpc", "ReadResource"),
+                createEntry(START.plusSeconds(5), "ERROR", "apply", "t1_vpc", "ApplyResourceChange")));
+        collector.accept(List.of(createEntry(null, "INFO", "apply", null, null)));
+
+        // Act
+        LogFileSummary summary = collector.build("file-1", new IngestResult("file-1", 4, 3, 1, 10), CHAINS);
+
+        // Assert
+        assertEquals("file-1", summary.getId());
+        assertEquals(3L, summary.getEntryCount());
+        assertEquals(1L, summary.getFailedLines());
+        assertEquals(Map.of("INFO", 2L, "ERROR", 1L), summary.getLevelCounts());
+        assertEquals(Map.of("plan", 1L, "apply", 2L), summary.getSectionCounts());
+        assertEquals(Map.of("t1_vpc", 2L), summary.getResourceTypeCounts());
+        assertEquals(Map.of("registry.terraform.io/t1/t1", 2L), summary.getProviderCounts());
+        assertEquals(Map.of("ReadResource", 1L, "ApplyResourceChange", 1L), summary.getRpcCounts());
+        assertEquals(START, summary.getFirstTimestamp());
+        assertEquals(START.plusSeconds(5), summary.getLastTimestamp());
+        assertEquals(4L, summary.getChainCount());
+        assertEquals(150L, summary.getAvgChainDurationMs());
+        assertEquals(200L, summary.getMaxChainDurationMs());
+    }
+
+    @Test
+    void build_WithLongFile_ShouldWidenHistogramWithinBucketLimit() {
+        // Arrange
+        LogFileSummaryCollector collector = new LogFileSummaryCollector(10, 100);
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            entries.add(createEntry(START.plusSeconds(i), "INFO", "plan", null, null));
+        }
+
+        // Act
+        collector.accept(entries);
+        LogFileSummary summary = collector.build("file-1", new IngestResult("file-1", 1_000, 1_000, 0, 10), CHAINS);
+
+        // Assert
+        assertTrue(summary.getHistogram().size() <= 10);
+        assertEquals(128_000L, summary.getHistogramIntervalMs());
+        assertEquals(1_000L, summary.getHistogram().stream().mapToLong(LogFileSummary.HistogramBucket::getCount).sum());
+        for (int i = 1; i < summary.getHistogram().size(); i++) {
+            assertTrue(summary.getHistogram().get(i - 1).getStart().isBefore(summary.getHistogram().get(i).getStart()));
+        }
+    }
+
+    @Test
+    void build_WithManyValues_ShouldFoldExtraValuesIntoOther() {
+        // Arrange
+        LogFileSummaryCollector collector = new LogFileSummaryCollector(10, 2);
+        collector.accept(List.of(
+                createEntry(START, "INFO", "plan", "a", null),
+                createEntry(START, "INFO", "plan", "b", null),
+                createEntry(START, "INFO", "plan", "c", null),
+                createEntry(START, "INFO", "plan", "a", null)));
+
+        // Act
+        LogFileSummary summary = collector.build("file-1", new IngestResult("file-1", 4, 4, 0, 10), CHAINS);
+
+        // Assert
+        assertEquals(Map.of("a", 2L, "b", 1L, LogFileSummaryCollector.OTHER, 1L), summary.getResourceTypeCounts());
+    }
+
+    private LogEntry createEntry(Instant timestamp, String level, String section, String resourceType, String rpc) {
+        LogEntry entry = new LogEntry();
+        entry.setTimestamp(timestamp);
+        entry.setLevel(level);
+        entry.setSection(section);
+        entry.setTfResourceType(resourceType);
+        entry.setTfRpc(rpc);
+        if (resourceType != null) {
+            entry.setTfProviderAddr("registry.terraform.io/t1/t1");
+        }
+        return entry;
+    }
+}
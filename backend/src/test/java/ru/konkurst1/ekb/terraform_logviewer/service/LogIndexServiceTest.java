@@ -0,0 +1,52 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogIndexServiceTest {
+
+    @Test
+    void mappedFields_ShouldCountNestedPropertiesAndMultiFields() {
+        // Arrange: message (text) + rawJson с двумя ключами, один из них text + keyword
+        Map<String, Object> mapping = Map.of("properties", Map.of(
+                "message", Map.of("type", "text"),
+                "rawJson", Map.of("properties", Map.of(
+                        "tf_rpc", Map.of("type", "keyword"),
+                        "@message", Map.of("type", "text", "fields", Map.of("keyword", Map.of("type", "keyword")))))));
+
+        // Act
+        int fields = LogIndexService.mappedFields(mapping);
+
+        // Assert
+        assertEquals(4, fields);
+        assertEquals(RawJsonMapping.OBJECT, LogIndexService.rawJsonMapping(mapping));
+    }
+
+    @Test
+    void mappedFields_WithFlattenedRawJson_ShouldCountItOnce() {
+        // Arrange
+        Map<String, Object> mapping = Map.of("properties", Map.of(
+                "message", Map.of("type", "text"),
+                "rawJson", RawJsonMapping.FLATTENED.mapping(List.of())));
+
+        // Act & Assert
+        assertEquals(2, LogIndexService.mappedFields(mapping));
+        assertEquals(RawJsonMapping.FLATTENED, LogIndexService.rawJsonMapping(mapping));
+    }
+
+    @Test
+    void hasMessageNgram_ShouldDetectSubstringSubfield() {
+        // Arrange
+        Map<String, Object> legacy = Map.of("properties", Map.of("message", Map.of("type", "text")));
+        Map<String, Object> current = Map.of("properties", Map.of("message", Map.of("type", "text",
+                "fields", Map.of("ngram", Map.of("type", "text", "analyzer", "message_ngram")))));
+
+        // Act & Assert
+        assertFalse(LogIndexService.hasMessageNgram(legacy));
+        assertTrue(LogIndexService.hasMessageNgram(current));
+    }
+}
@@ -0,0 +1,319 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogFileSummary;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogParseResult;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LogIngestionPipelineTest {
+
+    @Mock
+    private LogParserService logParserService;
+
+    @Mock
+    private TerraformContextEnricher contextEnricher;
+
+    @Mock
+    private BulkIndexer bulkIndexer;
+
+    @Mock
+    private BulkIndexer.Session bulkSession;
+
+    @Mock
+    private LogTemplateService logTemplateService;
+
+    @Mock
+    private LogStorageService logStorageService;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private BlobStore.Writer blobWriter;
+
+    @Mock
+    private RawLogStore rawLogStore;
+
+    @Mock
+    private RawLogStore.Writer rawWriter;
+
+    @Mock
+    private QueryResultCache queryResultCache;
+
+    @InjectMocks
+    private LogIngestionPipeline ingestionPipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Кусок в 14 байт вмещает две строки вида "line-N\n"
+        ReflectionTestUtils.setField(ingestionPipeline, "chunkSize", 14);
+        ReflectionTestUtils.setField(ingestionPipeline, "queueCapacity", 1);
+
+        lenient().when(logParserService.newDictionary()).thenAnswer(invocation -> new StringDictionary(16, 64));
+        lenient().when(logParserService.parseChunk(any(LogChunk.class), eq("test-file"), anyString(), anyLong(), any())).thenAnswer(invocation -> {
+            LogChunk chunk = invocation.getArgument(0);
+            long firstLineNumber = invocation.getArgument(3);
+            String content = StandardCharsets.UTF_8.decode(chunk.data().duplicate()).toString();
+            List<LogEntry> entries = new ArrayList<>();
+            List<ParsingError> errors = new ArrayList<>();
+            String[] lines = content.split("\n");
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i].startsWith("line-")) {
+                    entries.add(createTestLogEntry(lines[i], firstLineNumber + i));
+                } else {
+                    errors.add(new ParsingError((int) (firstLineNumber + i), lines[i], "not a log line"));
+                }
+            }
+            return new LogParseResult(entries, errors, lines.length);
+        });
+        // Настоящий коррелятор: все записи теста из одной цепочки tf_req_id
+        lenient().when(contextEnricher.newCorrelator())
+                .thenAnswer(invocation -> new RequestChainCorrelator(Duration.ofMinutes(10), Duration.ofSeconds(1), 100, 100));
+        lenient().when(contextEnricher.enrichWithTerraformContext(anyList(), any(RequestChainCorrelator.class)))
+                .thenAnswer(invocation -> invocation.<RequestChainCorrelator>getArgument(1).accept(invocation.getArgument(0)));
+
+        // Сессия-заглушка сразу "индексирует" всё, что ей передали
+        AtomicLong indexed = new AtomicLong();
+        lenient().when(bulkIndexer.openSession(any())).thenAnswer(invocation -> {
+            LongConsumer onIndexed = invocation.getArgument(0);
+            lenient().doAnswer(add -> {
+                List<LogEntry> batch = add.getArgument(0);
+                indexed.addAndGet(batch.size());
+                onIndexed.accept(batch.size());
+                return null;
+            }).when(bulkSession).addAll(anyList());
+            return bulkSession;
+        });
+        lenient().when(blobStore.openWriter("test-file")).thenReturn(blobWriter);
+        lenient().when(rawLogStore.openWriter("test-file")).thenReturn(rawWriter);
+        lenient().when(bulkSession.stats()).thenAnswer(invocation -> new BulkIndexer.Stats(indexed.get(), 0, 0, 1, 0, 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestionPipeline.shutdown();
+    }
+
+    @Test
+    void ingest_WithSeveralBatches_ShouldIndexEveryBatchSeparately() throws Exception {
+        // Arrange
+        String content = "line-1\nline-2\nline-3\ngarbag\nline-5\n";
+        AtomicInteger listenedEntries = new AtomicInteger();
+        IngestProgress progress = new IngestProgress();
+
+        // Act
+        IngestResult result = ingestionPipeline.ingest(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "test-file",
+                progress,
+                batch -> listenedEntries.addAndGet(batch.size()));
+
+        // Assert
+        assertEquals(5, result.linesRead());
+        assertEquals(4, result.entriesIndexed());
+        assertEquals(1, result.failedLines());
+        assertEquals(4, listenedEntries.get());
+        assertEquals(content.length(), progress.getBytesRead());
+        assertEquals(4, progress.getEntriesParsed());
+        assertEquals(4, progress.getEntriesIndexed());
+        assertEquals(1, progress.getFailedLines());
+        verify(logParserService).parseChunk(any(LogChunk.class), eq("test-file"), anyString(), eq(1L), any(StringDictionary.class));
+        verify(logParserService).parseChunk(any(LogChunk.class), eq("test-file"), anyString(), eq(3L), any(StringDictionary.class));
+        verify(logParserService).parseChunk(any(LogChunk.class), eq("test-file"), anyString(), eq(5L), any(StringDictionary.class));
+        verify(bulkSession, times(3)).addAll(anyList());
+        verify(bulkSession).close();
+        // Длинные значения выносятся до отправки в индекс
+        verify(blobWriter, times(3)).offload(anyList());
+        verify(blobWriter).close();
+        // Исходник сохраняется кусками с теми же номерами первых строк, что и у разбора
+        verify(rawWriter).append(any(LogChunk.class), eq(1L));
+        verify(rawWriter).append(any(LogChunk.class), eq(3L));
+        verify(rawWriter).append(any(LogChunk.class), eq(5L));
+        verify(rawWriter).close();
+        // Кэш выборок файла сбрасывается в начале и в конце загрузки
+        verify(queryResultCache).startWriting(any());
+        verify(queryResultCache).finishWriting(any());
+    }
+
+    @Test
+    void ingest_WithChainAcrossChunks_ShouldSendPartialUpdatesForIndexedEntries() throws Exception {
+        // Arrange
+        String content = "line-1\nline-2\nline-3\nline-4\nline-5\n";
+        List<ChainUpdate> updates = new ArrayList<>();
+        doAnswer(invocation -> updates.addAll(invocation.getArgument(0))).when(bulkSession).updateAll(anyList());
+
+        // Act
+        ingestionPipeline.ingest(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "test-file", new IngestProgress(), null);
+
+        // Assert
+        // Цепочка закрывается только в конце файла, поэтому все записи получают итог частичным обновлением
+        assertEquals(List.of("test-file:1", "test-file:2", "test-file:3", "test-file:4", "test-file:5"),
+                updates.stream().map(ChainUpdate::documentId).toList());
+        assertTrue(updates.stream().allMatch(update -> update.requestDurationMs() == 4000L
+                && "success".equals(update.requestStatus()) && update.partOfRequestChain()));
+    }
+
+    @Test
+    void ingest_ShouldSaveFileSummaryAfterIndexing() throws Exception {
+        // Arrange
+        String content = "line-1\nline-2\ngarbag\n";
+        List<LogFileSummary> summaries = new ArrayList<>();
+        doAnswer(invocation -> summaries.add(invocation.getArgument(0))).when(logStorageService).saveSummary(any());
+
+        // Act
+        ingestionPipeline.ingest(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "test-file", new IngestProgress(), null);
+
+        // Assert
+        assertEquals(1, summaries.size());
+        LogFileSummary summary = summaries.get(0);
+        assertEquals("test-file", summary.getId());
+        assertEquals(2L, summary.getEntryCount());
+        assertEquals(1L, summary.getFailedLines());
+        assertEquals(Map.of("plan", 2L), summary.getSectionCounts());
+        assertEquals(1L, summary.getChainCount());
+        assertEquals(1000L, summary.getMaxChainDurationMs());
+    }
+
+    @Test
+    void ingest_WithNewTemplates_ShouldSaveThemAtEndOfIngest() throws Exception {
+        // Arrange
+        String content = "line-1\nline-2\nline-3\n";
+        LogTemplate template = new LogTemplate();
+        template.setId("template-1");
+        template.setTemplate("<*>");
+        when(logTemplateService.assignTemplates(anyList())).thenReturn(List.of(template), List.of());
+
+        // Act
+        ingestionPipeline.ingest(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "test-file", new IngestProgress(), null);
+
+        // Assert
+        verify(logTemplateService, times(2)).assignTemplates(anyList());
+        verify(logTemplateService).saveTemplates(List.of(template));
+    }
+
+    @Test
+    void ingest_WithTemplateChangedInSeveralBatches_ShouldSaveLatestVersionOnce() throws Exception {
+        // Arrange
+        String content = "line-1\nline-2\nline-3\n";
+        LogTemplate created = new LogTemplate();
+        created.setId("template-1");
+        created.setTemplate("line-1");
+        LogTemplate generalized = new LogTemplate();
+        generalized.setId("template-1");
+        generalized.setTemplate("<*>");
+        when(logTemplateService.assignTemplates(anyList())).thenReturn(List.of(created), List.of(generalized));
+
+        // Act
+        ingestionPipeline.ingest(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "test-file", new IngestProgress(), null);
+
+        // Assert
+        verify(logTemplateService, times(1)).saveTemplates(anyList());
+        verify(logTemplateService).saveTemplates(List.of(generalized));
+    }
+
+    @Test
+    void ingest_WhenIndexingFails_ShouldPropagateError() {
+        // Arrange
+        when(bulkIndexer.openSession(any())).thenReturn(bulkSession);
+        doThrow(new IllegalStateException("bulk rejected")).when(bulkSession).addAll(anyList());
+        String content = "line-1\nline-2\nline-3\nline-4\nline-5\nline-6\n";
+
+        // Act & Assert
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> ingestionPipeline.ingest(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "test-file", new IngestProgress(), null));
+        assertTrue(error.getMessage().contains("bulk rejected") || error.getMessage().contains("stopped"));
+    }
+
+    @Test
+    void ingest_ShouldFinishWritingAfterBulkSessionIsClosed() throws Exception {
+        // Arrange
+        String content = "line-1\nline-2\n";
+
+        // Act
+        ingestionPipeline.ingest(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                "test-file", new IngestProgress(), null);
+
+        // Assert
+        InOrder order = inOrder(queryResultCache, bulkSession);
+        order.verify(queryResultCache).startWriting("test-file");
+        order.verify(bulkSession).close();
+        order.verify(queryResultCache).finishWriting("test-file");
+    }
+
+    @Test
+    void ingest_WhenParsingFails_ShouldFinishWritingAfterIndexerClosesSession() throws Exception {
+        // Arrange
+        doThrow(new IllegalStateException("broken chunk"))
+                .when(logParserService).parseChunk(any(LogChunk.class), eq("test-file"), anyString(), anyLong(), any());
+        // Закрытие сессии (ожидание запросов в полёте и refresh) занимает время
+        doAnswer(invocation -> {
+            Thread.sleep(100);
+            return null;
+        }).when(bulkSession).close();
+        String content = "line-1\nline-2\n";
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> ingestionPipeline.ingest(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "test-file", new IngestProgress(), null));
+        InOrder order = inOrder(bulkSession, queryResultCache);
+        order.verify(bulkSession).close();
+        order.verify(queryResultCache).finishWriting("test-file");
+    }
+
+    @Test
+    void ingest_WhenCancelled_ShouldStopBeforeNextChunk() {
+        // Arrange
+        IngestProgress progress = new IngestProgress();
+        progress.cancel();
+        String content = "line-1\nline-2\n";
+
+        // Act & Assert
+        assertThrows(CancellationException.class, () -> ingestionPipeline.ingest(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "test-file", progress, null));
+        verify(bulkSession, never()).addAll(anyList());
+        verify(logStorageService, never()).saveSummary(any());
+    }
+
+    private LogEntry createTestLogEntry(String message, long lineNumber) {
+        LogEntry entry = new LogEntry();
+        entry.setId("test-file:" + lineNumber);
+        entry.setLineNumber((int) lineNumber);
+        entry.setTimestamp(Instant.parse("2025-09-09T12:00:00Z").plusSeconds(lineNumber - 1));
+        entry.setTfReqId("req-1");
+        entry.setMessage(message);
+        entry.setLevel("INFO");
+        entry.setSection("plan");
+        entry.setLogFileId("test-file");
+        return entry;
+    }
+}
@@ -1,11 +1,250 @@
 package ru.konkurst1.ekb.terraform_logviewer.service;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogParseResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
 
 @ExtendWith(MockitoExtension.class)
 class LogParserServiceTest {
 
+    @Spy
+    private SectionDetectionService sectionDetectionService = new SectionDetectionService();
+
+    @Mock
+    private TerraformContextEnricher contextEnricher;
+
+    @InjectMocks
+    private LogParserService logParserService;
+
+    @Test
+    void parseJsonLogs_WithTerraformLine_ShouldExtractFieldsInOnePass() {
+        // Arrange
+        List<String> lines = List.of(
+                "{\"@level\":\"debug\",\"@message\":\"Received request\",\"@module\":\"sdk.proto\","
+                        + "\"@caller\":\"github.com/hashicorp/terraform-plugin-go/tfprotov5/tf5server/server.go:859\","
+                        + "\"@timestamp\":\"2025-09-09T15:47:33.319437+03:00\",\"tf_provider_addr\":\"registry.terraform.io/t1/t1\","
+                        + "\"tf_req_id\":\"6a2c1e0a\",\"tf_resource_type\":\"t1_compute_instance\",\"tf_rpc\":\"ApplyResourceChange\","
+                        + "\"diagnostics\":[{\"severity\":\"warning\"}]}"
+        );
+
+        // Act
+        List<LogEntry> entries = logParserService.parseJsonLogs(lines, "test-file");
+
+        // Assert
+        assertEquals(1, entries.size());
+        LogEntry entry = entries.get(0);
+        assertEquals("DEBUG", entry.getLevel());
+        assertEquals("Received request", entry.getMessage());
+        assertEquals("sdk.proto", entry.getModule());
+        assertEquals("github.com/hashicorp/terraform-plugin-go/tfprotov5/tf5server/server.go:859", entry.getCaller());
+        assertEquals("registry.terraform.io/t1/t1", entry.getTfProviderAddr());
+        assertEquals("6a2c1e0a", entry.getTfReqId());
+        assertEquals("t1_compute_instance", entry.getTfResourceType());
+        assertEquals("request", entry.getRequestType());
+        assertEquals("ApplyResourceChange", entry.getTfRpc());
+        assertEquals("test-file", entry.getLogFileId());
+        assertEquals(Instant.parse("2025-09-09T12:47:33.319437Z"), entry.getTimestamp());
+
+        Map<?, ?> rawJson = (Map<?, ?>) entry.getRawJson();
+        assertEquals("ApplyResourceChange", rawJson.get("tf_rpc"));
+        assertInstanceOf(List.class, rawJson.get("diagnostics"));
+    }
+
+    @Test
+    void parseJsonLogs_WithProtoVersionOnly_ShouldMarkResponse() {
+        // Arrange
+        List<String> lines = List.of("{\"@level\":\"trace\",\"@message\":\"Received downstream response\",\"tf_proto_version\":\"5.6\"}");
+
+        // Act
+        List<LogEntry> entries = logParserService.parseJsonLogs(lines, "test-file");
+
+        // Assert
+        assertEquals(1, entries.size());
+        assertEquals("response", entries.get(0).getRequestType());
+    }
+
+    @Test
+    void parseJsonLogs_WithDownstreamResponse_ShouldReadProviderDurationAndDiagnostics() {
+        // Arrange
+        List<String> lines = List.of(
+                "{\"@level\":\"trace\",\"@message\":\"Received downstream response\",\"@module\":\"sdk.proto\","
+                        + "\"diagnostic_error_count\":1,\"diagnostic_warning_count\":0,\"tf_proto_version\":\"6.8\","
+                        + "\"tf_req_duration_ms\":4,\"tf_req_id\":\"52f3e8d8\",\"tf_rpc\":\"GetProviderSchema\"}",
+                "{\"@level\":\"trace\",\"@message\":\"Served request\",\"@module\":\"sdk.proto\","
+                        + "\"tf_proto_version\":\"6.8\",\"tf_req_id\":\"52f3e8d8\",\"tf_rpc\":\"GetProviderSchema\"}"
+        );
+
+        // Act
+        List<LogEntry> entries = logParserService.parseJsonLogs(lines, "test-file");
+
+        // Assert
+        LogEntry response = entries.get(0);
+        assertEquals("response", response.getRequestType());
+        assertEquals("GetProviderSchema", response.getTfRpc());
+        assertEquals(4L, response.getRequestDurationMs());
+        assertEquals(1, response.getDiagnosticErrorCount());
+        assertEquals(0, response.getDiagnosticWarningCount());
+        // Промежуточные записи RPC не считаются ни запросом, ни ответом
+        assertNull(entries.get(1).getRequestType());
+    }
+
+    @Test
+    void parseJsonLogs_WithRepeatedValues_ShouldShareInstances() {
+        // Arrange
+        String line = "{\"@level\":\"trace\",\"@message\":\"Served request\",\"@module\":\"sdk.proto\","
+                + "\"@caller\":\"tf6serverlogging/downstream_request.go:42\",\"tf_provider_addr\":\"t1/t1-cloud/t1\","
+                + "\"tf_rpc\":\"ReadResource\",\"tf_req_id\":\"52f3e8d8\"}";
+
+        // Act
+        List<LogEntry> entries = logParserService.parseJsonLogs(List.of(line, line), "test-file");
+
+        // Assert
+        LogEntry first = entries.get(0);
+        LogEntry second = entries.get(1);
+        assertEquals("TRACE", first.getLevel());
+        assertSame(first.getLevel(), second.getLevel());
+        assertSame(first.getModule(), second.getModule());
+        assertSame(first.getCaller(), second.getCaller());
+        assertSame(first.getTfProviderAddr(), second.getTfProviderAddr());
+        assertSame(first.getTfRpc(), second.getTfRpc());
+        // rawJson ссылается на те же экземпляры, что и поля записи
+        assertSame(first.getModule(), ((Map<?, ?>) second.getRawJson()).get("@module"));
+        // tf_req_id уникален для запроса и в словарь не попадает
+        assertNotSame(first.getTfReqId(), second.getTfReqId());
+    }
+
+    @Test
+    void parseChunk_WithManySmallParts_ShouldMatchSequentialSections() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(logParserService, "parseParallelism", 4);
+        ReflectionTestUtils.setField(logParserService, "minPartBytes", 256);
+        logParserService.init();
+
+        String[] messages = {
+                "backend/local: starting Plan operation",
+                "backend/local: starting Apply operation",
+                "Apply complete! Resources: 1 added, 0 changed, 0 destroyed.",
+                "provider: configuring client automatic mTLS",
+                "ReferenceTransformer: \"t1_vpc_network.main\" references: []"
+        };
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder();
+        List<String> lines = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // Переходы редкие, чтобы большинство частей наследовали секцию из предыдущих
+            String message = random.nextInt(50) == 0 ? messages[random.nextInt(3)] : messages[3 + random.nextInt(2)];
+            String line = "{\"@level\":\"debug\",\"@message\":\"" + message.replace("\"", "\\\"") + "\"}";
+            lines.add(line);
+            offsets.add((long) content.length()); // строки ASCII: символы = байты
+            content.append(line).append('\n');
+        }
+        List<LogEntry> expected = sectionDetectionService.detectSections(logParserService.parseJsonLogs(lines, "test-file"));
+        StringDictionary dictionary = logParserService.newDictionary();
+
+        // Act
+        List<LogEntry> actual = new ArrayList<>();
+        String currentSection = SectionDetectionService.INITIAL_SECTION;
+        long linesRead = 0;
+        LogChunkReader reader = new LogChunkReader(
+                new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)), 4096);
+        LogChunk chunk;
+        while ((chunk = reader.next()) != null) {
+            LogParseResult result = logParserService.parseChunk(chunk, "test-file", currentSection, linesRead + 1, dictionary);
+            linesRead += result.linesRead();
+            actual.addAll(result.entries());
+            if (!result.entries().isEmpty()) {
+                currentSection = result.entries().get(result.entries().size() - 1).getSection();
+            }
+        }
+        logParserService.shutdown();
+
+        // Assert
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+            assertEquals(expected.get(i).getSection(), actual.get(i).getSection(), "section mismatch at line " + i);
+            assertEquals(i + 1, actual.get(i).getLineNumber());
+            assertEquals("test-file:" + (i + 1), actual.get(i).getId());
+            assertEquals(offsets.get(i), actual.get(i).getByteOffset());
+        }
+    }
+
+    @Test
+    void parseChunk_WhenRulesReloadedDuringParsing_ShouldUseRulesReadAtStart() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(logParserService, "parseParallelism", 4);
+        ReflectionTestUtils.setField(logParserService, "minPartBytes", 256);
+        logParserService.init();
+
+        StringBuilder content = new StringBuilder("{\"@level\":\"info\",\"@message\":\"backend/local: starting Plan operation\"}\n");
+        for (int i = 0; i < 200; i++) {
+            content.append("{\"@level\":\"debug\",\"@message\":\"provider: configuring client automatic mTLS\"}\n");
+        }
+        // Правила перезагружаются, когда первая часть уже ищет переходы
+        AtomicBoolean reloaded = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (reloaded.compareAndSet(false, true)) {
+                sectionDetectionService.updateRules(List.of(
+                        new SectionRule("reloaded", List.of("provider: configuring"), false)));
+            }
+            return invocation.callRealMethod();
+        }).when(sectionDetectionService).findTransitions(any(), anyList());
+        LogChunk chunk = new LogChunkReader(
+                new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)), 1 << 20).next();
+
+        // Act
+        LogParseResult result = logParserService.parseChunk(chunk, "test-file", SectionDetectionService.INITIAL_SECTION,
+                1, logParserService.newDictionary());
+        logParserService.shutdown();
+
+        // Assert
+        assertTrue(reloaded.get());
+        assertEquals(201, result.entries().size());
+        assertTrue(result.entries().stream().allMatch(entry -> "plan".equals(entry.getSection())));
+        assertEquals("reloaded", sectionDetectionService.getRules().get(0).section());
+    }
+
+    @Test
+    void parseJsonLogs_WithInvalidLines_ShouldSkipThem() {
+        // Arrange
+        List<String> lines = List.of(
+                "{\"@level\":\"info\",\"@message\":\"Terraform version: 1.13.1\"}",
+                "",
+                "not a json line",
+                "[1, 2, 3]"
+        );
+
+        // Act
+        List<LogEntry> entries = logParserService.parseJsonLogs(lines, "test-file");
+
+        // Assert
+        assertEquals(1, entries.size());
+        assertEquals("Terraform version: 1.13.1", entries.get(0).getMessage());
+        assertEquals(1, entries.get(0).getLineNumber());
+        assertEquals("test-file:1", entries.get(0).getId());
+    }
+
     // private LogParserService logParserService;
 
     // @BeforeEach
@@ -2,9 +2,18 @@ package ru.konkurst1.ekb.terraform_logviewer.service;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepository;
@@ -15,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,9 +33,33 @@ class LogSearchServiceTest {
     @Mock
     private LogEntryRepository logEntryRepository;
 
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Mock
+    private QueryResultCache queryResultCache;
+
     @InjectMocks
     private LogSearchService logSearchService;
 
+    @Test
+    void markAsRead_ShouldRefreshBeforeInvalidatingCache() {
+        // Arrange
+        IndexCoordinates index = IndexCoordinates.of("terraform_logs");
+        when(elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class)).thenReturn(index);
+        List<String> entryIds = List.of("file1:1", "file1:2");
+
+        // Act
+        logSearchService.markAsRead(entryIds);
+
+        // Assert
+        ArgumentCaptor<BulkOptions> options = ArgumentCaptor.forClass(BulkOptions.class);
+        InOrder order = inOrder(elasticsearchOperations, queryResultCache);
+        order.verify(elasticsearchOperations).bulkUpdate(anyList(), options.capture(), eq(index));
+        order.verify(queryResultCache).invalidateEntries(entryIds);
+        assertEquals(RefreshPolicy.IMMEDIATE, options.getValue().getRefreshPolicy());
+    }
+
 //    @Test //todo: LogSearchServiceTest > advancedSearch_WithFilters_ShouldReturnFilteredResults() FAILED   org.mockito.exceptions.misusing.UnfinishedStubbingException at LogSearchServiceTest.java:59
 //    void advancedSearch_WithFilters_ShouldReturnFilteredResults() {
 //        // Arrange
@@ -62,6 +96,69 @@ class LogSearchServiceTest {
 //        verify(elasticsearchOperations, times(1)).search(any(Query.class), eq(LogEntry.class));
 //    }
 
+    @Test
+    void buildCriteria_WithFreeText_ShouldMatchWordsOrSubstringWithoutWildcards() {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        filters.setFreeText("Apply complete");
+
+        // Act
+        List<Criteria> message = messageCriteria(LogSearchService.buildCriteria(filters, "file1"));
+
+        // Assert: слова (match, and) или подстрока фразой по триграммам, обе ветви через OR
+        assertEquals(List.of("message", "message.ngram"), message.stream().map(c -> c.getField().getName()).toList());
+        assertTrue(message.stream().allMatch(Criteria::isOr));
+        assertEquals(Criteria.OperationKey.MATCHES_ALL, message.get(0).getQueryCriteriaEntries().iterator().next().getKey());
+        Criteria.CriteriaEntry substring = message.get(1).getQueryCriteriaEntries().iterator().next();
+        assertEquals(Criteria.OperationKey.EXPRESSION, substring.getKey());
+        assertEquals("\"Apply complete\"", substring.getValue());
+    }
+
+    @Test
+    void buildCriteria_WithQuotedText_ShouldSearchPhrase() {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        filters.setFreeText("\"apply complete\"");
+
+        // Act
+        List<Criteria> message = messageCriteria(LogSearchService.buildCriteria(filters, null));
+
+        // Assert
+        assertEquals(1, message.size());
+        assertEquals("message", message.get(0).getField().getName());
+        assertEquals("\"apply complete\"", message.get(0).getQueryCriteriaEntries().iterator().next().getValue());
+    }
+
+    @Test
+    void buildCriteria_WithPhraseContainingQuotes_ShouldEscapeThem() {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        filters.setFreeText("say \"hi\"");
+        filters.setTextMatch(SearchFilters.TextMatch.PHRASE);
+
+        // Act
+        List<Criteria> message = messageCriteria(LogSearchService.buildCriteria(filters, null));
+
+        // Assert
+        assertEquals("\"say \\\"hi\\\"\"", message.get(0).getQueryCriteriaEntries().iterator().next().getValue());
+    }
+
+    @Test
+    void buildCriteria_WithShortSubstring_ShouldUsePrefixOfWord() {
+        // Arrange: подстрока короче триграммы
+        SearchFilters filters = new SearchFilters();
+        filters.setFreeText("Tf");
+        filters.setTextMatch(SearchFilters.TextMatch.SUBSTRING);
+
+        // Act
+        List<Criteria> message = messageCriteria(LogSearchService.buildCriteria(filters, "file1"));
+
+        // Assert
+        Criteria.CriteriaEntry entry = message.get(0).getQueryCriteriaEntries().iterator().next();
+        assertEquals(Criteria.OperationKey.STARTS_WITH, entry.getKey());
+        assertEquals("tf", entry.getValue());
+    }
+
     @Test
     void groupByRequestId_WithEntries_ShouldGroupCorrectly() {
         // Arrange
@@ -136,6 +233,42 @@ class LogSearchServiceTest {
     //     verify(logEntryRepository, never()).saveAll(any());
     // }
 
+    @Test
+    void buildSort_ByDefault_ShouldSortByTimestampAscending() {
+        // Act
+        Sort sort = LogSearchService.buildSort(new SearchFilters());
+
+        // Assert
+        assertEquals(Sort.by("timestamp").ascending(), sort);
+    }
+
+    @Test
+    void buildSort_ByDuration_ShouldSortDescendingThenByTimestamp() {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        filters.setSortBy(SearchFilters.SortField.DURATION);
+
+        // Act
+        Sort sort = LogSearchService.buildSort(filters);
+
+        // Assert
+        assertEquals(Sort.by(Sort.Order.desc("requestDurationMs"), Sort.Order.asc("timestamp")), sort);
+    }
+
+    @Test
+    void buildSort_BySeverityWithDirection_ShouldUseGivenDirection() {
+        // Arrange
+        SearchFilters filters = new SearchFilters();
+        filters.setSortBy(SearchFilters.SortField.SEVERITY);
+        filters.setSortDirection(Sort.Direction.ASC);
+
+        // Act
+        Sort sort = LogSearchService.buildSort(filters);
+
+        // Assert
+        assertEquals(Sort.Direction.ASC, sort.getOrderFor("severityScore").getDirection());
+    }
+
     @Test
     void getUnreadStats_ShouldReturnCount() {
         // Arrange
@@ -177,6 +310,15 @@ class LogSearchServiceTest {
         return entry;
     }
 
+    // Условия по тексту сообщения: они добавлены к фильтрам как subCriteria
+    private List<Criteria> messageCriteria(Criteria criteria) {
+        return criteria.getCriteriaChain().stream()
+                .flatMap(chained -> chained.getSubCriteria().stream())
+                .flatMap(sub -> sub.getCriteriaChain().stream())
+                .filter(chained -> chained.getField() != null)
+                .toList();
+    }
+
     private LogEntry createLogEntryWithRequestId(String requestId) {
         LogEntry entry = createTestLogEntry("1");
         entry.setTfReqId(requestId);
@@ -0,0 +1,42 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStatsCollectorTest {
+
+    @Test
+    void accept_WithSeveralBatches_ShouldSumCounters() {
+        // Arrange
+        LogStatsCollector collector = new LogStatsCollector();
+
+        // Act
+        collector.accept(List.of(
+                createEntry("plan", "INFO"),
+                createEntry("plan", "ERROR"),
+                createEntry("other", "WARN")));
+        collector.accept(List.of(
+                createEntry("apply", "ERROR"),
+                createEntry("apply", "DEBUG")));
+        Map<String, Object> stats = collector.snapshot();
+
+        // Assert
+        assertEquals(5L, stats.get("totalEntries"));
+        assertEquals(2L, stats.get("planSectionEntries"));
+        assertEquals(2L, stats.get("applySectionEntries"));
+        assertEquals(2L, stats.get("errorEntries"));
+        assertEquals(1L, stats.get("warnEntries"));
+    }
+
+    private LogEntry createEntry(String section, String level) {
+        LogEntry entry = new LogEntry();
+        entry.setSection(section);
+        entry.setLevel(level);
+        return entry;
+    }
+}
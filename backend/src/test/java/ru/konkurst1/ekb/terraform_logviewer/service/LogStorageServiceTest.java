@@ -6,14 +6,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
+import org.springframework.data.elasticsearch.core.query.Criteria;
 import ru.konkurst1.ekb.terraform_logviewer.dto.LogFileInfo;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogFileSummary;
 import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
 import ru.konkurst1.ekb.terraform_logviewer.repository.LogEntryRepository;
+import ru.konkurst1.ekb.terraform_logviewer.repository.LogFileSummaryRepository;
 
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -25,6 +30,18 @@ class LogStorageServiceTest {
     @Mock
     private LogEntryRepository logEntryRepository;
 
+    @Mock
+    private LogFileSummaryRepository logFileSummaryRepository;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private RawLogStore rawLogStore;
+
+    @Mock
+    private QueryResultCache queryResultCache;
+
     @InjectMocks
     private LogStorageService logStorageService;
 
@@ -54,7 +71,7 @@ class LogStorageServiceTest {
         List<LogEntry> expectedEntries = List.of(createTestLogEntry("1L"));
         Page<LogEntry> expectedPage = new PageImpl<>(expectedEntries, pageable, 1);
 
-        when(logEntryRepository.findByLogFileIdAndMessageContainingIgnoreCase(eq(logFileId), eq(query), any(Pageable.class)))
+        when(logEntryRepository.searchMessages(eq(logFileId), eq(query), any(Pageable.class)))
                 .thenReturn(expectedPage);
 
         // Act
@@ -68,20 +85,101 @@ class LogStorageServiceTest {
     @Test
     void getLogFiles_ShouldReturnFileInfo() {
         // Arrange
-        List<LogFileInfo> expectedFiles = Arrays.asList(
-                new LogFileInfo("file1", Instant.now(), 100L, 2L),
-                new LogFileInfo("file2", Instant.now(), 50L, 1L)
-        );
+        Instant uploadTime = Instant.now();
+        Pageable pageable = PageRequest.of(1, 2, Sort.by("uploadTime").descending());
+        when(logFileSummaryRepository.findAll(pageable)).thenReturn(new PageImpl<>(List.of(
+                createSummary("file1", uploadTime, 100L, 2L, Map.of()),
+                createSummary("file2", uploadTime, 50L, 1L, Map.of())), pageable, 10));
 
-        when(logEntryRepository.findLogFileInfo()).thenReturn(expectedFiles);
+        // Act
+        List<LogFileInfo> result = logStorageService.getLogFiles(1, 2);
+
+        // Assert
+        assertEquals(List.of(
+                new LogFileInfo("file1", uploadTime, 100L, 2L),
+                new LogFileInfo("file2", uploadTime, 50L, 1L)), result);
+        verifyNoInteractions(logEntryRepository);
+    }
+
+    @Test
+    void getStats_WithoutLogFileId_ShouldCountInElasticsearchWithoutReadingSummaries() {
+        // Arrange
+        when(logEntryRepository.count()).thenReturn(100L);
+        when(logEntryRepository.countMatching(any(Criteria.class))).thenReturn(60L, 40L, 2L, 3L);
+        when(logFileSummaryRepository.count()).thenReturn(4L);
 
         // Act
-        List<LogFileInfo> result = logStorageService.getLogFiles();
+        Map<String, Object> stats = logStorageService.getStats(null);
 
         // Assert
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        verify(logEntryRepository, times(1)).findLogFileInfo();
+        assertEquals(100L, stats.get("totalEntries"));
+        assertEquals(60L, stats.get("planSectionEntries"));
+        assertEquals(40L, stats.get("applySectionEntries"));
+        assertEquals(2L, stats.get("errorEntries"));
+        assertEquals(3L, stats.get("warnEntries"));
+        assertEquals(4L, stats.get("files"));
+        assertFalse(stats.containsKey("summary"));
+        verify(logFileSummaryRepository, never()).findAll();
+    }
+
+    @Test
+    void getStats_WithLogFileId_ShouldReadSingleSummary() {
+        // Arrange
+        LogFileSummary summary = createSummary("file1", Instant.now(), 10L, 0L, Map.of("ERROR", 2L, "WARN", 3L, "INFO", 5L));
+        summary.setSectionCounts(Map.of("plan", 6L, "apply", 4L));
+        when(logFileSummaryRepository.findById("file1")).thenReturn(Optional.of(summary));
+
+        // Act
+        Map<String, Object> stats = logStorageService.getStats("file1");
+
+        // Assert
+        assertEquals(10L, stats.get("totalEntries"));
+        assertEquals(6L, stats.get("planSectionEntries"));
+        assertEquals(4L, stats.get("applySectionEntries"));
+        assertEquals(2L, stats.get("errorEntries"));
+        assertEquals(3L, stats.get("warnEntries"));
+        assertSame(summary, stats.get("summary"));
+        verifyNoInteractions(logEntryRepository);
+    }
+
+    @Test
+    void deleteEntries_ShouldDeleteSummary() {
+        // Act
+        logStorageService.deleteEntries("file1");
+
+        // Assert
+        verify(logEntryRepository).deleteByLogFileId("file1");
+        verify(logFileSummaryRepository).deleteById("file1");
+        verify(blobStore).delete("file1");
+        verify(rawLogStore).delete("file1");
+        verify(queryResultCache).invalidate("file1");
+    }
+
+    @Test
+    void getContext_ShouldReadRawStoreByEntryIdWithoutElasticsearch() throws Exception {
+        // Arrange
+        List<RawLogStore.RawLine> lines = List.of(new RawLogStore.RawLine(41, 100, "{}"), new RawLogStore.RawLine(42, 103, "{}"));
+        when(rawLogStore.readContext("file:1", 42, 1, 0)).thenReturn(Optional.of(lines));
+
+        // Act
+        Optional<List<RawLogStore.RawLine>> context = logStorageService.getContext("file:1:42", 1, 0);
+        Optional<List<RawLogStore.RawLine>> malformed = logStorageService.getContext("file-without-line", 1, 0);
+
+        // Assert
+        assertEquals(Optional.of(lines), context);
+        assertTrue(malformed.isEmpty());
+        verifyNoInteractions(logEntryRepository);
+    }
+
+    private LogFileSummary createSummary(String id, Instant uploadTime, Long entryCount, Long failedLines,
+                                         Map<String, Long> levelCounts) {
+        LogFileSummary summary = new LogFileSummary();
+        summary.setId(id);
+        summary.setUploadTime(uploadTime);
+        summary.setEntryCount(entryCount);
+        summary.setFailedLines(failedLines);
+        summary.setLevelCounts(levelCounts);
+        return summary;
     }
 
     private LogEntry createTestLogEntry(String id) {
@@ -0,0 +1,126 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStreamDecoderTest {
+
+    private static final String LOG = "{\"@level\":\"info\",\"@message\":\"Terraform version: 1.12.2\"}\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void detect_WithPlainLog_ShouldReturnPlain() throws IOException {
+        // Arrange
+        Path file = write("plain.json", LOG.getBytes(StandardCharsets.UTF_8));
+
+        // Act & Assert
+        assertEquals(LogStreamDecoder.Format.PLAIN, LogStreamDecoder.detect(file, null));
+    }
+
+    @Test
+    void decompress_WithGzip_ShouldReturnOriginalLines() throws IOException {
+        // Arrange
+        Path file = write("log.json.gz", gzip(LOG.getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        LogStreamDecoder.Format format = LogStreamDecoder.detect(file, null);
+        String content;
+        try (InputStream decoded = LogStreamDecoder.decompress(Files.newInputStream(file), format)) {
+            assertNull(LogStreamDecoder.openArchive(decoded));
+            content = new String(decoded.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // Assert
+        assertEquals(LogStreamDecoder.Format.GZIP, format);
+        assertEquals(LOG, content);
+    }
+
+    @Test
+    void openArchive_WithTarGz_ShouldIterateFiles() throws IOException {
+        // Arrange
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(tar)) {
+            for (String name : List.of("plan.json", "apply.json")) {
+                byte[] data = LOG.getBytes(StandardCharsets.UTF_8);
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(data.length);
+                out.putArchiveEntry(entry);
+                out.write(data);
+                out.closeArchiveEntry();
+            }
+        }
+        Path file = write("logs.tar.gz", gzip(tar.toByteArray()));
+
+        // Act
+        List<String> names = new ArrayList<>();
+        try (InputStream decoded = LogStreamDecoder.decompress(Files.newInputStream(file), LogStreamDecoder.detect(file, null))) {
+            ArchiveInputStream<? extends ArchiveEntry> archive = LogStreamDecoder.openArchive(decoded);
+            assertNotNull(archive);
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null) {
+                names.add(entry.getName());
+                assertEquals(LOG, new String(LogStreamDecoder.nonClosing(archive).readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        // Assert
+        assertEquals(List.of("plan.json", "apply.json"), names);
+    }
+
+    @Test
+    void detect_WithZip_ShouldReturnZip() throws IOException {
+        // Arrange
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("tflog.json"));
+            out.write(LOG.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        Path file = write("logs.zip", zip.toByteArray());
+
+        // Act & Assert
+        assertEquals(LogStreamDecoder.Format.ZIP, LogStreamDecoder.detect(file, null));
+    }
+
+    @Test
+    void detect_WhenDeclaredEncodingDoesNotMatch_ShouldFail() throws IOException {
+        // Arrange
+        Path file = write("plain.json", LOG.getBytes(StandardCharsets.UTF_8));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> LogStreamDecoder.detect(file, "gzip"));
+        assertThrows(IOException.class, () -> LogStreamDecoder.detect(file, "application/zstd"));
+    }
+
+    private Path write(String name, byte[] data) throws IOException {
+        return Files.write(tempDir.resolve(name), data);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
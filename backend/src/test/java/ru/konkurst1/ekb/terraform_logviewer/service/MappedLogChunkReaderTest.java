@@ -0,0 +1,62 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLogChunkReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void next_WithSmallWindows_ShouldReturnLineAlignedChunksCoveringWholeFile() throws Exception {
+        // Arrange
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("{\"@message\":\"line ").append(i).append(' ').append("x".repeat(i % 37)).append("\"}\n");
+        }
+        // Последняя строка без перевода строки и длиннее окна
+        content.append("{\"@message\":\"").append("y".repeat(300)).append("\"}");
+        Path file = tempDir.resolve("tflog.json");
+        Files.writeString(file, content);
+
+        // Act
+        List<String> chunks = new ArrayList<>();
+        long expectedOffset = 0;
+        try (MappedLogChunkReader reader = new MappedLogChunkReader(file, 100, 256)) {
+            LogChunk chunk;
+            while ((chunk = reader.next()) != null) {
+                assertEquals(expectedOffset, chunk.startOffset());
+                expectedOffset += chunk.length();
+                chunks.add(StandardCharsets.UTF_8.decode(chunk.data()).toString());
+            }
+        }
+
+        // Assert
+        assertEquals(Files.size(file), expectedOffset);
+        assertEquals(content.toString(), String.join("", chunks));
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertTrue(chunks.get(i).endsWith("\n"), "chunk " + i + " is not line aligned");
+        }
+    }
+
+    @Test
+    void next_WithEmptyFile_ShouldReturnNull() throws Exception {
+        // Arrange
+        Path file = tempDir.resolve("empty.json");
+        Files.createFile(file);
+
+        // Act & Assert
+        try (MappedLogChunkReader reader = new MappedLogChunkReader(file, 100, 256)) {
+            assertNull(reader.next());
+        }
+    }
+}
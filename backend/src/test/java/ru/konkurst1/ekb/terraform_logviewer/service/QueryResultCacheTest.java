@@ -0,0 +1,189 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.konkurst1.ekb.terraform_logviewer.dto.QueryCacheStats;
+import ru.konkurst1.ekb.terraform_logviewer.dto.SearchFilters;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogLevel;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheTest {
+
+    private final QueryResultCache cache = new QueryResultCache();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void get_SameQuery_ShouldLoadOnce() {
+        // Act
+        List<LogEntry> first = load("file1", "q");
+        List<LogEntry> second = load("file1", "q");
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        QueryCacheStats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(0.5, stats.hitRate());
+    }
+
+    @Test
+    void invalidate_ShouldDropOnlyThatFileAndAllFilesQueries() {
+        // Arrange
+        load("file1", "q");
+        load("file2", "q");
+        load(null, "q");
+
+        // Act
+        cache.invalidate("file1");
+        load("file1", "q");
+        load("file2", "q");
+        load(null, "q");
+
+        // Assert: file1 и выборка по всем файлам загружены заново, file2 - из кэша
+        assertEquals(5, loads.get());
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void invalidateEntries_ShouldResolveFileFromEntryId() {
+        // Arrange
+        load("file1", "q");
+        load("file2", "q");
+
+        // Act
+        cache.invalidateEntries(List.of("file1:10", "file1:11"));
+        load("file1", "q");
+        load("file2", "q");
+
+        // Assert
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void get_WhileFileIsWriting_ShouldNotCache() {
+        // Arrange
+        cache.startWriting("file1");
+
+        // Act
+        load("file1", "q");
+        load("file1", "q");
+        load(null, "q");
+        load("file2", "q");
+        load("file2", "q");
+        cache.finishWriting("file1");
+        load("file1", "q");
+        load("file1", "q");
+
+        // Assert: во время загрузки file1 не кэшируется ни он, ни выборка по всем файлам
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    void get_InvalidatedDuringLoad_ShouldNotCacheStaleResult() {
+        // Act
+        cache.get("file1", "q", () -> {
+            cache.invalidate("file1");
+            return List.of(entry("a"));
+        }, Function.identity());
+        load("file1", "q");
+
+        // Assert: первый результат не закэширован, второй запрос снова загружает
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void get_OverMaxBytes_ShouldEvictLeastRecentlyUsed() {
+        // Arrange: три результата по ~1 КБ при пределе на два
+        long resultSize = QueryResultCache.RESULT_OVERHEAD + QueryResultCache.estimateSize(List.of(entry("x".repeat(300))));
+        ReflectionTestUtils.setField(cache, "maxBytes", resultSize * 2);
+        load("file1", "a");
+        load("file1", "b");
+        load("file1", "a");
+
+        // Act
+        load("file1", "c");
+        load("file1", "a");
+        load("file1", "b");
+
+        // Assert: вытеснен b, давно не запрошенный
+        assertEquals(4, loads.get());
+        assertTrue(cache.stats().evictions() >= 1);
+        assertTrue(cache.stats().weightBytes() <= resultSize * 2);
+    }
+
+    @Test
+    void get_OverMaxEntries_ShouldEvict() {
+        // Arrange
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+
+        // Act
+        load("file1", "a");
+        load("file1", "b");
+        load("file1", "c");
+
+        // Assert
+        assertEquals(2, cache.stats().entries());
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void get_Disabled_ShouldAlwaysLoad() {
+        // Arrange
+        ReflectionTestUtils.setField(cache, "enabled", false);
+
+        // Act
+        load("file1", "q");
+        load("file1", "q");
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void filtersKey_EquivalentFilters_ShouldMatch() {
+        // Arrange
+        SearchFilters first = new SearchFilters();
+        first.setLevel(LogLevel.ERROR);
+        first.setFreeText("");
+        first.setExcludeTemplateIds(List.of("t2", "t1"));
+        first.setSortDirection(Sort.Direction.ASC);
+        first.setLogFileId("file1");
+
+        SearchFilters second = new SearchFilters();
+        second.setLevel(LogLevel.ERROR);
+        second.setExcludeTemplateIds(List.of("t1", "t2"));
+        second.setOnlyUnread(null);
+
+        SearchFilters otherPage = new SearchFilters();
+        otherPage.setLevel(LogLevel.ERROR);
+        otherPage.setExcludeTemplateIds(List.of("t1", "t2"));
+        otherPage.setPage(1);
+
+        // Assert
+        assertEquals(QueryResultCache.filtersKey(first), QueryResultCache.filtersKey(second));
+        assertNotEquals(QueryResultCache.filtersKey(first), QueryResultCache.filtersKey(otherPage));
+    }
+
+    private List<LogEntry> load(String logFileId, String query) {
+        return cache.get(logFileId, query, () -> {
+            loads.incrementAndGet();
+            return List.of(entry("x".repeat(300)));
+        }, Function.identity());
+    }
+
+    private LogEntry entry(String message) {
+        LogEntry entry = new LogEntry();
+        entry.setId("file1:" + loads.get());
+        entry.setMessage(message);
+        return entry;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawJsonMappingTest {
+
+    @Test
+    void mapping_ShouldBeDetectedAsSameStrategy() {
+        for (RawJsonMapping strategy : RawJsonMapping.values()) {
+            // Act
+            Map<String, Object> property = strategy.mapping(List.of("tf_rpc"));
+
+            // Assert
+            assertEquals(strategy, RawJsonMapping.detect(property), strategy.configName());
+        }
+    }
+
+    @Test
+    void mapping_WithPromotedKeys_ShouldMapOnlyThemAsKeyword() {
+        // Act
+        Map<String, Object> property = RawJsonMapping.PROMOTED.mapping(List.of("tf_rpc", "tf_req_id"));
+
+        // Assert
+        assertEquals(false, property.get("dynamic"));
+        Map<?, ?> properties = (Map<?, ?>) property.get("properties");
+        assertEquals(List.of("tf_rpc", "tf_req_id"), List.copyOf(properties.keySet()));
+        assertEquals("keyword", ((Map<?, ?>) properties.get("tf_rpc")).get("type"));
+    }
+
+    @Test
+    void detect_WithDynamicObjectFromOlderVersions_ShouldReturnObject() {
+        // Arrange: так выглядит rawJson в индексе, созданном по @Field(type = Object) после загрузки
+        Map<String, Object> legacy = Map.of("properties", Map.of(
+                "@message", Map.of("type", "text", "fields", Map.of("keyword", Map.of("type", "keyword")))));
+
+        // Act & Assert
+        assertEquals(RawJsonMapping.OBJECT, RawJsonMapping.detect(legacy));
+        assertEquals(RawJsonMapping.OBJECT, RawJsonMapping.detect(null));
+        assertEquals(RawJsonMapping.DISABLED, RawJsonMapping.detect(Map.of("type", "object", "enabled", "false")));
+    }
+
+    @Test
+    void fromConfig_ShouldIgnoreCaseAndRejectUnknown() {
+        assertEquals(RawJsonMapping.FLATTENED, RawJsonMapping.fromConfig(" Flattened "));
+        assertEquals(RawJsonMapping.DISABLED, RawJsonMapping.fromConfig("disabled"));
+        assertThrows(IllegalArgumentException.class, () -> RawJsonMapping.fromConfig("nested"));
+    }
+}
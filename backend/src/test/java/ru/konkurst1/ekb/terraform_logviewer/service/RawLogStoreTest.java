@@ -0,0 +1,113 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawLogStoreTest {
+
+    private final RawLogStore rawLogStore = new RawLogStore();
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        directory = Files.createTempDirectory("raw-store");
+        ReflectionTestUtils.setField(rawLogStore, "directory", directory.toString());
+        // Блоки меньше кусков, чтобы контекст захватывал границы и блоков, и кусков
+        ReflectionTestUtils.setField(rawLogStore, "blockSize", 64);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void readContext_ShouldReturnLinesAroundEntryWithOffsets() throws Exception {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            lines.add("{\"@message\":\"line " + i + "\",\"pad\":\"" + "x".repeat(i % 37) + "\"}");
+        }
+        String content = String.join("\n", lines); // последняя строка без перевода строки
+        store("file-1", content, 150);
+
+        // Act
+        List<RawLogStore.RawLine> middle = rawLogStore.readContext("file-1", 100, 3, 2).orElseThrow();
+        List<RawLogStore.RawLine> head = rawLogStore.readContext("file-1", 2, 5, 1).orElseThrow();
+        List<RawLogStore.RawLine> tail = rawLogStore.readContext("file-1", 199, 1, 10).orElseThrow();
+
+        // Assert
+        assertEquals(List.of(97L, 98L, 99L, 100L, 101L, 102L), middle.stream().map(RawLogStore.RawLine::lineNumber).toList());
+        for (RawLogStore.RawLine line : middle) {
+            int index = (int) line.lineNumber() - 1;
+            assertEquals(lines.get(index), line.text());
+            assertEquals(content.indexOf(lines.get(index) + (index == 199 ? "" : "\n")), line.byteOffset());
+        }
+        assertEquals(List.of(1L, 2L, 3L), head.stream().map(RawLogStore.RawLine::lineNumber).toList());
+        assertEquals(List.of(198L, 199L, 200L), tail.stream().map(RawLogStore.RawLine::lineNumber).toList());
+        assertEquals(lines.get(199), tail.get(2).text());
+        assertTrue(rawLogStore.readContext("file-1", 201, 1, 1).isEmpty());
+        assertTrue(rawLogStore.readContext("missing", 1, 1, 1).isEmpty());
+    }
+
+    @Test
+    void openWriter_ForSameFile_ShouldReplacePreviousContent() throws Exception {
+        // Arrange
+        store("file-1", "old 1\r\nold 2\r\nold 3\r\n", 8);
+
+        // Act
+        String before = rawLogStore.readContext("file-1", 2, 0, 0).orElseThrow().get(0).text();
+        store("file-1", "new 1\n", 8);
+        List<RawLogStore.RawLine> after = rawLogStore.readContext("file-1", 1, 0, 5).orElseThrow();
+
+        // Assert
+        assertEquals("old 2", before);
+        assertEquals(1, after.size());
+        assertEquals("new 1", after.get(0).text());
+        assertTrue(rawLogStore.readContext("file-1", 2, 0, 0).isEmpty());
+    }
+
+    @Test
+    void delete_ShouldRemoveStoredFile() throws Exception {
+        // Arrange
+        store("file-1", "line 1\nline 2\n", 1024);
+
+        // Act
+        rawLogStore.delete("file-1");
+
+        // Assert
+        assertTrue(rawLogStore.readContext("file-1", 1, 0, 0).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> rawLogStore.delete("../file-1"));
+    }
+
+    // Кусками, как в конвейере: номер первой строки куска - число уже прочитанных строк + 1
+    private void store(String logFileId, String content, int chunkSize) throws Exception {
+        LogChunkReader reader = new LogChunkReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), chunkSize);
+        long linesRead = 0;
+        try (RawLogStore.Writer writer = rawLogStore.openWriter(logFileId)) {
+            LogChunk chunk;
+            while ((chunk = reader.next()) != null) {
+                writer.append(chunk, linesRead + 1);
+                String text = StandardCharsets.UTF_8.decode(chunk.data().duplicate()).toString();
+                linesRead += text.chars().filter(c -> c == '\n').count() + (text.endsWith("\n") ? 0 : 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestChainCorrelatorTest {
+
+    private static final Instant START = Instant.parse("2025-09-09T12:00:00Z");
+
+    private final RequestChainCorrelator correlator =
+            new RequestChainCorrelator(Duration.ofMinutes(1), Duration.ofSeconds(1), 2, 100);
+
+    @Test
+    void accept_WithChainAcrossBatches_ShouldUpdateIndexedEntries() {
+        // Arrange
+        LogEntry request = createEntry(1, "req-1", "INFO", 0);
+        request.setRequestType("request");
+        LogEntry response = createResponse(2, "req-1", 250, 240L);
+        LogEntry served = createEntry(3, "req-1", "INFO", 260);
+        LogEntry next = createEntry(4, null, "INFO", 5000);
+
+        // Act
+        List<ChainUpdate> first = correlator.accept(List.of(request));
+        List<ChainUpdate> second = correlator.accept(List.of(response, served, next));
+
+        // Assert
+        assertTrue(first.isEmpty());
+        assertNull(request.getRequestStatus());
+        // Длительность из tf_req_duration_ms провайдера, а не по границам цепочки
+        assertEquals(List.of(new ChainUpdate("f:1", 240L, "success", true, 0, 0)), second);
+        assertEquals(240L, served.getRequestDurationMs());
+        assertEquals(0, served.getDiagnosticErrorCount());
+        assertEquals("success", response.getRequestStatus());
+        assertEquals(0, correlator.openChainCount());
+    }
+
+    @Test
+    void accept_WithDiagnosticAfterResponse_ShouldCountItWithinGrace() {
+        // Arrange
+        LogEntry response = createEntry(1, "req-1", "INFO", 0);
+        response.setRequestType("response");
+        LogEntry diagnostic = createEntry(2, "req-1", "ERROR", 10);
+        LogEntry late = createEntry(3, "req-1", "INFO", 5000);
+
+        // Act
+        correlator.acceptLast(List.of(response, diagnostic, late));
+
+        // Assert
+        assertEquals("failed", response.getRequestStatus());
+        assertEquals(10L, response.getRequestDurationMs());
+        // Запись после окончания ожидания получает уже закрытый итог
+        assertEquals("failed", late.getRequestStatus());
+        assertEquals(10L, late.getRequestDurationMs());
+        assertTrue(late.getIsPartOfRequestChain());
+    }
+
+    @Test
+    void chainStats_ShouldSummarizeClosedChains() {
+        // Arrange
+        LogEntry response = createResponse(1, "req-1", 0, 240L);
+        LogEntry failed = createEntry(2, "req-2", "ERROR", 10);
+        LogEntry failedTail = createEntry(3, "req-2", "INFO", 70);
+        LogEntry single = createEntry(4, "req-3", "INFO", 80);
+
+        // Act
+        correlator.accept(List.of(response, failed, failedTail, single));
+        correlator.finish();
+        RequestChainCorrelator.ChainStats stats = correlator.chainStats();
+
+        // Assert
+        assertEquals(3, stats.chains());
+        assertEquals(1, stats.failedChains());
+        assertEquals(0, stats.warningChains());
+        // Одиночная запись без ответа длительности не имеет
+        assertEquals(2, stats.timedChains());
+        assertEquals(150, stats.avgDurationMs());
+        assertEquals(240, stats.maxDurationMs());
+    }
+
+    @Test
+    void accept_WithTooManyOpenChains_ShouldCloseLeastRecentlyUpdated() {
+        // Arrange
+        LogEntry first = createEntry(1, "req-1", "WARN", 0);
+        LogEntry second = createEntry(2, "req-2", "INFO", 1);
+        LogEntry third = createEntry(3, "req-3", "INFO", 2);
+
+        // Act
+        correlator.accept(List.of(first, second, third));
+
+        // Assert
+        assertEquals(2, correlator.openChainCount());
+        assertEquals("warning", first.getRequestStatus());
+        assertFalse(first.getIsPartOfRequestChain());
+        assertNull(second.getRequestStatus());
+    }
+
+    @Test
+    void accept_WithIdleChain_ShouldCloseItByLogTime() {
+        // Arrange
+        LogEntry request = createEntry(1, "req-1", "INFO", 0);
+        LogEntry other = createEntry(2, "req-2", "INFO", 30_000);
+        LogEntry later = createEntry(3, "req-2", "INFO", 90_000);
+
+        // Act
+        correlator.accept(List.of(request, other));
+        List<ChainUpdate> updates = correlator.accept(List.of(later));
+
+        // Assert
+        assertEquals(List.of(new ChainUpdate("f:1", null, "success", false, null, null)), updates);
+        assertEquals(1, correlator.openChainCount());
+        assertEquals(List.of(
+                new ChainUpdate("f:2", 60_000L, "success", true, null, null),
+                new ChainUpdate("f:3", 60_000L, "success", true, null, null)), correlator.finish());
+    }
+
+    @Test
+    void accept_WithEntryAfterIdleClose_ShouldMarkEarlierEntryAsChain() {
+        // Arrange
+        LogEntry request = createEntry(1, "req-1", "INFO", 0);
+        LogEntry other = createEntry(2, null, "INFO", 90_000);
+        LogEntry late = createEntry(3, "req-1", "INFO", 95_000);
+
+        // Act
+        correlator.accept(List.of(request));
+        List<ChainUpdate> closed = correlator.accept(List.of(other));
+        List<ChainUpdate> updates = correlator.accept(List.of(late));
+
+        // Assert
+        assertEquals(List.of(new ChainUpdate("f:1", null, "success", false, null, null)), closed);
+        // Цепочка не открывается заново, но первая запись больше не одиночная
+        assertEquals(List.of(new ChainUpdate("f:1", null, "success", true, null, null)), updates);
+        assertTrue(late.getIsPartOfRequestChain());
+        assertEquals(0, correlator.openChainCount());
+        assertTrue(correlator.accept(List.of(createEntry(4, "req-1", "INFO", 96_000))).isEmpty());
+        assertEquals(1, correlator.chainStats().chains());
+    }
+
+    @Test
+    void acceptLast_WithoutProviderDuration_ShouldPairRequestAndResponse() {
+        // Arrange
+        LogEntry found = createEntry(1, "req-1", "DEBUG", 0);
+        LogEntry request = createEntry(2, "req-1", "TRACE", 100);
+        request.setRequestType("request");
+        LogEntry response = createResponse(3, "req-1", 400, null);
+        response.setDiagnosticWarningCount(2);
+        LogEntry served = createEntry(4, "req-1", "TRACE", 450);
+
+        // Act
+        correlator.acceptLast(List.of(found, request, response, served));
+
+        // Assert
+        assertEquals(300L, found.getRequestDurationMs());
+        assertEquals(300L, served.getRequestDurationMs());
+        assertEquals("warning", found.getRequestStatus());
+        assertEquals(2, served.getDiagnosticWarningCount());
+    }
+
+    private LogEntry createResponse(int lineNumber, String tfReqId, long offsetMs, Long providerDurationMs) {
+        LogEntry entry = createEntry(lineNumber, tfReqId, "TRACE", offsetMs);
+        entry.setRequestType("response");
+        entry.setRequestDurationMs(providerDurationMs);
+        entry.setDiagnosticErrorCount(0);
+        entry.setDiagnosticWarningCount(0);
+        return entry;
+    }
+
+    private LogEntry createEntry(int lineNumber, String tfReqId, String level, long offsetMs) {
+        LogEntry entry = new LogEntry();
+        entry.setId("f:" + lineNumber);
+        entry.setLineNumber(lineNumber);
+        entry.setTfReqId(tfReqId);
+        entry.setLevel(level);
+        entry.setTimestamp(START.plusMillis(offsetMs));
+        entry.setRawJson(new HashMap<String, Object>());
+        return entry;
+    }
+}
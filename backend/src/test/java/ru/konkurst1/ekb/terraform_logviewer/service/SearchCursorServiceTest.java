@@ -0,0 +1,213 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.Query;
+import ru.konkurst1.ekb.terraform_logviewer.dto.CursorPage;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchCursorServiceTest {
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @InjectMocks
+    private SearchCursorService searchCursorService;
+
+    @Test
+    void page_FirstPage_ShouldOpenPointInTimeAndReturnNextCursor() {
+        // Arrange
+        IndexCoordinates index = IndexCoordinates.of("terraform_logs");
+        when(elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class)).thenReturn(index);
+        when(elasticsearchOperations.openPointInTime(eq(index), any())).thenReturn("pit-1");
+        SearchHits<LogEntry> searchHits = searchHits(3, "pit-2", 100L);
+        when(elasticsearchOperations.search(any(Query.class), eq(LogEntry.class))).thenReturn(searchHits);
+
+        // Act
+        CursorPage page = searchCursorService.page(new Criteria("logFileId").is("file"),
+                Sort.by("timestamp").ascending(), 2, null);
+
+        // Assert
+        assertEquals(List.of("1", "2"), page.content().stream().map(LogEntry::getId).toList());
+        assertEquals(100L, page.totalElements());
+        assertNull(page.prevCursor());
+        SearchCursorService.Cursor next = SearchCursorService.decode(page.nextCursor());
+        assertEquals("pit-2", next.pit());
+        assertEquals(List.of(2, 2), next.after());
+        assertFalse(next.backward());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(elasticsearchOperations).search(query.capture(), eq(LogEntry.class));
+        assertEquals(3, query.getValue().getPageable().getPageSize());
+        assertEquals("pit-1", query.getValue().getPointInTime().id());
+        assertNull(query.getValue().getSearchAfter());
+    }
+
+    @Test
+    void page_WithCursor_ShouldContinueSearchAfterWithoutOpeningPointInTime() {
+        // Arrange
+        String cursor = SearchCursorService.encode(new SearchCursorService.Cursor("pit-1", List.of(2, 2), false));
+        SearchHits<LogEntry> searchHits = searchHits(1, null, 0L);
+        when(elasticsearchOperations.search(any(Query.class), eq(LogEntry.class))).thenReturn(searchHits);
+
+        // Act
+        CursorPage page = searchCursorService.page(new Criteria(), Sort.by("timestamp").ascending(), 2, cursor);
+
+        // Assert
+        assertEquals(1, page.content().size());
+        assertNull(page.nextCursor());
+        assertNull(page.totalElements());
+        assertEquals("pit-1", SearchCursorService.decode(page.prevCursor()).pit());
+        assertTrue(SearchCursorService.decode(page.prevCursor()).backward());
+        verify(elasticsearchOperations, never()).openPointInTime(any(), any());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(elasticsearchOperations).search(query.capture(), eq(LogEntry.class));
+        assertEquals(List.of(2, 2), query.getValue().getSearchAfter());
+    }
+
+    @Test
+    void page_Backward_ShouldReverseHitsAndKeepNextCursor() {
+        // Arrange
+        String cursor = SearchCursorService.encode(new SearchCursorService.Cursor("pit-1", List.of(5, 5), true));
+        // Назад записи приходят в обратном порядке: 4, 3, 2
+        List<SearchHit<LogEntry>> hits = new ArrayList<>();
+        for (int i = 4; i >= 2; i--) {
+            hits.add(searchHit(i));
+        }
+        SearchHits<LogEntry> searchHits = mock(SearchHits.class);
+        when(searchHits.getSearchHits()).thenReturn(hits);
+        when(elasticsearchOperations.search(any(Query.class), eq(LogEntry.class))).thenReturn(searchHits);
+
+        // Act
+        CursorPage page = searchCursorService.page(new Criteria(), Sort.by("timestamp").ascending(), 2, cursor);
+
+        // Assert
+        assertEquals(List.of("3", "4"), page.content().stream().map(LogEntry::getId).toList());
+        assertEquals(List.of(4, 4), SearchCursorService.decode(page.nextCursor()).after());
+        assertEquals(List.of(3, 3), SearchCursorService.decode(page.prevCursor()).after());
+    }
+
+    @Test
+    void scan_ShouldWalkAllBatchesAndClosePointInTime() throws IOException {
+        // Arrange
+        IndexCoordinates index = IndexCoordinates.of("terraform_logs");
+        when(elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class)).thenReturn(index);
+        when(elasticsearchOperations.openPointInTime(eq(index), any())).thenReturn("pit-1");
+        SearchHits<LogEntry> firstBatch = searchHits(2, "pit-2", 0L);
+        SearchHits<LogEntry> lastBatch = searchHits(1, null, 0L);
+        when(elasticsearchOperations.search(any(Query.class), eq(LogEntry.class))).thenReturn(firstBatch, lastBatch);
+        List<String> exported = new ArrayList<>();
+
+        // Act
+        long count = searchCursorService.scan(new Criteria(), Sort.by("timestamp").ascending(), 2,
+                entry -> exported.add(entry.getId()));
+
+        // Assert
+        assertEquals(3, count);
+        assertEquals(List.of("1", "2", "1"), exported);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(elasticsearchOperations, times(2)).search(query.capture(), eq(LogEntry.class));
+        assertNull(query.getAllValues().get(0).getSearchAfter());
+        assertEquals(List.of(2, 2), query.getAllValues().get(1).getSearchAfter());
+        assertEquals("pit-2", query.getAllValues().get(1).getPointInTime().id());
+        verify(elasticsearchOperations).closePointInTime("pit-2");
+    }
+
+    @Test
+    void scan_ConsumerFails_ShouldStillClosePointInTime() {
+        // Arrange
+        IndexCoordinates index = IndexCoordinates.of("terraform_logs");
+        when(elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class)).thenReturn(index);
+        when(elasticsearchOperations.openPointInTime(eq(index), any())).thenReturn("pit-1");
+        SearchHits<LogEntry> batch = searchHits(2, null, 0L);
+        when(elasticsearchOperations.search(any(Query.class), eq(LogEntry.class))).thenReturn(batch);
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> searchCursorService.scan(new Criteria(),
+                Sort.by("timestamp").ascending(), 2, entry -> {
+                    throw new IOException("Broken pipe");
+                }));
+        verify(elasticsearchOperations).closePointInTime("pit-1");
+    }
+
+    @Test
+    void openScan_WhenFirstSearchFails_ShouldClosePointInTimeAndThrow() {
+        // Arrange
+        IndexCoordinates index = IndexCoordinates.of("terraform_logs");
+        when(elasticsearchOperations.getIndexCoordinatesFor(LogEntry.class)).thenReturn(index);
+        when(elasticsearchOperations.openPointInTime(eq(index), any())).thenReturn("pit-1");
+        when(elasticsearchOperations.search(any(Query.class), eq(LogEntry.class)))
+                .thenThrow(new IllegalStateException("all shards failed"));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> searchCursorService.openScan(new Criteria(), Sort.by("timestamp").ascending(), 2));
+        verify(elasticsearchOperations).closePointInTime("pit-1");
+    }
+
+    @Test
+    void cursorSort_ShouldAddTiebreakersAndFlipDirectionBackward() {
+        // Act
+        Sort forward = SearchCursorService.cursorSort(Sort.by("timestamp").descending(), false);
+        Sort backward = SearchCursorService.cursorSort(Sort.by("timestamp").descending(), true);
+
+        // Assert
+        assertEquals(List.of("timestamp", "lineNumber", "_shard_doc"),
+                forward.stream().map(Sort.Order::getProperty).toList());
+        assertEquals(Sort.Direction.DESC, forward.getOrderFor("timestamp").getDirection());
+        assertEquals(Sort.NullHandling.NULLS_LAST, forward.getOrderFor("timestamp").getNullHandling());
+        assertEquals(Sort.Direction.ASC, backward.getOrderFor("timestamp").getDirection());
+        assertEquals(Sort.Direction.DESC, backward.getOrderFor("lineNumber").getDirection());
+        assertEquals(Sort.NullHandling.NULLS_FIRST, backward.getOrderFor("timestamp").getNullHandling());
+    }
+
+    @Test
+    void decode_InvalidCursor_ShouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> SearchCursorService.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursorService.decode(
+                SearchCursorService.encode(new SearchCursorService.Cursor("pit", List.of(), false))));
+    }
+
+    // Записи с id 1..count, значения сортировки - (id, id)
+    @SuppressWarnings("unchecked")
+    private SearchHits<LogEntry> searchHits(int count, String pitId, long total) {
+        List<SearchHit<LogEntry>> hits = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            hits.add(searchHit(i));
+        }
+        SearchHits<LogEntry> searchHits = mock(SearchHits.class);
+        when(searchHits.getSearchHits()).thenReturn(hits);
+        lenient().when(searchHits.getPointInTimeId()).thenReturn(pitId);
+        lenient().when(searchHits.getTotalHits()).thenReturn(total);
+        return searchHits;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SearchHit<LogEntry> searchHit(int id) {
+        LogEntry entry = new LogEntry();
+        entry.setId(String.valueOf(id));
+        SearchHit<LogEntry> hit = mock(SearchHit.class);
+        lenient().when(hit.getContent()).thenReturn(entry);
+        lenient().when(hit.getSortValues()).thenReturn(List.of(id, id));
+        return hit;
+    }
+}
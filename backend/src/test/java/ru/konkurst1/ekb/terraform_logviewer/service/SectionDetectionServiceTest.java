@@ -0,0 +1,132 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectionDetectionServiceTest {
+
+    private final SectionDetectionService sectionDetectionService = new SectionDetectionService();
+
+    @Test
+    void detectSectionsFrom_WithDefaultRules_ShouldMatchHardcodedHeuristics() {
+        // Arrange
+        String[] fragments = {
+                "backend/local: starting Plan operation", "backend/local: starting Apply operation",
+                "Terraform will perform the following actions", "TERRAFORM PLAN", "Terraform Apply",
+                "Applying...", "Apply complete!", "Plan:", "complete!", "plan", "apply", "Complete", " ", "x"
+        };
+        Random random = new Random(42);
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            StringBuilder message = new StringBuilder();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                message.append(fragments[random.nextInt(fragments.length)]).append(' ');
+            }
+            entries.add(createEntry(i % 50 == 0 ? null : message.toString()));
+        }
+
+        // Act
+        sectionDetectionService.detectSectionsFrom(entries, SectionDetectionService.INITIAL_SECTION);
+
+        // Assert
+        String expected = SectionDetectionService.INITIAL_SECTION;
+        for (LogEntry entry : entries) {
+            expected = legacyDetectSection(entry.getMessage(), expected);
+            assertEquals(expected, entry.getSection(), entry.getMessage());
+        }
+    }
+
+    @Test
+    void updateRules_ShouldApplyNewMarkersWithRulePriority() {
+        // Arrange
+        sectionDetectionService.updateRules(List.of(
+                new SectionRule("refresh", List.of("Refreshing state..."), false),
+                new SectionRule("init", List.of("terraform init"), true),
+                new SectionRule("other", List.of("state"), false)));
+        List<LogEntry> entries = List.of(
+                createEntry("Terraform Init started"),
+                createEntry("t1_vpc.main: Refreshing state... [id=1]"),
+                createEntry("saving state"),
+                createEntry("nothing here"));
+
+        // Act
+        String lastSection = sectionDetectionService.detectSectionsFrom(entries, "plan");
+
+        // Assert
+        assertEquals("init", entries.get(0).getSection());
+        // Совпали оба правила, выигрывает первое
+        assertEquals("refresh", entries.get(1).getSection());
+        assertEquals("other", entries.get(2).getSection());
+        assertEquals("other", lastSection);
+    }
+
+    @Test
+    void updateRules_WithInvalidRule_ShouldKeepPreviousRules() {
+        // Arrange
+        List<SectionRule> before = sectionDetectionService.getRules();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> sectionDetectionService.updateRules(
+                List.of(new SectionRule("plan", List.of(), false))));
+        assertThrows(IllegalArgumentException.class, () -> sectionDetectionService.updateRules(
+                List.of(new SectionRule("plan", List.of("План"), true))));
+        assertEquals(before, sectionDetectionService.getRules());
+    }
+
+    @Test
+    void reloadRules_ShouldReadConfiguredFile() throws Exception {
+        // Arrange
+        Path rulesFile = Files.createTempFile("section-rules", ".json");
+        try {
+            Files.writeString(rulesFile, "[{\"section\":\"destroy\",\"markers\":[\"starting Destroy\"]}]");
+            ReflectionTestUtils.setField(sectionDetectionService, "rulesFile", rulesFile.toString());
+            List<LogEntry> entries = List.of(createEntry("backend/local: starting Destroy operation"));
+
+            // Act
+            List<SectionRule> rules = sectionDetectionService.reloadRules();
+            sectionDetectionService.detectSectionsFrom(entries, SectionDetectionService.INITIAL_SECTION);
+
+            // Assert
+            assertEquals(List.of(new SectionRule("destroy", List.of("starting Destroy"), false)), rules);
+            assertEquals("destroy", entries.get(0).getSection());
+        } finally {
+            Files.deleteIfExists(rulesFile);
+        }
+    }
+
+    // Прежняя захардкоженная цепочка contains, правила по умолчанию должны давать тот же результат
+    private static String legacyDetectSection(String message, String currentSection) {
+        if (message == null) return currentSection;
+        if (message.contains("backend/local: starting Plan operation") ||
+                message.contains("Terraform will perform the following actions") ||
+                message.toLowerCase().contains("terraform plan")) {
+            return "plan";
+        }
+        if (message.contains("backend/local: starting Apply operation") ||
+                message.contains("Applying...") ||
+                message.toLowerCase().contains("terraform apply")) {
+            return "apply";
+        }
+        if (message.contains("Apply complete!") ||
+                message.contains("Plan:") ||
+                message.contains("complete!")) {
+            return "other";
+        }
+        return currentSection;
+    }
+
+    private LogEntry createEntry(String message) {
+        LogEntry entry = new LogEntry();
+        entry.setMessage(message);
+        return entry;
+    }
+}
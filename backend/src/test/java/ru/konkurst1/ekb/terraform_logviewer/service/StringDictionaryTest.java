@@ -0,0 +1,95 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDictionaryTest {
+
+    @Test
+    void intern_WithSameChars_ShouldReturnSameInstance() {
+        // Arrange
+        StringDictionary dictionary = new StringDictionary(16, 64);
+        char[] buffer = "xx sdk.proto yy".toCharArray();
+
+        // Act
+        String first = dictionary.intern(buffer, 3, 9);
+        String second = dictionary.intern("sdk.proto".toCharArray(), 0, 9);
+        String third = dictionary.intern(new String("sdk.proto"));
+
+        // Assert
+        assertEquals("sdk.proto", first);
+        assertSame(first, second);
+        assertSame(first, third);
+        StringDictionary.Stats stats = dictionary.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.size());
+        assertEquals(2.0 / 3, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    void intern_WhenFullOrTooLong_ShouldBypassDictionary() {
+        // Arrange
+        StringDictionary dictionary = new StringDictionary(2, 8);
+
+        // Act
+        dictionary.intern("a");
+        dictionary.intern("b");
+        String overflow = dictionary.intern("c".toCharArray(), 0, 1);
+        String longValue = dictionary.intern("long value".toCharArray(), 0, 10);
+
+        // Assert
+        assertEquals("c", overflow);
+        assertNotSame(overflow, dictionary.intern("c".toCharArray(), 0, 1));
+        assertEquals("long value", longValue);
+        StringDictionary.Stats stats = dictionary.drainStats();
+        assertEquals(3, stats.bypassed());
+        assertEquals(2, stats.size());
+        // Счётчики сбрасываются, содержимое словаря остаётся
+        assertEquals(0, dictionary.stats().lookups());
+        assertEquals(2, dictionary.stats().size());
+    }
+
+    @Test
+    void intern_FromManyThreads_ShouldKeepOneInstancePerValue() throws Exception {
+        // Arrange
+        StringDictionary dictionary = new StringDictionary(1024, 64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // Множество по ссылкам: два разных экземпляра одного значения посчитаются дважды
+        Set<String> seen = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        try {
+            // Act
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        char[] value = ("module-" + (i % 100)).toCharArray();
+                        String interned = dictionary.intern(value, 0, value.length);
+                        seen.add(interned);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Assert
+        assertEquals(100, dictionary.stats().size());
+        assertEquals(100, seen.size());
+        assertEquals(80_000, dictionary.stats().lookups());
+    }
+}
@@ -0,0 +1,121 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateMinerTest {
+
+    private final TemplateMiner miner = new TemplateMiner(4, 0.4, 100, 1000, 80, 3);
+
+    @Test
+    void match_WithVaryingParameters_ShouldGroupIntoOneTemplate() {
+        // Act
+        String first = miner.match("Found resource type t1_vpc_network");
+        String second = miner.match("Found resource type t1_compute_instance");
+        String third = miner.match("Found resource type t1_vpc_subnet");
+        String other = miner.match("backend/local: starting Plan operation");
+
+        // Assert
+        assertEquals(first, second);
+        assertEquals(first, third);
+        assertNotEquals(first, other);
+        TemplateMiner.Template template = miner.get(first);
+        assertEquals("Found resource type <*>", template.text());
+        assertEquals(List.of(List.of("t1_vpc_network", "t1_compute_instance", "t1_vpc_subnet")), template.parameterSamples());
+        assertEquals(2, miner.clusterCount());
+    }
+
+    @Test
+    void match_ShouldKeepIdStableWhenTemplateGeneralizes() {
+        // Arrange
+        String id = miner.match("Initializing provider plugin hashicorp/aws");
+        TemplateMiner other = new TemplateMiner(4, 0.4, 100, 1000, 80, 3);
+
+        // Act
+        String sameId = miner.match("Initializing provider plugin hashicorp/random");
+        // Другой экземпляр (другой файл, перезапуск) с тем же первым сообщением даёт тот же id
+        String otherId = other.match("Initializing provider plugin hashicorp/aws");
+
+        // Assert
+        assertEquals(id, sameId);
+        assertEquals(id, otherId);
+        assertEquals("Initializing provider plugin <*>", miner.get(id).text());
+        assertEquals(List.of(List.of("hashicorp/aws", "hashicorp/random")), miner.get(id).parameterSamples());
+    }
+
+    @Test
+    void restore_WithMessagesInDifferentOrder_ShouldKeepTemplateIds() {
+        // Arrange
+        List<String> messages = List.of(
+                "Initializing provider plugin hashicorp/aws",
+                "Initializing provider plugin hashicorp/random",
+                "Found resource type t1_vpc_network",
+                "Found resource type t1_compute_instance");
+        List<String> ids = new ArrayList<>();
+        for (String message : messages) {
+            ids.add(miner.match(message));
+        }
+        // Перезапуск: новый майнер получает сохранённые шаблоны и те же сообщения в обратном порядке
+        TemplateMiner restarted = new TemplateMiner(4, 0.4, 100, 1000, 80, 3);
+        miner.drainChanged().forEach(restarted::restore);
+
+        // Act
+        List<String> restartedIds = new ArrayList<>();
+        for (String message : messages.reversed()) {
+            restartedIds.add(restarted.match(message));
+        }
+
+        // Assert
+        assertEquals(ids.reversed(), restartedIds);
+        assertEquals(2, restarted.clusterCount());
+        assertEquals("Initializing provider plugin <*>", restarted.get(ids.get(0)).text());
+        assertEquals(List.of(List.of("hashicorp/aws", "hashicorp/random")), restarted.get(ids.get(0)).parameterSamples());
+        assertTrue(restarted.drainChanged().isEmpty());
+    }
+
+    @Test
+    void drainChanged_ShouldReturnOnlyNewOrGeneralizedTemplates() {
+        // Arrange
+        List<LogEntry> entries = new ArrayList<>();
+        for (String message : List.of("Apply complete! Resources: 1 added", "Apply complete! Resources: 2 added")) {
+            LogEntry entry = new LogEntry();
+            entry.setMessage(message);
+            entries.add(entry);
+        }
+
+        // Act
+        miner.assignTemplates(entries);
+        List<TemplateMiner.Template> changed = miner.drainChanged();
+        miner.match("Apply complete! Resources: 2 added");
+        List<TemplateMiner.Template> unchanged = miner.drainChanged();
+
+        // Assert
+        assertEquals(entries.get(0).getTemplateId(), entries.get(1).getTemplateId());
+        assertEquals(1, changed.size());
+        assertEquals("Apply complete! Resources: <*> added", changed.get(0).text());
+        assertTrue(unchanged.isEmpty());
+    }
+
+    @Test
+    void match_ShouldStayWithinClusterAndTokenLimits() {
+        // Arrange
+        TemplateMiner bounded = new TemplateMiner(4, 0.9, 2, 10, 5, 1);
+
+        // Act
+        for (int i = 0; i < 1_000; i++) {
+            bounded.match("word" + (char) ('a' + i % 26) + " unique" + (char) ('a' + i / 26 % 26) + " x y z");
+        }
+        String longId = bounded.match("a b c d e f g h i j");
+        String emptyId = bounded.match(null);
+
+        // Assert
+        assertTrue(bounded.clusterCount() <= 10);
+        assertEquals("a b c d <*>", bounded.get(longId).text());
+        assertEquals("", bounded.get(emptyId).text());
+    }
+}
@@ -0,0 +1,82 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+import ru.konkurst1.ekb.terraform_logviewer.model.LogEntry;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerraformContextEnricherTest {
+
+    private final TerraformContextEnricher enricher = new TerraformContextEnricher();
+
+    @Test
+    void enrichWithTerraformContext_ShouldFillTypedFields() {
+        // Arrange
+        LogEntry request = createEntry("req-1", "INFO", "aws_instance: Creating...", "2025-09-09T12:00:00Z");
+        request.setTfResourceType("yandex_compute_instance");
+        LogEntry response = createEntry("req-1", "ERROR", "apply failed", "2025-09-09T12:00:01.250Z");
+        LogEntry single = createEntry(null, "WARN", "deprecated argument", "2025-09-09T12:00:02Z");
+
+        // Act
+        enricher.enrichWithTerraformContext(List.of(request, response, single));
+
+        // Assert
+        assertEquals("create", request.getOperationType());
+        assertEquals(1 + 2, request.getSeverityScore());
+        assertEquals(10 + 3, response.getSeverityScore());
+        assertEquals(1250L, request.getRequestDurationMs());
+        assertEquals(1250L, response.getRequestDurationMs());
+        assertEquals("failed", request.getRequestStatus());
+        assertTrue(response.getIsPartOfRequestChain());
+
+        assertNull(single.getOperationType());
+        assertNull(single.getRequestDurationMs());
+        assertNull(single.getRequestStatus());
+        assertFalse(single.getIsPartOfRequestChain());
+        assertEquals(5, single.getSeverityScore());
+    }
+
+    @Test
+    void enrichWithTerraformContext_ShouldNotWriteIntoRawJson() {
+        // Arrange
+        LogEntry entry = createEntry("req-2", "INFO", "Reading data source", "2025-09-09T12:00:00Z");
+
+        // Act
+        enricher.enrichWithTerraformContext(List.of(entry));
+
+        // Assert
+        assertTrue(((Map<?, ?>) entry.getRawJson()).isEmpty());
+        assertEquals("success", entry.getRequestStatus());
+        assertFalse(entry.getIsPartOfRequestChain());
+    }
+
+    @Test
+    void enrichWithTerraformContext_WithMissingLevelAndTimestamp_ShouldNotFail() {
+        // Arrange
+        LogEntry first = createEntry("req-3", null, null, null);
+        LogEntry second = createEntry("req-3", null, "done", "2025-09-09T12:00:00Z");
+
+        // Act
+        enricher.enrichWithTerraformContext(List.of(first, second));
+
+        // Assert
+        assertEquals(0, first.getSeverityScore());
+        assertNull(first.getRequestDurationMs());
+        assertEquals("success", second.getRequestStatus());
+    }
+
+    private LogEntry createEntry(String tfReqId, String level, String message, String timestamp) {
+        LogEntry entry = new LogEntry();
+        entry.setTfReqId(tfReqId);
+        entry.setLevel(level);
+        entry.setMessage(message);
+        entry.setTimestamp(timestamp != null ? Instant.parse(timestamp) : null);
+        entry.setRawJson(new HashMap<String, Object>());
+        return entry;
+    }
+}
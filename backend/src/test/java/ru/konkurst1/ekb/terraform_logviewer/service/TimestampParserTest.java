@@ -0,0 +1,73 @@
+package ru.konkurst1.ekb.terraform_logviewer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimestampParserTest {
+
+    @Test
+    void parse_WithTerraformOffset_ShouldKeepMicroseconds() {
+        // Act
+        Instant instant = TimestampParser.parse("2025-09-09T15:47:33.319437+03:00");
+
+        // Assert
+        assertEquals(Instant.parse("2025-09-09T12:47:33.319437Z"), instant);
+    }
+
+    @Test
+    void parse_WithDifferentOffsets_ShouldApplyThem() {
+        // Act & Assert
+        assertEquals(Instant.parse("2025-01-01T00:00:00Z"), TimestampParser.parse("2025-01-01T00:00:00Z"));
+        assertEquals(Instant.parse("2025-01-01T05:30:00Z"), TimestampParser.parse("2024-12-31T23:00:00-06:30"));
+        assertEquals(Instant.parse("2024-02-28T22:00:00.5Z"), TimestampParser.parse("2024-02-29T01:00:00.5+03:00"));
+    }
+
+    @Test
+    void parse_FromBytes_ShouldMatchCharInput() {
+        // Arrange
+        byte[] line = "{\"@timestamp\":\"2025-09-09T15:47:33.319437+03:00\"}".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        Instant instant = TimestampParser.parse(line, 15, 32);
+
+        // Assert
+        assertEquals(TimestampParser.parse("2025-09-09T15:47:33.319437+03:00"), instant);
+    }
+
+    @Test
+    void parse_WithRandomTimestamps_ShouldMatchJavaTime() {
+        // Arrange
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            long epochSecond = random.nextLong(-62_135_596_800L, 253_402_300_799L);
+            int nano = random.nextInt(1_000_000_000);
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds(random.nextInt(-18 * 60, 18 * 60 + 1) * 60);
+            String text = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                    OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), offset));
+
+            // Act & Assert
+            assertEquals(OffsetDateTime.parse(text).toInstant(), TimestampParser.parse(text), text);
+        }
+    }
+
+    @Test
+    void parse_WithInvalidInput_ShouldThrow() {
+        // Act & Assert
+        assertThrows(DateTimeParseException.class, () -> TimestampParser.parse("2025-09-09 15:47:33"));
+        assertThrows(DateTimeParseException.class, () -> TimestampParser.parse("2025-02-30T10:00:00Z"));
+        assertThrows(DateTimeParseException.class, () -> TimestampParser.parse("2025-09-09T15:47:33.+03:00"));
+        assertThrows(DateTimeParseException.class, () -> TimestampParser.parse("2025-09-09T15:47:33+0300"));
+        assertThrows(DateTimeParseException.class, () -> TimestampParser.parse("2025-09-09T15:47:33Zjunk"));
+        assertThrows(DateTimeParseException.class, () -> TimestampParser.parse("not a timestamp at all"));
+    }
+}
@@ -1,5 +1,5 @@
 import React, { useState, useMemo } from 'react';
-import { Container, Row, Col, Button, Navbar, Nav } from 'react-bootstrap';
+import { Container, Row, Col, Button, Navbar, Nav, Form } from 'react-bootstrap';
 import 'bootstrap/dist/css/bootstrap.min.css';
 import './App.css';
 import LogUpload from './components/LogUpload.tsx';
@@ -38,12 +38,12 @@ const AppContent: React.FC = () => {
     loadPage(page);
   };
 
-  const loadPage = async (page: number) => {
-    if (!logData?.logFileId) return;
+  const loadPage = async (page: number, logFileId = logData?.logFileId) => {
+    if (!logFileId) return;
 
     try {
       const response = await fetch(
-        `http://localhost:8080/api/logs/entries?logFileId=${logData.logFileId}&page=${page}&size=50`
+        `http://localhost:8080/api/logs/entries?logFileId=${logFileId}&page=${page}&size=50`
       );
       if (response.ok) {
         const data = await response.json();
@@ -60,12 +60,26 @@ const AppContent: React.FC = () => {
 
   const handleLogsParsed = (data: LogResponse) => {
     console.log('Raw data received from backend:', data);
-    setLogData(data);
+    // У архива записи лежат под logFileId его файлов: открываем первый загруженный
+    const archiveFile = data.files?.find(file => file.state === 'COMPLETED' && file.entriesProcessed > 0)
+      || data.files?.[0];
+    const logFileId = archiveFile ? archiveFile.logFileId : data.logFileId;
+    // Ответ загрузки содержит только итог, записи берём постранично
+    setLogData({ ...data, logFileId, entries: [] });
     setSearchResults([]);
     setIsSearchActive(false);
     setSelectedSection('all');
     setSelectedLevel('');
     setCurrentPage(0);
+    loadPage(0, logFileId);
+  };
+
+  const handleArchiveFileChange = (logFileId: string) => {
+    setLogData(prev => prev ? { ...prev, logFileId, entries: [] } : null);
+    setSearchResults([]);
+    setIsSearchActive(false);
+    setCurrentPage(0);
+    loadPage(0, logFileId);
   };
 
   const handleSearch = (filters: SearchFilters, results: LogEntry[]) => {
@@ -121,6 +135,19 @@ const AppContent: React.FC = () => {
 
             {logData && (
               <>
+                {logData.files && logData.files.length > 1 && (
+                  <Form.Select
+                    className="mb-3"
+                    value={logData.logFileId}
+                    onChange={event => handleArchiveFileChange(event.target.value)}
+                  >
+                    {logData.files.map(file => (
+                      <option key={file.logFileId} value={file.logFileId}>
+                        {file.source} ({file.state}, {file.entriesProcessed} entries)
+                      </option>
+                    ))}
+                  </Form.Select>
+                )}
                 <StatsPanel stats={logData.stats} />
                 <TimelineVisualization
                   entries={logData.entries}
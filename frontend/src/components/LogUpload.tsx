@@ -5,6 +5,35 @@ interface LogUploadProps {
   onLogsParsed: (data: any) => void;
 }
 
+const JOB_POLL_INTERVAL_MS = 1000;
+
+const waitForJobResult = async (jobId: string) => {
+  while (true) {
+    const statusResponse = await fetch(`http://localhost:8080/api/logs/jobs/${jobId}`);
+    if (!statusResponse.ok) {
+      throw new Error(`Job status failed: ${statusResponse.status}`);
+    }
+    const status = await statusResponse.json();
+    if (['COMPLETED', 'FAILED', 'CANCELLED'].includes(status.state)) {
+      const resultResponse = await fetch(`http://localhost:8080/api/logs/jobs/${jobId}/result`);
+      if (!resultResponse.ok) {
+        throw new Error(`Job result failed: ${resultResponse.status}`);
+      }
+      return resultResponse.json();
+    }
+    await new Promise(resolve => setTimeout(resolve, JOB_POLL_INTERVAL_MS));
+  }
+};
+
+// Сервер описывает ошибку в поле error тела ответа
+const errorReason = (body: string): string | undefined => {
+  try {
+    return JSON.parse(body).error;
+  } catch {
+    return undefined;
+  }
+};
+
 const LogUpload: React.FC<LogUploadProps> = ({ onLogsParsed }) => {
   const [isUploading, setIsUploading] = useState(false);
   const [error, setError] = useState<string>('');
@@ -37,18 +66,24 @@ const LogUpload: React.FC<LogUploadProps> = ({ onLogsParsed }) => {
       if (!response.ok) {
         const errorText = await response.text();
         console.error('Upload failed with response:', errorText);
-        throw new Error(`Upload failed: ${response.status} ${response.statusText}`);
+        const reason = errorReason(errorText) || `${response.status} ${response.statusText}`;
+        throw new Error(`Upload failed: ${reason}`);
       }
 
-      const data = await response.json();
+      // Сервер отвечает сразу (202) с id задачи, ждём её завершения
+      const job = await response.json();
+      console.log('Upload accepted, job:', job.jobId);
 
-      console.log('Upload successful, received data:', data);
-      console.log('Entries count:', data.entries?.length || 0);
+      const data = await waitForJobResult(job.jobId);
+      if (data.state !== 'COMPLETED') {
+        throw new Error(`Ingest job ${data.state}: ${data.error || ''}`);
+      }
+      console.log('Ingest finished:', data);
 
       onLogsParsed(data);
     } catch (err) {
       console.error('Upload error:', err);
-      setError('Failed to upload and parse logs');
+      setError(err instanceof Error ? err.message : 'Failed to upload and parse logs');
     } finally {
       setIsUploading(false);
     }
@@ -12,16 +12,43 @@ export interface LogEntry {
   level: LogLevel;
   section: string;
   message: string;
+  templateId?: string;
   hasJson: boolean;
   parsingError: boolean;
   parsingErrorMessage?: string;
   lineNumber: number;
+  // Смещение строки в исходном файле; строки вокруг - /api/logs/entries/{id}/context
+  byteOffset?: number;
   logFileId: string;
   tfResourceType?: string;
   tfReqId?: string;
   isRead: boolean;
-  requestType?: string;
+  requestType?: 'request' | 'response';
+  tfRpc?: string;
   jsonBody?: string;
+  requestDurationMs?: number;
+  requestStatus?: 'success' | 'failed' | 'warning';
+  operationType?: 'create' | 'update' | 'delete' | 'read' | 'unknown';
+  severityScore?: number;
+  isPartOfRequestChain?: boolean;
+  diagnosticErrorCount?: number;
+  diagnosticWarningCount?: number;
+  // Поля, от которых в индексе только превью; полные значения - /api/logs/entries/{id}/full
+  truncatedFields?: string[];
+}
+
+export interface RawLine {
+  lineNumber: number;
+  byteOffset: number;
+  text: string;
+}
+
+// Страница курсорной выдачи (/api/logs/entries/cursor и др.); totalElements - только на первой странице
+export interface CursorPage {
+  content: LogEntry[];
+  nextCursor?: string;
+  prevCursor?: string;
+  totalElements?: number;
 }
 
 export interface ParsingStats {
@@ -32,14 +59,60 @@ export interface ParsingStats {
   warnEntries: number;
 }
 
+// Сводка файла из /api/logs/files/{logFileId}/summary
+export interface LogFileSummary {
+  id: string;
+  uploadTime: string;
+  firstTimestamp?: string;
+  lastTimestamp?: string;
+  linesRead: number;
+  entryCount: number;
+  failedLines: number;
+  durationMs: number;
+  levelCounts: Record<string, number>;
+  sectionCounts: Record<string, number>;
+  resourceTypeCounts: Record<string, number>;
+  providerCounts: Record<string, number>;
+  rpcCounts: Record<string, number>;
+  histogramIntervalMs: number;
+  histogram: { start: string; count: number }[];
+  chainCount: number;
+  failedChainCount: number;
+  warningChainCount: number;
+  avgChainDurationMs: number;
+  maxChainDurationMs: number;
+}
+
+// Файл из загруженного архива: записи лежат под его собственным logFileId
+export interface ArchiveFile {
+  jobId: string;
+  logFileId: string;
+  source: string;
+  state: string;
+  entriesProcessed: number;
+  errorsCount: number;
+  error?: string;
+}
+
 export interface LogResponse {
+  jobId?: string;
   logFileId: string;
   entriesProcessed: number;
   errorsCount: number;
   stats: Record<string, any>;
+  durationMs?: number;
+  // Для tar/zip - файлы архива; logFileId самого архива записей не содержит
+  files?: ArchiveFile[];
+  // Текущая страница записей, загружается через /api/logs/entries
   entries: LogEntry[];
 }
 
+export interface TemplateCount {
+  templateId: string;
+  template?: string;
+  count: number;
+}
+
 export interface SearchFilters {
   tfResourceType?: string;
   timestampFrom?: string;
@@ -47,8 +120,22 @@ export interface SearchFilters {
   level?: LogLevel;
   section?: string;
   tfReqId?: string;
+  tfRpc?: string;
+  requestType?: 'request' | 'response';
   onlyUnread?: boolean;
   freeText?: string;
+  // AUTO - слова или подстрока, "в кавычках" - фраза
+  textMatch?: 'AUTO' | 'MATCH' | 'PHRASE' | 'SUBSTRING';
+  templateId?: string;
+  excludeTemplateIds?: string[];
+  minDurationMs?: number;
+  maxDurationMs?: number;
+  requestStatus?: string;
+  operationType?: string;
+  minSeverity?: number;
+  maxSeverity?: number;
+  sortBy?: 'TIMESTAMP' | 'DURATION' | 'SEVERITY';
+  sortDirection?: 'ASC' | 'DESC';
   page?: number;
   size?: number;
 }
\ No newline at end of file